@@ -7,6 +7,7 @@ import org.digidoc4j.Constant;
 import org.digidoc4j.impl.CommonOCSPSource;
 import org.digidoc4j.impl.SkOCSPDataLoader;
 import org.junit.jupiter.api.Test;
+import org.naare.utils.TrustedCertificateIndex;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
@@ -27,9 +28,8 @@ public class OcspNonceTest {
         ocspSource.setDataLoader(ocspDataLoader);
 
         CertificateToken signer = new CertificateToken(getSigningCertificate());
-        CertificateToken issuer = configuration.getTSL().getCertificates().stream()
-                .filter(signer::isSignedBy)
-                .findFirst()
+        CertificateToken issuer = TrustedCertificateIndex.of(configuration)
+                .findIssuer(signer)
                 .orElseThrow(NullPointerException::new);
 
         OCSPToken ocspToken = ocspSource.getRevocationToken(signer, issuer);
@@ -0,0 +1,126 @@
+package org.naare.asics;
+
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.DataFile;
+import org.junit.jupiter.api.Test;
+import org.naare.utils.AggregatedTimestamp;
+import org.naare.utils.AggregatingTSPSource;
+import org.naare.utils.LocalTSPSource;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.naare.signing.Helpers.buildContainer;
+
+class AsicsAggregatingTspSourceTest {
+
+    @Test
+    void concurrentDigests_timestampedInOneBatch() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(20);
+        // The window is far longer than the test, only the full batch of 100 digests triggers the request
+        try (AggregatingTSPSource tspSource = new AggregatingTSPSource(new LocalTSPSource(), DigestAlgorithm.SHA256, 60000, 100)) {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            CountDownLatch start = new CountDownLatch(1);
+
+            // Request timestamps from concurrent callers
+            List<Future<AggregatedTimestamp>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                byte[] digest = messageDigest.digest(String.valueOf(i).getBytes());
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return tspSource.getTimeStamp(digest);
+                }));
+            }
+            start.countDown();
+
+            for (Future<AggregatedTimestamp> future : futures) {
+                AggregatedTimestamp timestamp = future.get();
+                assertTrue(timestamp.verify());
+            }
+            assertEquals(100, tspSource.getDigestCount());
+            assertEquals(1, tspSource.getTsaCallCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void maxBatchSizeReached_batchTimestampedWithoutWaitingForWindow() throws Exception {
+        try (AggregatingTSPSource tspSource = new AggregatingTSPSource(new LocalTSPSource(), DigestAlgorithm.SHA256, 60000, 7)) {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+
+            List<CompletableFuture<AggregatedTimestamp>> futures = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                futures.add(tspSource.submit(messageDigest.digest(String.valueOf(i).getBytes())));
+            }
+
+            // Odd sized tree, every proof still verifies
+            for (CompletableFuture<AggregatedTimestamp> future : futures) {
+                assertTrue(future.get().verify());
+            }
+            assertEquals(1, tspSource.getTsaCallCount());
+        }
+    }
+
+    @Test
+    void flushedBatch_windowTimerCancelled() throws Exception {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+        try (AggregatingTSPSource tspSource = new AggregatingTSPSource(new LocalTSPSource(), DigestAlgorithm.SHA256, 60000, 2, executor)) {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            assertTrue(tspSource.submit(messageDigest.digest("1".getBytes())).thenCombine(
+                    tspSource.submit(messageDigest.digest("2".getBytes())), (a, b) -> a.verify() && b.verify()).get());
+
+            // The timer of the full batch cannot flush the next one
+            assertEquals(0, executor.getQueue().size());
+            CompletableFuture<AggregatedTimestamp> next = tspSource.submit(messageDigest.digest("3".getBytes()));
+            assertEquals(1, executor.getQueue().size());
+            assertFalse(next.isDone());
+
+            tspSource.close();
+            assertTrue(next.get().verify());
+            assertEquals(2, tspSource.getTsaCallCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void submitAfterClose_rejectedWithoutBatching() throws Exception {
+        AggregatingTSPSource tspSource = new AggregatingTSPSource(new LocalTSPSource(), DigestAlgorithm.SHA256, 10, 100);
+        tspSource.close();
+
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest("1".getBytes());
+        assertThrows(RejectedExecutionException.class, () -> tspSource.submit(digest));
+        tspSource.close();
+        assertEquals(0, tspSource.getDigestCount());
+        assertEquals(0, tspSource.getTsaCallCount());
+    }
+
+    @Test
+    void asicsDataFileDigest_aggregatedTimestampCoversDataFile() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        try (AggregatingTSPSource tspSource = new AggregatingTSPSource(new LocalTSPSource(), DigestAlgorithm.SHA256, 10, 100)) {
+
+            // Timestamp the datafile digest of an ASiC-S container
+            Container container = buildContainer(Container.DocumentType.ASICS, configuration);
+            DataFile dataFile = container.getDataFiles().get(0);
+            byte[] digest = dataFile.calculateDigest(org.digidoc4j.DigestAlgorithm.SHA256);
+
+            AggregatedTimestamp timestamp = tspSource.getTimeStamp(digest);
+            assertTrue(timestamp.verify());
+            assertArrayEquals(digest, timestamp.getDigest());
+        }
+    }
+}
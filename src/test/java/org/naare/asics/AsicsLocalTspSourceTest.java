@@ -0,0 +1,79 @@
+package org.naare.asics;
+
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.TimestampBinary;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.tsp.TimeStampToken;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.SignatureProfile;
+import org.digidoc4j.TimestampBuilder;
+import org.digidoc4j.impl.asic.AsicSignature;
+import org.junit.jupiter.api.Test;
+import org.naare.utils.LocalTSPSource;
+
+import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.naare.signing.Helpers.SignPkcs12;
+import static org.naare.signing.Helpers.buildContainer;
+
+class AsicsLocalTspSourceTest {
+
+    @Test
+    void timestamp_withLocalArchiveTspSource() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+
+        // Set local TSP source, no network access needed for timestamping
+        LocalTSPSource tspSource = new LocalTSPSource();
+        configuration.setArchiveTspSourceFactory(() -> tspSource);
+
+        // Create datafile ASiC-S container
+        Container container = buildContainer(Container.DocumentType.ASICS, configuration);
+
+        // Add timestamps
+        container.addTimestamp(TimestampBuilder.aTimestamp(container).invokeTimestamping());
+        container.addTimestamp(TimestampBuilder.aTimestamp(container).invokeTimestamping());
+
+        assertEquals(2, container.getTimestamps().size());
+        assertTrue(container.getTimestamps().get(0).getCertificate().getSubjectName().contains("CN=LOCAL TEST TIMESTAMPING UNIT"));
+        assertTrue(container.getTimestamps().get(1).getCertificate().getSubjectName().contains("CN=LOCAL TEST TIMESTAMPING UNIT"));
+    }
+
+    @Test
+    void sign_withLocalSignatureTspSource() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+
+        // Set local TSP source for signature timestamps
+        LocalTSPSource tspSource = new LocalTSPSource();
+        configuration.setSignatureTspSourceFactory(() -> tspSource);
+
+        // Create signed container
+        Container container = buildContainer(Container.DocumentType.ASICE, configuration);
+        SignPkcs12(container, SignatureProfile.T);
+
+        AsicSignature signature = (AsicSignature) container.getSignatures().get(0);
+        assertTrue(signature.getTimeStampTokenCertificate().getSubjectName().contains("CN=LOCAL TEST TIMESTAMPING UNIT"));
+    }
+
+    @Test
+    void localTspSource_generatesThousandsOfTokens() throws Exception {
+        LocalTSPSource tspSource = new LocalTSPSource();
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        Set<String> serialNumbers = new HashSet<>();
+
+        for (int i = 0; i < 2000; i++) {
+            byte[] digest = messageDigest.digest(String.valueOf(i).getBytes());
+            TimestampBinary timestampBinary = tspSource.getTimeStampResponse(DigestAlgorithm.SHA256, digest);
+
+            TimeStampToken token = new TimeStampToken(new CMSSignedData(timestampBinary.getBytes()));
+            assertArrayEquals(digest, token.getTimeStampInfo().getMessageImprintDigest());
+            serialNumbers.add(token.getTimeStampInfo().getSerialNumber().toString());
+        }
+
+        // Every token has a unique serial number
+        assertEquals(2000, serialNumbers.size());
+    }
+}
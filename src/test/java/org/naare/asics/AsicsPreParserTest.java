@@ -0,0 +1,120 @@
+package org.naare.asics;
+
+import org.digidoc4j.exceptions.DigiDoc4JException;
+import org.digidoc4j.exceptions.DuplicateTimestampException;
+import org.digidoc4j.exceptions.IllegalContainerContentException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.naare.utils.AsicsPreParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsicsPreParserTest {
+
+    private static final String ASICS_DIRECTORY = "src/test/resources/files/test/asics/";
+
+    @ParameterizedTest
+    @CsvSource({
+            "DataFileMissingAsics, Timestamped ASiC-S container must contain exactly one datafile",
+            "TwoDataFilesWithoutSignatureOrTimestamp, ASiC-S container cannot contain more than one datafile",
+            "evidencerecordXmlPresent, Unsupported evidence record entry: META-INF/evidencerecord.xml",
+            "CadesMixedWithTst, Unsupported CAdES signature entry: META-INF/signature.p7s",
+            "XadesMixedWithTst, ASiC-S container cannot contain signatures and timestamp tokens simultaneously"})
+    void malformedAsics_throwsIllegalContainerContentError(String fileName, String errorMessage) {
+        Exception exception = assertThrows(IllegalContainerContentException.class,
+                () -> AsicsPreParser.check(Paths.get(ASICS_DIRECTORY + fileName + ".asics")));
+        assertEquals(errorMessage, exception.getMessage());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "DuplicateTstTokens, Container contains duplicate timestamp token: META-INF/timestamp.tst",
+            "DuplicateArchiveXml, Container contains duplicate timestamp manifest: META-INF/ASiCArchiveManifest.xml"})
+    void asicsWithDuplicateTimestampFiles_throwsDuplicateTimestampError(String fileName, String errorMessage) {
+        Exception exception = assertThrows(DuplicateTimestampException.class,
+                () -> AsicsPreParser.check(Paths.get(ASICS_DIRECTORY + fileName + ".asics")));
+        assertEquals(errorMessage, exception.getMessage());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "DuplicateManifestXml, Multiple manifest.xml files disallowed",
+            "DuplicateMimetype, Multiple mimetype files disallowed"})
+    void asicsWithDuplicateMediaFiles_throwsMultipleFilesError(String fileName, String errorMessage) {
+        Exception exception = assertThrows(DigiDoc4JException.class,
+                () -> AsicsPreParser.check(Paths.get(ASICS_DIRECTORY + fileName + ".asics")));
+        assertEquals(errorMessage, exception.getMessage());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "TEST_ASICS.asics",
+            "TEST_composite_ASICS.asics",
+            "TEST_ESTEID2018_ASiC-S_XAdES_LT.scs",
+            "5xTST_validTimestamps_scopeFull.asics",
+            "1xSIG_with_manifest.asics",
+            "0xSIG_0xTST_asics_no_manifest.asics"})
+    void wellFormedAsics_pass(String fileName) throws IOException {
+        assertFalse(AsicsPreParser.check(Paths.get(ASICS_DIRECTORY + fileName)).isEmpty());
+    }
+
+    @Test
+    void junkUpload_rejected() {
+        byte[] junk = "<html>not a container</html>".getBytes(StandardCharsets.UTF_8);
+        Exception exception = assertThrows(DigiDoc4JException.class, () -> AsicsPreParser.check(junk));
+        assertEquals("Not a ZIP archive: end of central directory not found", exception.getMessage());
+
+        assertThrows(DigiDoc4JException.class, () -> AsicsPreParser.check(new byte[10]));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "-1, 1, 46, 0, Invalid ZIP64 end of central directory",
+            "9223372036854775807, 1, 46, 0, Invalid ZIP64 end of central directory",
+            "43, 1, 46, 0, Invalid ZIP64 end of central directory",
+            "0, -1, 46, 0, Invalid ZIP central directory",
+            "0, 1, -46, 0, Invalid ZIP central directory",
+            "0, 1, 46, -1, Invalid ZIP central directory",
+            "0, 1, 46, 9223372036854775807, Invalid ZIP central directory",
+            "0, 1, 9223372036854775807, 46, Invalid ZIP central directory"})
+    void junkZip64Records_rejected(long zip64EocdOffset, long entryCount, long directorySize, long directoryOffset,
+                                   String errorMessage, @TempDir Path tempDir) throws IOException {
+        byte[] container = zip64Tail(zip64EocdOffset, entryCount, directorySize, directoryOffset);
+        Exception exception = assertThrows(DigiDoc4JException.class, () -> AsicsPreParser.check(container));
+        assertEquals(errorMessage, exception.getMessage());
+
+        Path file = Files.write(tempDir.resolve("junk.asics"), container);
+        exception = assertThrows(DigiDoc4JException.class, () -> AsicsPreParser.check(file));
+        assertEquals(errorMessage, exception.getMessage());
+    }
+
+    @Test
+    void inMemoryCheck_malformedContainer_rejected() throws IOException {
+        byte[] container = Files.readAllBytes(Paths.get(ASICS_DIRECTORY + "DuplicateMimetype.asics"));
+        assertThrows(DigiDoc4JException.class, () -> AsicsPreParser.check(container));
+    }
+
+    /**
+     * ZIP64 end of central directory record, locator and end of central directory record, without entries.
+     */
+    private static byte[] zip64Tail(long zip64EocdOffset, long entryCount, long directorySize, long directoryOffset) {
+        ByteBuffer buffer = ByteBuffer.allocate(56 + 20 + 22).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0x06064b50).putLong(44).putShort((short) 45).putShort((short) 45).putInt(0).putInt(0)
+                .putLong(entryCount).putLong(entryCount).putLong(directorySize).putLong(directoryOffset);
+        buffer.putInt(0x07064b50).putInt(0).putLong(zip64EocdOffset).putInt(1);
+        buffer.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) 0xFFFF).putShort((short) 0xFFFF)
+                .putInt(0xFFFFFFFF).putInt(0xFFFFFFFF).putShort((short) 0);
+        return buffer.array();
+    }
+}
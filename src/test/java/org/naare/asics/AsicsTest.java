@@ -34,7 +34,7 @@ class AsicsTest {
         System.out.println(result.getReport());
 
         // Save container
-//        saveContainer(container);
+//        saveContainer(container, "createDatafileAsicsAndValidate");
     }
 
     @ParameterizedTest
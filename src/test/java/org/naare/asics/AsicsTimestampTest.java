@@ -46,7 +46,7 @@ class AsicsTimestampTest {
         System.out.println(result.getReport());
 
         // Save container
-//        saveContainer(container);
+//        saveContainer(container, "timestampCreatedDatafileAsicsAndValidate");
     }
 
     @Test
@@ -70,7 +70,7 @@ class AsicsTimestampTest {
         System.out.println(result.getReport());
 
         // Save container
-//        saveContainer(container);
+//        saveContainer(container, "timestampCreatedCompositeAsicsAndValidate");
     }
 
     @Test
@@ -94,7 +94,7 @@ class AsicsTimestampTest {
         System.out.println(result.getReport());
 
         // Save container
-//        saveContainer(container);
+//        saveContainer(container, "timestampOpenedDatafileAsicsAndValidate");
     }
 
     @Test
@@ -118,7 +118,7 @@ class AsicsTimestampTest {
         System.out.println(result.getReport());
 
         // Save container
-//        saveContainer(container);
+//        saveContainer(container, "timestampOpenedCompositeAsicsAndValidate");
     }
 
     @ParameterizedTest
@@ -168,7 +168,7 @@ class AsicsTimestampTest {
         System.out.println(result.getReport());
 
         // Save container
-//        saveContainer(container);
+//        saveContainer(container, "timestampAsics_withTsExpiredAndWithdrawnInTsl_validatesWithWarning");
     }
 
     @Test
@@ -452,7 +452,7 @@ class AsicsTimestampTest {
         assertEquals(3, result.getTimestampReports().size());
 
         // Save container
-//        saveContainer(container);
+//        saveContainer(container, "timestampCreatedDatafileAsics_withSpecialCharsInDatafileName_succeeds");
     }
 
     @ParameterizedTest
@@ -479,6 +479,6 @@ class AsicsTimestampTest {
         assertEquals(3, result.getTimestampReports().size());
 
         // Save container
-//        saveContainer(container);
+//        saveContainer(container, "timestampOpenedDatafileAsics_withSpaceOrPlusInDatafileName_succeeds");
     }
 }
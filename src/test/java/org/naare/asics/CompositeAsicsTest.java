@@ -55,7 +55,7 @@ class CompositeAsicsTest {
         System.out.println(result.getReport());
 
         // Save container
-//        saveContainer(container);
+//        saveContainer(container, "createCompositeAsicsWithTimestampedAsicsAndValidate");
     }
 
     @Test
@@ -101,7 +101,7 @@ class CompositeAsicsTest {
         System.out.println(result.getReport());
 
         // Save container
-//        saveContainer(container);
+//        saveContainer(container, "createCompositeAsicsWithSignedAsicsAndValidate");
     }
 
     @Test
@@ -153,7 +153,7 @@ class CompositeAsicsTest {
         System.out.println(result.getReport());
 
         // Save container
-//        saveContainer(container);
+//        saveContainer(container, "createCompositeAsicsWithAsicsAndValidate_addedTimestampToNestedContainer");
     }
 
     @Test
@@ -193,7 +193,7 @@ class CompositeAsicsTest {
         System.out.println(result.getReport());
 
         // Save container
-//        saveContainer(container);
+//        saveContainer(container, "createCompositeAsicsWithAsiceAndValidate");
     }
 
     @Test
@@ -227,7 +227,7 @@ class CompositeAsicsTest {
         System.out.println(result.getReport());
 
         // Save container
-//        saveContainer(container);
+//        saveContainer(container, "createCompositeAsicsWithDdocAndValidate");
     }
 
     void checkCompositeContainerNesting(CompositeContainer container, Container nestedContainer) {
@@ -0,0 +1,200 @@
+package org.naare.asics;
+
+import eu.europa.esig.dss.enumerations.Indication;
+import eu.europa.esig.dss.model.DSSDocument;
+import org.digidoc4j.CompositeContainer;
+import org.digidoc4j.CompositeContainerBuilder;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerOpener;
+import org.digidoc4j.ContainerValidationResult;
+import org.digidoc4j.impl.asic.report.SignatureValidationReport;
+import org.digidoc4j.impl.asic.report.TimestampValidationReport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.naare.utils.CompositeValidator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.naare.utils.TestCertificates.certificate;
+import static org.naare.utils.TestCertificates.newKeyPair;
+
+class CompositeValidatorTest {
+
+    private static final Path ASICS_DIRECTORY = Paths.get("src/test/resources/files/test/asics");
+    private static final Path COMPOSITE_ASICS = ASICS_DIRECTORY.resolve("TEST_composite_ASICS.asics");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void validateComposite_nestedOutcomeMemoized() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        CompositeValidator validator = new CompositeValidator(configuration);
+
+        CompositeValidator.Result result = validator.validate(COMPOSITE_ASICS);
+        assertTrue(result.isValid());
+        assertEquals(2, result.getDepth());
+        assertFalse(result.getTimestampIndications().isEmpty());
+        assertEquals(Indication.PASSED, result.getTimestampIndications().values().iterator().next());
+        assertNotNull(result.getNestedResult().getContainerValidationResult());
+        assertEquals(2, validator.getValidatedLayerCount());
+
+        // Nothing is validated again
+        assertSame(result, validator.validate(COMPOSITE_ASICS));
+        assertEquals(2, validator.getValidatedLayerCount());
+        assertEquals(1, validator.getHitCount());
+    }
+
+    @Test
+    void retimestampedComposite_layersValidatedOnce() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        CompositeValidator validator = new CompositeValidator(configuration);
+
+        // Wrap the composite container into a new timestamped layer
+        Container nestedContainer = ContainerOpener.open(COMPOSITE_ASICS.toString(), configuration);
+        CompositeContainer container = CompositeContainerBuilder
+                .fromContainer(nestedContainer, COMPOSITE_ASICS.getFileName().toString())
+                .buildTimestamped(timestampBuilder -> {
+                });
+        Path retimestamped = tempDir.resolve("retimestamped.asics");
+        container.saveAsFile(retimestamped.toString());
+
+        CompositeValidator.Result result = validator.validate(retimestamped);
+        assertTrue(result.isValid());
+        assertEquals(3, result.getDepth());
+        assertEquals(3, validator.getValidatedLayerCount());
+
+        // Nested layer is found by its digest and not validated again
+        CompositeContainer opened = (CompositeContainer) ContainerOpener.open(retimestamped.toString(), configuration);
+        CompositeValidator.Result nested = validator.validate(opened.getNestingContainerDataFiles().get(0).getDocument());
+        assertSame(result.getNestedResult(), nested);
+        assertEquals(3, validator.getValidatedLayerCount());
+        assertEquals(1, validator.getHitCount());
+    }
+
+    @Test
+    void memo_boundedAndKeyedByTslVersion() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        CompositeValidator validator = new CompositeValidator(configuration, 1, Duration.ofDays(1));
+
+        CompositeValidator.Result result = validator.validate(COMPOSITE_ASICS);
+        assertEquals(1, validator.size());
+        assertSame(result, validator.validate(COMPOSITE_ASICS));
+        assertEquals(1, validator.getHitCount());
+
+        // A new TSL version is a new key
+        configuration.getTSL().addTSLCertificate(certificate("CN=COMPOSITE TEST CA", newKeyPair()).ca().build());
+        assertNotSame(result, validator.validate(COMPOSITE_ASICS));
+        assertEquals(4, validator.getValidatedLayerCount());
+        assertEquals(1, validator.size());
+    }
+
+    @ParameterizedTest
+    @MethodSource("asicsContainers")
+    void validate_sameOutcomeAsContainerValidate(Path path) {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        ContainerValidationResult expected;
+        try {
+            expected = ContainerOpener.open(path.toString(), configuration).validate();
+        } catch (RuntimeException e) {
+            assertThrows(e.getClass(), () -> new CompositeValidator(configuration).validate(path));
+            return;
+        }
+
+        CompositeValidator.Result result = new CompositeValidator(configuration).validate(path);
+        assertEquals(expected.isValid(), result.isValid());
+        if (result.getNestedResult() == null) {
+            ContainerValidationResult actual = result.getContainerValidationResult();
+            assertEquals(getSignatureIndications(expected), getSignatureIndications(actual));
+            assertEquals(getTimestampIndications(expected), getTimestampIndications(actual));
+        } else {
+            Map<String, Indication> timestampIndications = getTimestampIndications(expected);
+            assertFalse(result.getTimestampIndications().isEmpty());
+            result.getTimestampIndications().forEach((id, indication) -> assertEquals(timestampIndications.get(id), indication));
+        }
+    }
+
+    @Test
+    void retimestampedComposite_onlyNewTimestampsValidated() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        CountingValidator validator = new CountingValidator(configuration);
+
+        // Innermost container with DD4J, outer timestamps with DSS
+        validator.validate(COMPOSITE_ASICS);
+        assertEquals(1, validator.containerValidationCount.get());
+        assertEquals(1, validator.timestampValidationCount.get());
+
+        Container nestedContainer = ContainerOpener.open(COMPOSITE_ASICS.toString(), configuration);
+        CompositeContainer container = CompositeContainerBuilder
+                .fromContainer(nestedContainer, COMPOSITE_ASICS.getFileName().toString())
+                .buildTimestamped(timestampBuilder -> {
+                });
+        Path retimestamped = tempDir.resolve("retimestamped.asics");
+        container.saveAsFile(retimestamped.toString());
+
+        // Only the timestamps of the new layer
+        assertTrue(validator.validate(retimestamped).isValid());
+        assertEquals(1, validator.containerValidationCount.get());
+        assertEquals(2, validator.timestampValidationCount.get());
+    }
+
+    static Stream<Path> asicsContainers() throws IOException {
+        try (Stream<Path> files = Files.list(ASICS_DIRECTORY)) {
+            return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList()).stream();
+        }
+    }
+
+    /**
+     * Counts the DD4J container validations and DSS timestamp validations actually run.
+     */
+    private static class CountingValidator extends CompositeValidator {
+
+        private final AtomicInteger containerValidationCount = new AtomicInteger();
+        private final AtomicInteger timestampValidationCount = new AtomicInteger();
+
+        private CountingValidator(Configuration configuration) {
+            super(configuration);
+        }
+
+        @Override
+        protected ContainerValidationResult validateContainer(Container container) {
+            containerValidationCount.incrementAndGet();
+            return super.validateContainer(container);
+        }
+
+        @Override
+        protected Map<String, Indication> validateTimestamps(DSSDocument document, String nestedFileName) {
+            timestampValidationCount.incrementAndGet();
+            return super.validateTimestamps(document, nestedFileName);
+        }
+    }
+
+    private static Map<String, Indication> getSignatureIndications(ContainerValidationResult result) {
+        Map<String, Indication> indications = new LinkedHashMap<>();
+        for (SignatureValidationReport report : result.getSignatureReports()) {
+            indications.put(report.getUniqueId(), report.getIndication());
+        }
+        return indications;
+    }
+
+    private static Map<String, Indication> getTimestampIndications(ContainerValidationResult result) {
+        Map<String, Indication> indications = new LinkedHashMap<>();
+        for (TimestampValidationReport report : result.getTimestampReports()) {
+            indications.put(report.getUniqueId(), report.getIndication());
+        }
+        return indications;
+    }
+}
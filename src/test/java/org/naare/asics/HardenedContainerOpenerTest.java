@@ -0,0 +1,138 @@
+package org.naare.asics;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.exceptions.DigiDoc4JException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.naare.utils.HardenedContainerOpener;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HardenedContainerOpenerTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "src/test/resources/files/test/asics/TEST_ASICS.asics",
+            "src/test/resources/files/test/asics/TEST_composite_ASICS.asics",
+            "src/test/resources/files/test/asics/AdditionalFolderInAsics.asics",
+            "src/test/resources/files/test/asice/TEST_ESTEID2018_ASiC-E_XAdES_LT.sce",
+            "src/test/resources/files/DIGIDOC-XML1.3.ddoc"})
+    void wellFormedContainer_withinLimits(String filepath) throws IOException {
+        try (InputStream in = Files.newInputStream(Paths.get(filepath))) {
+            HardenedContainerOpener.check(in, HardenedContainerOpener.Limits.defaults());
+        }
+    }
+
+    @Test
+    void openAsics_withDefaultLimits_pass() throws IOException {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+
+        Container container = HardenedContainerOpener.open(Paths.get("src/test/resources/files/test/asics/TEST_ASICS.asics"),
+                configuration, HardenedContainerOpener.Limits.defaults());
+        assertEquals("ASICS", container.getType());
+    }
+
+    @Test
+    void zipBomb_rejectedByCompressionRatio() throws IOException {
+        // 4 MB of zeros deflates to about 4 KB
+        byte[] bomb = zip("bomb.txt", new ZerosWriter(4L * 1024 * 1024));
+        HardenedContainerOpener.Limits limits = new HardenedContainerOpener.Limits(8L * 1024 * 1024, 100, 64 * 1024, 1000, 2);
+
+        Exception exception = assertThrows(DigiDoc4JException.class, () -> HardenedContainerOpener.open(
+                new ByteArrayInputStream(bomb), Configuration.of(Configuration.Mode.TEST), limits));
+        assertEquals("Entry bomb.txt exceeds compression ratio 100", exception.getMessage());
+    }
+
+    @Test
+    void totalInflatedSize_exceeded() throws IOException {
+        HardenedContainerOpener.Limits limits = new HardenedContainerOpener.Limits(1024 * 1024, 100, 1024 * 1024, 1000, 2);
+        byte[] randomData = new byte[600 * 1024];
+        new Random(42).nextBytes(randomData);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (int i = 0; i < 2; i++) {
+                zip.putNextEntry(new ZipEntry("data" + i + ".bin"));
+                zip.write(randomData);
+                zip.closeEntry();
+            }
+        }
+
+        Exception exception = assertThrows(DigiDoc4JException.class,
+                () -> HardenedContainerOpener.check(new ByteArrayInputStream(out.toByteArray()), limits));
+        assertEquals("Container inflates to more than 1048576 bytes", exception.getMessage());
+    }
+
+    @Test
+    void entryCount_exceeded() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (int i = 0; i < 1001; i++) {
+                zip.putNextEntry(new ZipEntry("file" + i + ".txt"));
+                zip.closeEntry();
+            }
+        }
+
+        Exception exception = assertThrows(DigiDoc4JException.class, () -> HardenedContainerOpener.check(
+                new ByteArrayInputStream(out.toByteArray()), HardenedContainerOpener.Limits.defaults()));
+        assertEquals("Container has more than 1000 entries", exception.getMessage());
+    }
+
+    @Test
+    void nestingDepth_exceeded() throws IOException {
+        byte[] container = zip("test.txt", out -> out.write("test".getBytes(StandardCharsets.UTF_8)));
+        for (int i = 0; i < 3; i++) {
+            byte[] nested = container;
+            container = zip("nested" + i + ".asics", out -> out.write(nested));
+        }
+        byte[] nestedThreeLevels = container;
+
+        Exception exception = assertThrows(DigiDoc4JException.class, () -> HardenedContainerOpener.check(
+                new ByteArrayInputStream(nestedThreeLevels), HardenedContainerOpener.Limits.defaults()));
+        assertEquals("Container nesting is deeper than 2 levels: nested0.asics", exception.getMessage());
+    }
+
+    private interface EntryWriter {
+        void write(ZipOutputStream out) throws IOException;
+    }
+
+    private static class ZerosWriter implements EntryWriter {
+
+        private final long size;
+
+        ZerosWriter(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public void write(ZipOutputStream out) throws IOException {
+            byte[] zeros = new byte[64 * 1024];
+            for (long written = 0; written < size; written += zeros.length) {
+                out.write(zeros);
+            }
+        }
+    }
+
+    private static byte[] zip(String entryName, EntryWriter writer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry(entryName));
+            writer.write(zip);
+            zip.closeEntry();
+        }
+        return out.toByteArray();
+    }
+}
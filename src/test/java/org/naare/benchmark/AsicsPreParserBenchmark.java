@@ -0,0 +1,59 @@
+package org.naare.benchmark;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerOpener;
+import org.digidoc4j.exceptions.DigiDoc4JException;
+import org.naare.utils.AsicsPreParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Central directory pre-check of {@link AsicsPreParser} for a well-formed and a malformed ASiC-S upload,
+ * compared to opening the well-formed container with {@link ContainerOpener}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class AsicsPreParserBenchmark {
+
+    private Configuration configuration;
+    private byte[] container;
+    private byte[] malformedContainer;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        configuration = Configuration.of(Configuration.Mode.TEST);
+        container = Files.readAllBytes(Paths.get(BenchmarkContainers.ASICS.getPath()));
+        malformedContainer = Files.readAllBytes(Paths.get("src/test/resources/files/test/asics/DuplicateMimetype.asics"));
+    }
+
+    @Benchmark
+    public List<String> check() {
+        return AsicsPreParser.check(container);
+    }
+
+    @Benchmark
+    public DigiDoc4JException checkMalformed() {
+        try {
+            AsicsPreParser.check(malformedContainer);
+        } catch (DigiDoc4JException e) {
+            return e;
+        }
+        throw new IllegalStateException("Malformed container passed the pre-check");
+    }
+
+    @Benchmark
+    public Container open() {
+        return ContainerOpener.open(new ByteArrayInputStream(container), configuration);
+    }
+}
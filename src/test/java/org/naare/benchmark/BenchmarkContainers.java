@@ -0,0 +1,23 @@
+package org.naare.benchmark;
+
+/**
+ * Containers from the test corpus used as benchmark input, one per container type.
+ */
+public enum BenchmarkContainers {
+
+    ASICE("src/test/resources/files/test/asic/EE_LT_sig_valid.asice"),
+    ASICS("src/test/resources/files/test/asics/TEST_ASICS.asics"),
+    COMPOSITE_ASICS("src/test/resources/files/test/asics/TEST_composite_ASICS.asics"),
+    BDOC("src/test/resources/files/singleValidSignatureTM.bdoc"),
+    DDOC("src/test/resources/files/DIGIDOC-XML1.3.ddoc");
+
+    private final String path;
+
+    BenchmarkContainers(String path) {
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+}
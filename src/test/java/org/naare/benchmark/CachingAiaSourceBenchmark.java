@@ -0,0 +1,85 @@
+package org.naare.benchmark;
+
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.service.http.commons.CommonsDataLoader;
+import eu.europa.esig.dss.spi.x509.aia.AIASource;
+import eu.europa.esig.dss.spi.x509.aia.DefaultAIASource;
+import org.naare.utils.CachingAIASource;
+import org.naare.utils.StubHttpServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.naare.utils.TestCertificates.certificate;
+import static org.naare.utils.TestCertificates.newKeyPair;
+
+/**
+ * AIA issuer lookup served by {@link CachingAIASource}, including an expired entry served while it is
+ * refreshed in the background, compared to a download from a local server on every lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class CachingAiaSourceBenchmark {
+
+    private StubHttpServer server;
+    private Path store;
+    private CachingAIASource cachingSource;
+    private CachingAIASource refreshingSource;
+    private AIASource downloadingSource;
+    private CertificateToken certificate;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        KeyPair issuerKeyPair = newKeyPair();
+        X509Certificate issuer = certificate("CN=AIA BENCHMARK ISSUER", issuerKeyPair).ca().build();
+        server = new StubHttpServer(issuer.getEncoded(), "application/pkix-cert", 0);
+        certificate = new CertificateToken(certificate("CN=AIA BENCHMARK SIGNER", newKeyPair())
+                .issuedBy("CN=AIA BENCHMARK ISSUER", issuerKeyPair).caIssuersUrl(server.getUrl()).build());
+
+        store = Files.createTempDirectory("aia-benchmark");
+        cachingSource = new CachingAIASource(new CommonsDataLoader(), store.resolve("cached"), Duration.ofDays(1));
+        refreshingSource = new CachingAIASource(new CommonsDataLoader(), store.resolve("refreshed"), Duration.ofMillis(1));
+        downloadingSource = new DefaultAIASource(new CommonsDataLoader());
+        if (cachingSource.getCertificatesByAIA(certificate).isEmpty()) {
+            throw new IllegalStateException("AIA issuer not loaded from the local server");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        cachingSource.close();
+        refreshingSource.close();
+        server.close();
+        try (Stream<Path> paths = Files.walk(store)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Set<CertificateToken> cached() {
+        return cachingSource.getCertificatesByAIA(certificate);
+    }
+
+    @Benchmark
+    public Set<CertificateToken> expiredRefreshedInBackground() {
+        return refreshingSource.getCertificatesByAIA(certificate);
+    }
+
+    @Benchmark
+    public Set<CertificateToken> download() {
+        return downloadingSource.getCertificatesByAIA(certificate);
+    }
+}
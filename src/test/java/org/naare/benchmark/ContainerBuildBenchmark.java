@@ -0,0 +1,48 @@
+package org.naare.benchmark;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.naare.signing.Helpers.buildContainer;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ContainerBuildBenchmark {
+
+    @Param({"ASICE", "ASICS", "COMPOSITE_ASICS", "BDOC", "DDOC"})
+    public BenchmarkContainers containerType;
+
+    private Configuration configuration;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        configuration = Configuration.of(Configuration.Mode.TEST);
+    }
+
+    @Benchmark
+    public Container buildFromExistingFile() {
+        return ContainerBuilder
+                .aContainer()
+                .withConfiguration(configuration)
+                .fromExistingFile(containerType.getPath())
+                .build();
+    }
+
+    @Benchmark
+    public Container buildNewAsice() {
+        return buildContainer(Container.DocumentType.ASICE, configuration);
+    }
+
+    @Benchmark
+    public Container buildNewAsics() {
+        return buildContainer(Container.DocumentType.ASICS, configuration);
+    }
+}
@@ -0,0 +1,85 @@
+package org.naare.benchmark;
+
+import eu.europa.esig.dss.service.http.commons.TimestampDataLoader;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.naare.utils.PooledDataLoader;
+import org.naare.utils.PooledHttpClient;
+import org.naare.utils.StubHttp2Server;
+import org.naare.utils.StubHttpServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a data loader created per request (as TestTSPSource does per instance) with the shared
+ * connection pool, against a local stub server. The difference is the connection setup cost. The HTTP/2
+ * cases send the same requests multiplexed over h2c to a local HTTP/2 stub server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DataLoaderBenchmark {
+
+    private static final byte[] REQUEST = new byte[64];
+
+    private StubHttpServer server;
+    private PooledHttpClient httpClient;
+    private DataLoader pooledDataLoader;
+
+    private StubHttp2Server http2Server;
+    private PooledHttpClient http2Client;
+    private DataLoader http2DataLoader;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new StubHttpServer(new byte[2048], "application/timestamp-reply", 0);
+        httpClient = new PooledHttpClient();
+        pooledDataLoader = PooledDataLoader.forTimestamps(httpClient);
+
+        http2Server = new StubHttp2Server(new byte[2048], "application/timestamp-reply", 0);
+        http2Client = new PooledHttpClient(PooledHttpClient.DEFAULT_MAX_CONNECTIONS_PER_HOST,
+                PooledHttpClient.DEFAULT_MAX_CONNECTIONS_TOTAL, PooledHttpClient.DEFAULT_KEEP_ALIVE_MILLIS,
+                HttpVersionPolicy.FORCE_HTTP_2);
+        http2DataLoader = PooledDataLoader.forTimestamps(http2Client);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        httpClient.close();
+        server.close();
+        http2Client.close();
+        http2Server.close();
+    }
+
+    @Benchmark
+    public byte[] newDataLoaderPerRequest() {
+        return new TimestampDataLoader().post(server.getUrl(), REQUEST);
+    }
+
+    @Benchmark
+    public byte[] pooledDataLoader() {
+        return pooledDataLoader.post(server.getUrl(), REQUEST);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public byte[] pooledDataLoaderConcurrent() {
+        return pooledDataLoader.post(server.getUrl(), REQUEST);
+    }
+
+    @Benchmark
+    public byte[] pooledDataLoaderHttp2() {
+        return http2DataLoader.post(http2Server.getUrl(), REQUEST);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public byte[] pooledDataLoaderHttp2Concurrent() {
+        return http2DataLoader.post(http2Server.getUrl(), REQUEST);
+    }
+}
@@ -0,0 +1,49 @@
+package org.naare.benchmark;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerOpener;
+import org.digidoc4j.SignatureProfile;
+import org.digidoc4j.exceptions.DigiDoc4JException;
+import org.digidoc4j.impl.asic.AsicContainer;
+import org.naare.utils.ExtensionScreener;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline {@link ExtensionScreener} checks compared to the DSS based {@code getExtensionValidationErrors}
+ * for extending an LT signature to LTA.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ExtensionScreeningBenchmark {
+
+    private static final String CONTAINER = "src/test/resources/files/test/asice/TEST_ESTEID2018_ASiC-E_XAdES_LT.sce";
+
+    private final ExtensionScreener screener = new ExtensionScreener();
+    private Container container;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        container = ContainerOpener.open(CONTAINER, Configuration.of(Configuration.Mode.TEST));
+        if (!screener.screen(container, SignatureProfile.LTA).isEmpty()) {
+            throw new IllegalStateException("Benchmark container is not extendable to LTA");
+        }
+    }
+
+    @Benchmark
+    public Map<String, DigiDoc4JException> screen() {
+        return screener.screen(container, SignatureProfile.LTA);
+    }
+
+    @Benchmark
+    public Map<String, DigiDoc4JException> extensionValidationErrors() {
+        return ((AsicContainer) container).getExtensionValidationErrors(SignatureProfile.LTA);
+    }
+}
@@ -0,0 +1,55 @@
+package org.naare.benchmark;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerOpener;
+import org.naare.utils.HardenedContainerOpener;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the limit checks of {@link HardenedContainerOpener} compared to opening the same container
+ * from memory with {@link ContainerOpener} directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class HardenedOpenBenchmark {
+
+    @Param({"ASICE", "ASICS", "COMPOSITE_ASICS", "BDOC"})
+    public BenchmarkContainers containerType;
+
+    private Configuration configuration;
+    private HardenedContainerOpener.Limits limits;
+    private byte[] container;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        configuration = Configuration.of(Configuration.Mode.TEST);
+        limits = HardenedContainerOpener.Limits.defaults();
+        container = Files.readAllBytes(Paths.get(containerType.getPath()));
+    }
+
+    @Benchmark
+    public Container open() {
+        return ContainerOpener.open(new ByteArrayInputStream(container), configuration);
+    }
+
+    @Benchmark
+    public Container openHardened() throws IOException {
+        return HardenedContainerOpener.open(new ByteArrayInputStream(container), configuration, limits);
+    }
+
+    @Benchmark
+    public void checkOnly() throws IOException {
+        HardenedContainerOpener.check(new ByteArrayInputStream(container), limits);
+    }
+}
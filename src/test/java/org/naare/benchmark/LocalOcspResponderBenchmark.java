@@ -0,0 +1,70 @@
+package org.naare.benchmark;
+
+import eu.europa.esig.dss.service.http.commons.OCSPDataLoader;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.naare.utils.LocalOcspResponder;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+import static org.naare.signing.Helpers.getDefaultPkcs12SignatureToken;
+
+/**
+ * Signed responses per second of {@link LocalOcspResponder} for nonce requests, from one client thread
+ * and from 16 concurrent ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LocalOcspResponderBenchmark {
+
+    private LocalOcspResponder responder;
+    private OCSPDataLoader dataLoader;
+    private byte[] request;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        responder = new LocalOcspResponder();
+        dataLoader = new OCSPDataLoader();
+
+        // The responder does not check the issuer, the signing certificate stands in for it
+        X509Certificate certificate = getDefaultPkcs12SignatureToken("1234").getCertificate();
+        CertificateID certificateId = new CertificateID(
+                new JcaDigestCalculatorProviderBuilder().build().get(CertificateID.HASH_SHA1),
+                new JcaX509CertificateHolder(certificate), certificate.getSerialNumber());
+        byte[] nonce = new byte[20];
+        new SecureRandom().nextBytes(nonce);
+        request = new OCSPReqBuilder().addRequest(certificateId)
+                .setRequestExtensions(new Extensions(new Extension(
+                        OCSPObjectIdentifiers.id_pkix_ocsp_nonce, false, new DEROctetString(nonce))))
+                .build().getEncoded();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        responder.close();
+    }
+
+    @Benchmark
+    public byte[] request() {
+        return dataLoader.post(responder.getUrl(), request);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public byte[] requestConcurrent() {
+        return dataLoader.post(responder.getUrl(), request);
+    }
+}
@@ -0,0 +1,123 @@
+package org.naare.benchmark;
+
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerOpener;
+import org.digidoc4j.ContainerValidationResult;
+import org.digidoc4j.DataFile;
+import org.digidoc4j.DataToSign;
+import org.digidoc4j.SignatureProfile;
+import org.digidoc4j.signers.PKCS12SignatureToken;
+import org.naare.utils.ParallelDigester;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.naare.signing.Helpers.SignPkcs12;
+import static org.naare.signing.Helpers.buildContainer;
+import static org.naare.signing.Helpers.getDataToSign;
+import static org.naare.signing.Helpers.getDefaultPkcs12SignatureToken;
+
+/**
+ * Signing and validating an ASiC-E container with 500 data files, with the data files digested one after
+ * another by DD4J and in advance by {@link ParallelDigester} with up to {@code parallelism} threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ParallelDigestBenchmark {
+
+    private static final int DATA_FILE_COUNT = 500;
+    private static final int DATA_FILE_SIZE = 256 * 1024;
+    private static final String MIME_TYPE = "application/octet-stream";
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private Configuration configuration;
+    private PKCS12SignatureToken signatureToken;
+    private ParallelDigester digester;
+    private Path dataDirectory;
+    private List<Path> files;
+    private byte[] signedContainer;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        configuration = Configuration.of(Configuration.Mode.TEST);
+        signatureToken = getDefaultPkcs12SignatureToken("1234");
+        digester = new ParallelDigester(parallelism);
+
+        dataDirectory = Files.createTempDirectory("parallel-digest");
+        Random random = new Random(42);
+        byte[] data = new byte[DATA_FILE_SIZE];
+        files = new ArrayList<>(DATA_FILE_COUNT);
+        for (int i = 0; i < DATA_FILE_COUNT; i++) {
+            random.nextBytes(data);
+            files.add(Files.write(dataDirectory.resolve("data" + i + ".bin"), data));
+        }
+
+        Container container = buildContainer(Container.DocumentType.ASICE, configuration, dataFiles());
+        SignPkcs12(container, SignatureProfile.LT);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        container.save(out);
+        signedContainer = out.toByteArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        digester.close();
+        try (Stream<Path> paths = Files.walk(dataDirectory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public DataToSign buildDataToSign() {
+        Container container = buildContainer(Container.DocumentType.ASICE, configuration, dataFiles());
+        return getDataToSign(container, signatureToken, SignatureProfile.LT);
+    }
+
+    @Benchmark
+    public DataToSign buildDataToSignPredigested() {
+        List<DataFile> dataFiles = digester.dataFiles(files, MIME_TYPE, DigestAlgorithm.SHA256);
+        Container container = buildContainer(Container.DocumentType.ASICE, configuration, dataFiles);
+        return getDataToSign(container, signatureToken, SignatureProfile.LT);
+    }
+
+    @Benchmark
+    public ContainerValidationResult validate() {
+        Container container = ContainerOpener.open(new ByteArrayInputStream(signedContainer), configuration);
+        return container.validate();
+    }
+
+    @Benchmark
+    public ContainerValidationResult validatePredigested() {
+        Container container = ContainerOpener.open(new ByteArrayInputStream(signedContainer), configuration);
+        digester.digest(container, DigestAlgorithm.SHA256);
+        return container.validate();
+    }
+
+    private List<DataFile> dataFiles() {
+        // New documents every time, so DSS has no digests cached from an earlier invocation
+        return files.stream()
+                .map(path -> new DataFile(path.toString(), MIME_TYPE))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,64 @@
+package org.naare.benchmark;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.DataToSign;
+import org.digidoc4j.Signature;
+import org.digidoc4j.SignatureProfile;
+import org.digidoc4j.signers.PKCS12SignatureToken;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.naare.signing.Helpers.buildContainer;
+import static org.naare.signing.Helpers.getDataToSign;
+import static org.naare.signing.Helpers.getDefaultPkcs12SignatureToken;
+
+/**
+ * Measures signature creation. B_BES finalization is local only, T and LT include the TSA and OCSP round trips.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class SignatureBenchmark {
+
+    @Param({"ASICE", "ASICS"})
+    public Container.DocumentType documentType;
+
+    @Param({"B_BES", "T", "LT"})
+    public SignatureProfile signatureProfile;
+
+    private Configuration configuration;
+    private PKCS12SignatureToken signatureToken;
+
+    private Container container;
+    private DataToSign dataToSign;
+    private byte[] signatureValue;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        configuration = Configuration.of(Configuration.Mode.TEST);
+        signatureToken = getDefaultPkcs12SignatureToken("1234");
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareSignature() {
+        // ASiC-S allows only one signature, so every invocation gets a fresh container
+        container = buildContainer(documentType, configuration);
+        dataToSign = getDataToSign(container, signatureToken, signatureProfile);
+        signatureValue = signatureToken.sign(dataToSign.getDigestAlgorithm(), dataToSign.getDataToSign());
+    }
+
+    @Benchmark
+    public DataToSign buildDataToSign() {
+        return getDataToSign(container, signatureToken, signatureProfile);
+    }
+
+    @Benchmark
+    public Signature finalizeSignature() {
+        return dataToSign.finalize(signatureValue);
+    }
+}
@@ -0,0 +1,59 @@
+package org.naare.benchmark;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerValidationResult;
+import org.digidoc4j.SignatureProfile;
+import org.naare.utils.StreamingContainers;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.naare.signing.Helpers.SignPkcs12;
+import static org.naare.signing.Helpers.buildContainer;
+
+/**
+ * Opens and validates containers with multi-gigabyte data files through the streaming path. The forked JVM
+ * gets a 256 MB heap, so the benchmark fails with OutOfMemoryError if a data file is materialized on heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class StreamingValidationBenchmark {
+
+    @Param({"1024", "4096"})
+    public long dataFileSizeMb;
+
+    private Configuration configuration;
+    private Path containerPath;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        configuration = StreamingContainers.withBigFilesSupport(
+                Configuration.of(Configuration.Mode.TEST), StreamingContainers.DEFAULT_IN_MEMORY_LIMIT_MB);
+        containerPath = Files.createTempFile("streaming-benchmark", ".asice");
+
+        try (InputStream data = StreamingContainers.generatedData(dataFileSizeMb * 1024 * 1024, 42)) {
+            Container container = buildContainer(Container.DocumentType.ASICE, configuration, data, "big.bin", "application/octet-stream");
+            SignPkcs12(container, SignatureProfile.B_BES);
+            container.saveAsFile(containerPath.toString());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(containerPath);
+    }
+
+    @Benchmark
+    public ContainerValidationResult openAndValidate() throws IOException {
+        return StreamingContainers.openAndValidate(containerPath, configuration);
+    }
+}
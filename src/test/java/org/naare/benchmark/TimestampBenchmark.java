@@ -0,0 +1,37 @@
+package org.naare.benchmark;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.Timestamp;
+import org.digidoc4j.TimestampBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.naare.signing.Helpers.buildContainer;
+
+/**
+ * Measures ASiC-S timestamping through the configured archive TSP source.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class TimestampBenchmark {
+
+    private Configuration configuration;
+    private Container container;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        configuration = Configuration.of(Configuration.Mode.TEST);
+        container = buildContainer(Container.DocumentType.ASICS, configuration);
+    }
+
+    @Benchmark
+    public Timestamp invokeTimestamping() {
+        return TimestampBuilder.aTimestamp(container).invokeTimestamping();
+    }
+}
@@ -0,0 +1,70 @@
+package org.naare.benchmark;
+
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import org.digidoc4j.Configuration;
+import org.naare.utils.TrustedCertificateIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.naare.signing.Helpers.getDefaultPkcs12SignatureToken;
+
+/**
+ * Issuer lookup of the test signing certificate among the TEST TSL certificates with
+ * {@link TrustedCertificateIndex} compared to a linear scan verifying every certificate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class TrustedCertificateIndexBenchmark {
+
+    private List<CertificateToken> certificates;
+    private TrustedCertificateIndex index;
+    private CertificateFactory certificateFactory;
+    private byte[] encodedSigner;
+    private CertificateToken signer;
+
+    @Setup(Level.Trial)
+    public void setup() throws CertificateException {
+        certificates = Configuration.of(Configuration.Mode.TEST).getTSL().getCertificates();
+        index = new TrustedCertificateIndex(certificates);
+        certificateFactory = CertificateFactory.getInstance("X.509");
+        encodedSigner = getDefaultPkcs12SignatureToken("1234").getCertificate().getEncoded();
+        if (!index.findIssuer(decodeSigner()).isPresent()) {
+            throw new IllegalStateException("Issuer of the test signing certificate not in the TEST TSL");
+        }
+    }
+
+    /**
+     * CertificateToken caches the public key that verified its signature, so every invocation gets a new token
+     * to measure the signature verification instead of a cache hit.
+     */
+    @Setup(Level.Invocation)
+    public void newSigner() throws CertificateException {
+        signer = decodeSigner();
+    }
+
+    @Benchmark
+    public Optional<CertificateToken> index() {
+        return index.findIssuer(signer);
+    }
+
+    @Benchmark
+    public Optional<CertificateToken> linearScan() {
+        return certificates.stream().filter(signer::isSignedBy).findFirst();
+    }
+
+    private CertificateToken decodeSigner() throws CertificateException {
+        return new CertificateToken((X509Certificate) certificateFactory.generateCertificate(
+                new ByteArrayInputStream(encodedSigner)));
+    }
+}
@@ -0,0 +1,62 @@
+package org.naare.benchmark;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.ContainerOpener;
+import org.digidoc4j.ContainerValidationResult;
+import org.naare.utils.TslRefreshScheduler;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Validation latency percentiles with the configuration of a {@link TslRefreshScheduler}, while the TSL is
+ * idle and while it is refreshed back to back on a background thread. The two {@code refreshing} results
+ * should have close percentiles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class TslRefreshBenchmark {
+
+    @Param({"false", "true"})
+    public boolean refreshing;
+
+    private TslRefreshScheduler scheduler;
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private Thread refreshThread;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        scheduler = new TslRefreshScheduler(() -> Configuration.of(Configuration.Mode.TEST), null, null);
+        scheduler.start(Duration.ofHours(1));
+        if (refreshing) {
+            refreshThread = new Thread(() -> {
+                while (running.get()) {
+                    scheduler.refresh();
+                }
+            }, "tsl-refresh");
+            refreshThread.setDaemon(true);
+            refreshThread.start();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        if (refreshThread != null) {
+            running.set(false);
+            refreshThread.join();
+        }
+        scheduler.close();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ContainerValidationResult validate() {
+        return ContainerOpener.open(BenchmarkContainers.ASICE.getPath(), scheduler.getConfiguration()).validate();
+    }
+}
@@ -0,0 +1,36 @@
+package org.naare.benchmark;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerOpener;
+import org.digidoc4j.ContainerValidationResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ValidationBenchmark {
+
+    @Param({"ASICE", "ASICS", "COMPOSITE_ASICS", "BDOC", "DDOC"})
+    public BenchmarkContainers containerType;
+
+    private Container container;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        container = ContainerOpener.open(containerType.getPath(), configuration);
+        // Load TSL before measuring
+        configuration.getTSL().refresh();
+    }
+
+    @Benchmark
+    public ContainerValidationResult validate() {
+        return container.validate();
+    }
+}
@@ -0,0 +1,113 @@
+package org.naare.extension;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerOpener;
+import org.digidoc4j.SignatureProfile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.naare.utils.BulkExtender;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.naare.signing.Helpers.*;
+
+class BulkExtensionTest {
+
+    @TempDir
+    Path inputDirectory;
+
+    @TempDir
+    Path outputDirectory;
+
+    @Test
+    void extendDirectory_ltToLta_tsaConcurrencyBounded() throws IOException {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+
+        // Containers with LT signatures
+        for (int i = 0; i < 6; i++) {
+            Container container = buildContainer(Container.DocumentType.ASICE, configuration);
+            SignPkcs12(container, SignatureProfile.LT);
+            SignPkcs12(container, SignatureProfile.LT);
+            container.saveAsFile(inputDirectory.resolve("lt_" + i + ".asice").toString());
+        }
+        // Container with expired signature is rejected by the prefilter
+        Files.copy(Paths.get("src/test/resources/files/test/asice/asice_single_signature_with_expired_signer_and_ts_and_ocsp_certificates.asice"),
+                inputDirectory.resolve("expired.asice"));
+        // Not a container
+        Files.write(inputDirectory.resolve("broken.asice"), new byte[]{1, 2, 3});
+
+        List<BulkExtender.Result> results = new CopyOnWriteArrayList<>();
+        BulkExtender.BatchReport report;
+        try (BulkExtender extender = new BulkExtender(configuration, SignatureProfile.LTA, outputDirectory, 4, 2)) {
+            report = extender.extendDirectory(inputDirectory, results::add);
+
+            assertEquals(12, extender.getTsaRequestCount());
+            assertTrue(extender.getMaxConcurrentTsaRequests() <= 2);
+        }
+
+        assertEquals(8, report.getContainerCount());
+        assertEquals(6, report.getExtendedCount());
+        assertEquals(1, report.getSkippedCount());
+        assertEquals(1, report.getFailedCount());
+        assertEquals(12, report.getExtendedSignatureCount());
+        assertEquals(8, report.getLatencyHistogram().getCount());
+
+        Map<String, BulkExtender.Result> resultsByName = results.stream()
+                .collect(Collectors.toMap(r -> r.getPath().getFileName().toString(), r -> r));
+        assertEquals(1, resultsByName.get("expired.asice").getExtensionValidationErrors().size());
+        assertNotNull(resultsByName.get("broken.asice").getError());
+
+        // Only extended containers are written, no temporary files are left behind
+        try (Stream<Path> files = Files.list(outputDirectory)) {
+            assertEquals(6, files.count());
+        }
+        Container extended = ContainerOpener.open(outputDirectory.resolve("lt_0.asice").toString(), configuration);
+        assertEquals(SignatureProfile.LTA, extended.getSignatures().get(0).getProfile());
+        assertEquals(SignatureProfile.LTA, extended.getSignatures().get(1).getProfile());
+        validationResultHasNoIssues(extended.validate());
+    }
+
+    @Test
+    void extendDirectory_inPlace_secondRunSkipsAll() throws IOException {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+
+        Container container = buildContainer(Container.DocumentType.ASICE, configuration);
+        SignPkcs12(container, SignatureProfile.LT);
+        container.saveAsFile(inputDirectory.resolve("lt.asice").toString());
+
+        try (BulkExtender extender = new BulkExtender(configuration, SignatureProfile.LTA, null, 2, 1)) {
+            assertEquals(1, extender.extendDirectory(inputDirectory, result -> {
+            }).getExtendedCount());
+
+            // Signatures already at the target profile are not extended again
+            BulkExtender.BatchReport report = extender.extendDirectory(inputDirectory, result -> {
+            });
+            assertEquals(1, report.getSkippedCount());
+            assertEquals(1, extender.getTsaRequestCount());
+        }
+    }
+
+    @Test
+    void extend_afterClose_failsInsteadOfWaiting() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        Path path = Paths.get("src/test/resources/files/test/asic/EE_LT_sig_valid.asice");
+
+        BulkExtender extender = new BulkExtender(configuration, SignatureProfile.LTA, outputDirectory, 1, 1);
+        extender.close();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> assertThrows(RejectedExecutionException.class,
+                () -> extender.extend(Stream.generate(() -> path).limit(4), result -> fail("Not submitted"))));
+    }
+}
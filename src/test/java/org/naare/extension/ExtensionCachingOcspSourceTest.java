@@ -0,0 +1,92 @@
+package org.naare.extension;
+
+import eu.europa.esig.dss.enumerations.SignatureLevel;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerValidationResult;
+import org.digidoc4j.SignatureProfile;
+import org.digidoc4j.impl.CommonOCSPSource;
+import org.digidoc4j.impl.OcspDataLoaderFactory;
+import org.digidoc4j.impl.SKOnlineOCSPSource;
+import org.digidoc4j.impl.asic.AsicSignature;
+import org.junit.jupiter.api.Test;
+import org.naare.utils.CachingOCSPSource;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.naare.signing.Helpers.*;
+
+class ExtensionCachingOcspSourceTest {
+
+    @Test
+    void extendTToLt_withCachingExtendingOcspSource_secondExtensionServedFromCache() {
+        SignatureProfile fromProfile = SignatureProfile.T;
+        SignatureProfile toProfile = SignatureProfile.LT;
+
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        CachingOCSPSource cachingSource = createCachingSource(configuration);
+
+        // Create two containers with T profile signatures of the same signer
+        Container container1 = buildContainer(Container.DocumentType.ASICE, configuration);
+        SignPkcs12(container1, fromProfile);
+        Container container2 = buildContainer(Container.DocumentType.ASICE, configuration);
+        SignPkcs12(container2, fromProfile);
+
+        // Extend signature profiles, the response of the first extension is produced after both timestamps
+        extend(container1, toProfile, configuration, cachingSource);
+        extend(container2, toProfile, configuration, cachingSource);
+
+        assertEquals(1, cachingSource.getHitCount());
+        assertEquals(1, cachingSource.getMissCount());
+        assertValidLt(container1, toProfile);
+        assertValidLt(container2, toProfile);
+    }
+
+    @Test
+    void extendTToLt_interleavedWithSigning_responseBeforeTimestampNotReused() {
+        SignatureProfile fromProfile = SignatureProfile.T;
+        SignatureProfile toProfile = SignatureProfile.LT;
+
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        CachingOCSPSource cachingSource = createCachingSource(configuration);
+
+        Container container1 = buildContainer(Container.DocumentType.ASICE, configuration);
+        SignPkcs12(container1, fromProfile);
+        extend(container1, toProfile, configuration, cachingSource);
+
+        // The cached response is produced before the timestamp of the second signature
+        Container container2 = buildContainer(Container.DocumentType.ASICE, configuration);
+        SignPkcs12(container2, fromProfile);
+        extend(container2, toProfile, configuration, cachingSource);
+
+        assertEquals(0, cachingSource.getHitCount());
+        assertEquals(2, cachingSource.getMissCount());
+        assertValidLt(container1, toProfile);
+        assertValidLt(container2, toProfile);
+    }
+
+    private static CachingOCSPSource createCachingSource(Configuration configuration) {
+        SKOnlineOCSPSource source = new CommonOCSPSource(configuration);
+        DataLoader loader = new OcspDataLoaderFactory(configuration).create();
+        source.setDataLoader(loader);
+        return new CachingOCSPSource(source, 1000, TimeUnit.MINUTES.toMillis(5));
+    }
+
+    private static void extend(Container container, SignatureProfile profile, Configuration configuration,
+                               CachingOCSPSource cachingSource) {
+        Date timestampTime = container.getSignatures().get(0).getTimeStampCreationTime();
+        configuration.setExtendingOcspSourceFactory(() -> cachingSource.extendingSource(timestampTime));
+        container.extendSignatureProfile(profile);
+    }
+
+    private static void assertValidLt(Container container, SignatureProfile profile) {
+        assertEquals(profile, container.getSignatures().get(0).getProfile());
+        ContainerValidationResult result = container.validate();
+        validationResultHasNoIssues(result);
+        assertEquals(SignatureLevel.XAdES_BASELINE_LT, result.getSignatureReports().get(0).getSignatureFormat());
+        assertEquals(1, ((AsicSignature) container.getSignatures().get(0)).getOrigin().getOcspResponses().size());
+    }
+}
@@ -0,0 +1,108 @@
+package org.naare.extension;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerOpener;
+import org.digidoc4j.SignatureProfile;
+import org.digidoc4j.exceptions.DigiDoc4JException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.naare.utils.ExtensionScreener;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.naare.signing.Helpers.SignPkcs12;
+import static org.naare.signing.Helpers.buildContainer;
+
+class ExtensionScreeningTest {
+
+    private final ExtensionScreener screener = new ExtensionScreener();
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "asice/TEST_ESTEID2018_ASiC-E_XAdES_LT.sce",
+            "asics/TEST_ESTEID2018_ASiC-S_XAdES_LT.scs"})
+    void screening_withValidContainer_pass(String fileName) {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+
+        String filepath = "src/test/resources/files/test/" + fileName;
+        Container container = ContainerOpener.open(filepath, configuration);
+
+        assertTrue(screener.screen(container, SignatureProfile.LTA).isEmpty());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "B_BES, T, true",
+            "B_BES, LTA, true",
+            "LT, LTA, true",
+            "LTA, LTA, true",
+            "LTA, LT, false",
+            "LT, LT, false",
+            "T, B_BES, false",
+            "B_BES, LT_TM, false",
+            "B_BES, B_EPES, false",
+    })
+    void screening_profileTransitions(SignatureProfile fromProfile, SignatureProfile toProfile, boolean allowed) {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+
+        Container container = buildContainer(Container.DocumentType.ASICE, configuration);
+        SignPkcs12(container, fromProfile);
+
+        Map<String, DigiDoc4JException> errors = screener.screen(container, toProfile);
+        assertEquals(allowed, errors.isEmpty());
+        if (!allowed) {
+            // Same message as AsicContainer.getExtensionValidationErrors
+            assertEquals("Not supported: It is not possible to extend " + fromProfile + " signature to " + toProfile + ".",
+                    errors.get(container.getSignatures().get(0).getUniqueId()).getMessage());
+        }
+    }
+
+    @Test
+    void screening_withExpiredSignature_noPoe() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+
+        String filepath = "src/test/resources/files/test/asice/asice_single_signature_with_expired_signer_and_ts_and_ocsp_certificates.asice";
+        Container container = ContainerOpener.open(filepath, configuration);
+
+        Map<String, DigiDoc4JException> errors = screener.screen(container, SignatureProfile.LTA);
+        assertEquals(1, errors.size());
+        assertEquals("The signing certificate has expired and there is no POE during its validity range : [2016-04-13T11:20:28Z - 2021-04-12T20:59:59Z]",
+                errors.get(container.getSignatures().get(0).getUniqueId()).getMessage());
+
+        // Before the signing certificate expired the signature could still be extended
+        ExtensionScreener past = new ExtensionScreener(Clock.fixed(Instant.parse("2021-01-01T00:00:00Z"), ZoneOffset.UTC));
+        assertTrue(past.screen(container, SignatureProfile.LTA).isEmpty());
+    }
+
+    @Test
+    void screening_withSignatureNotCoveringDatafile_fail() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+
+        String filepath = "src/test/resources/files/test/asice/signature_does_not_cover_datafile.asice";
+        Container container = ContainerOpener.open(filepath, configuration);
+
+        Map<String, DigiDoc4JException> errors = screener.screen(container, SignatureProfile.LTA);
+        assertEquals(1, errors.size());
+        assertEquals("Signature references a missing data file: test.xtx",
+                errors.get(container.getSignatures().get(0).getUniqueId()).getMessage());
+    }
+
+    @Test
+    void screening_validTmSignature_notExtendable() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+
+        String filepath = "src/test/resources/files/singleValidSignatureTM.bdoc";
+        Container container = ContainerOpener.open(filepath, configuration);
+
+        Map<String, DigiDoc4JException> errors = screener.screen(container, SignatureProfile.LTA);
+        assertEquals("Not supported: It is not possible to extend LT_TM signature to LTA.",
+                errors.get(container.getSignatures().get(0).getUniqueId()).getMessage());
+    }
+}
@@ -0,0 +1,205 @@
+package org.naare.signing;
+
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+import eu.europa.esig.dss.spi.x509.revocation.ocsp.OCSPSource;
+import eu.europa.esig.dss.spi.x509.revocation.ocsp.OCSPToken;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.SignatureProfile;
+import org.digidoc4j.impl.CommonOCSPSource;
+import org.digidoc4j.impl.OcspDataLoaderFactory;
+import org.digidoc4j.impl.SKOnlineOCSPSource;
+import org.digidoc4j.signers.PKCS12SignatureToken;
+import org.junit.jupiter.api.Test;
+import org.naare.utils.CoalescingOCSPSource;
+import org.naare.utils.LocalTSPSource;
+import org.naare.utils.ParallelSigner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.naare.signing.Helpers.*;
+
+class CoalescingOcspSourceTest {
+
+    private static final CertificateToken SIGNER = new CertificateToken(getDefaultPkcs12SignatureToken("1234").getCertificate());
+    private static final CertificateToken OTHER = new CertificateToken(new LocalTSPSource().getTsaCertificate());
+
+    @Test
+    void requestsDuringCall_shareOneNextCall() throws Exception {
+        AtomicInteger delegateCalls = new AtomicInteger();
+        CoalescingOCSPSource source = new CoalescingOCSPSource(slowSource(delegateCalls, 300));
+
+        List<Future<OCSPToken>> responses = requestConcurrently(source, 20, SIGNER);
+        for (Future<OCSPToken> response : responses) {
+            assertNull(response.get());
+        }
+
+        // The first request makes a call, the 19 arriving during it share the next one
+        assertEquals(2, delegateCalls.get());
+        assertEquals(20, source.getRequestCount());
+        assertEquals(2, source.getCallCount());
+        assertEquals(18, source.getCoalescedCount());
+
+        // Nothing is kept after the call, the next request makes a new call
+        source.getRevocationToken(SIGNER, SIGNER);
+        assertEquals(3, delegateCalls.get());
+    }
+
+    @Test
+    void requestDuringCall_doesNotGetResponseOfThatCall() throws Exception {
+        CountDownLatch firstCallStarted = new CountDownLatch(1);
+        CountDownLatch firstCallReleased = new CountDownLatch(1);
+        AtomicInteger delegateCalls = new AtomicInteger();
+        // Every call fails with its own number, so the call a response came from is known
+        CoalescingOCSPSource source = new CoalescingOCSPSource((certificateToken, issuerCertificateToken) -> {
+            int call = delegateCalls.incrementAndGet();
+            if (call == 1) {
+                firstCallStarted.countDown();
+                await(firstCallReleased);
+            }
+            throw new IllegalStateException("call " + call);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<OCSPToken> first = executor.submit(() -> source.getRevocationToken(SIGNER, SIGNER));
+            assertTrue(firstCallStarted.await(10, TimeUnit.SECONDS));
+            Future<OCSPToken> second = executor.submit(() -> source.getRevocationToken(SIGNER, SIGNER));
+            while (source.getRequestCount() < 2) {
+                Thread.yield();
+            }
+            firstCallReleased.countDown();
+
+            assertEquals("call 1", assertThrows(ExecutionException.class, first::get).getCause().getMessage());
+            assertEquals("call 2", assertThrows(ExecutionException.class, second::get).getCause().getMessage());
+        } finally {
+            firstCallReleased.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void differentCertificates_separateCalls() throws Exception {
+        AtomicInteger delegateCalls = new AtomicInteger();
+        CoalescingOCSPSource source = new CoalescingOCSPSource(slowSource(delegateCalls, 300));
+
+        List<Future<OCSPToken>> responses = requestConcurrently(source, 5, SIGNER);
+        responses.addAll(requestConcurrently(source, 5, OTHER));
+        for (Future<OCSPToken> response : responses) {
+            response.get();
+        }
+
+        assertEquals(4, delegateCalls.get());
+        assertEquals(6, source.getCoalescedCount());
+    }
+
+    @Test
+    void failedCall_failsAllCoalescedRequests() throws Exception {
+        AtomicInteger delegateCalls = new AtomicInteger();
+        OCSPSource slowSource = slowSource(delegateCalls, 300);
+        OCSPSource failingSource = (certificateToken, issuerCertificateToken) -> {
+            slowSource.getRevocationToken(certificateToken, issuerCertificateToken);
+            throw new IllegalStateException("OCSP responder unavailable");
+        };
+        CoalescingOCSPSource source = new CoalescingOCSPSource(failingSource);
+
+        for (Future<OCSPToken> response : requestConcurrently(source, 5, SIGNER)) {
+            ExecutionException exception = assertThrows(ExecutionException.class, response::get);
+            assertEquals("OCSP responder unavailable", exception.getCause().getMessage());
+        }
+        assertEquals(2, delegateCalls.get());
+    }
+
+    @Test
+    void signLtInParallel_withCoalescingSigningOcspSource_valid() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        int signatureCount = 5;
+
+        SKOnlineOCSPSource ocspSource = new CommonOCSPSource(configuration);
+        DataLoader loader = new OcspDataLoaderFactory(configuration).create();
+        ocspSource.setDataLoader(loader);
+        // The first call waits until every signature has requested OCSP, so the burst is coalesced
+        CountDownLatch requested = new CountDownLatch(signatureCount);
+        AtomicInteger delegateCalls = new AtomicInteger();
+        CoalescingOCSPSource coalescingSource = new CoalescingOCSPSource((certificateToken, issuerCertificateToken) -> {
+            if (delegateCalls.incrementAndGet() == 1) {
+                await(requested, 30);
+            }
+            return ocspSource.getRevocationToken(certificateToken, issuerCertificateToken);
+        });
+        configuration.setSigningOcspSourceFactory(() -> (certificateToken, issuerCertificateToken) -> {
+            requested.countDown();
+            return coalescingSource.getRevocationToken(certificateToken, issuerCertificateToken);
+        });
+
+        // Burst of signatures with the same certificate
+        Container container = buildContainer(Container.DocumentType.ASICE, configuration);
+        List<PKCS12SignatureToken> signatureTokens = new ArrayList<>();
+        for (int i = 0; i < signatureCount; i++) {
+            signatureTokens.add(getDefaultPkcs12SignatureToken("1234"));
+        }
+        try (ParallelSigner signer = new ParallelSigner(signatureCount)) {
+            signer.sign(container, signatureTokens, SignatureProfile.LT);
+        }
+
+        assertTrue(coalescingSource.getCoalescedCount() > 0);
+        assertEquals(coalescingSource.getRequestCount(), coalescingSource.getCallCount() + coalescingSource.getCoalescedCount());
+        assertEquals(signatureCount, container.getSignatures().size());
+        validationResultHasNoIssues(container.validate());
+    }
+
+    private static OCSPSource slowSource(AtomicInteger calls, long latencyMillis) {
+        return (certificateToken, issuerCertificateToken) -> {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        };
+    }
+
+    private static List<Future<OCSPToken>> requestConcurrently(CoalescingOCSPSource source, int requests,
+                                                               CertificateToken certificate) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        CountDownLatch ready = new CountDownLatch(requests);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<OCSPToken>> responses = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            responses.add(executor.submit(() -> {
+                ready.countDown();
+                start.await();
+                // Certificate stands in for its issuer, only the CertID matters here
+                return source.getRevocationToken(certificate, certificate);
+            }));
+        }
+        ready.await();
+        start.countDown();
+        executor.shutdown();
+        return responses;
+    }
+
+    private static void await(CountDownLatch latch) {
+        await(latch, Long.MAX_VALUE);
+    }
+
+    private static void await(CountDownLatch latch, long timeoutSeconds) {
+        try {
+            latch.await(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
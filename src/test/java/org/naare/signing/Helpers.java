@@ -4,12 +4,18 @@ import org.digidoc4j.*;
 import org.digidoc4j.signers.PKCS11SignatureToken;
 import org.digidoc4j.signers.PKCS12SignatureToken;
 import org.joda.time.DateTime;
-import org.junit.jupiter.api.Test;
+import org.naare.utils.ContainerSaver;
+
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 public class Helpers {
 
+    private static final ContainerSaver CONTAINER_SAVER = new ContainerSaver(Paths.get("src/test/resources/output"));
+
     public static Container buildContainer(Container.DocumentType type, Configuration config, String filePath, String mimeType) {
         return ContainerBuilder
                 .aContainer(type)
@@ -26,6 +32,26 @@ public class Helpers {
                 .build();
     }
 
+    /**
+     * Builds a container with a {@link LargeDataFile}: the stream is copied to a temporary file and never
+     * held on heap as a whole.
+     */
+    public static Container buildContainer(Container.DocumentType type, Configuration config, InputStream dataStream, String fileName, String mimeType) {
+        return ContainerBuilder
+                .aContainer(type)
+                .withConfiguration(config)
+                .withDataFile(new LargeDataFile(dataStream, fileName, mimeType))
+                .build();
+    }
+
+    public static Container buildContainer(Container.DocumentType type, Configuration config, List<DataFile> dataFiles) {
+        ContainerBuilder builder = ContainerBuilder
+                .aContainer(type)
+                .withConfiguration(config);
+        dataFiles.forEach(builder::withDataFile);
+        return builder.build();
+    }
+
     public static PKCS11SignatureToken getDefaultPkcs11SignatureToken(String PinCode) {
         return new PKCS11SignatureToken("C:/Program Files/IDEMIA/AWP/DLLs/OcsCryptoki.dll", PinCode.toCharArray(), 1);
     }
@@ -60,35 +86,8 @@ public class Helpers {
         return time.toString("dMMy_") + time.getMillisOfDay();
     }
 
-    public static String saveContainer(Container container) {
-
-        StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-        String callerMethodName = stackTrace[2].getMethodName();
-
-        // Validation to check that the container save was initiated form JUnit test method for appropriate filename
-//        try {
-//            if (!Class.forName(stackTrace[2].getClassName()).getDeclaredMethod(callerMethodName).isAnnotationPresent(Test.class)) {
-//                throw new Exception("Must be called from JUnit Test method");
-//            }
-//        } catch (Exception e) {
-//            e.printStackTrace();
-//        }
-
-        String filePath = String.format("src/test/resources/output/%s_%d.%s",
-                callerMethodName,
-                new DateTime().getMillis(),
-                container.getType().toLowerCase());
-        container.saveAsFile(filePath);
-
-        return filePath;
-    }
-
-    public static void saveContainer(Container container, String filename) {
-        String filePath = String.format("src/test/resources/output/%s_%d.%s",
-                filename,
-                new DateTime().getMillis(),
-                container.getType().toLowerCase());
-        container.saveAsFile(filePath);
+    public static String saveContainer(Container container, String filename) {
+        return CONTAINER_SAVER.save(container, filename).toString();
     }
 
     public static void validationResultHasNoIssues(ContainerValidationResult result) {
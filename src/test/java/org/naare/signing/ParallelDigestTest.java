@@ -0,0 +1,118 @@
+package org.naare.signing;
+
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.enumerations.Indication;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerOpener;
+import org.digidoc4j.ContainerValidationResult;
+import org.digidoc4j.DataFile;
+import org.digidoc4j.SignatureProfile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.naare.utils.ParallelDigester;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.naare.signing.Helpers.*;
+
+class ParallelDigestTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void parallelDigests_matchSequentialDigests() throws IOException, NoSuchAlgorithmException {
+        List<Path> files = createDataFiles(50);
+
+        List<byte[]> digests;
+        try (ParallelDigester digester = new ParallelDigester(4)) {
+            digests = digester.digest(files, DigestAlgorithm.SHA256);
+        }
+
+        assertEquals(files.size(), digests.size());
+        for (int i = 0; i < files.size(); i++) {
+            byte[] expected = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(files.get(i)));
+            assertArrayEquals(expected, digests.get(i));
+        }
+    }
+
+    @Test
+    void signContainerWithPredigestedDataFiles_valid() throws IOException {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        List<Path> files = createDataFiles(50);
+
+        List<DataFile> dataFiles;
+        try (ParallelDigester digester = new ParallelDigester(4)) {
+            dataFiles = digester.dataFiles(files, "application/octet-stream", DigestAlgorithm.SHA256);
+        }
+        Container container = buildContainer(Container.DocumentType.ASICE, configuration, dataFiles);
+        SignPkcs12(container, SignatureProfile.LT);
+
+        assertEquals(50, container.getDataFiles().size());
+        validationResultHasNoIssues(container.validate());
+    }
+
+    @Test
+    void predigestOpenedContainer_beforeValidation() throws IOException {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        List<DataFile> dataFiles = createDataFiles(20).stream()
+                .map(path -> new DataFile(path.toString(), "application/octet-stream"))
+                .collect(Collectors.toList());
+        Container container = buildContainer(Container.DocumentType.ASICE, configuration, dataFiles);
+        SignPkcs12(container, SignatureProfile.LT);
+        Path containerFile = tempDir.resolve("parallelDigest.asice");
+        container.saveAsFile(containerFile.toString());
+        Container opened = ContainerOpener.open(containerFile.toString(), configuration);
+
+        try (ParallelDigester digester = new ParallelDigester(4)) {
+            digester.digest(opened, DigestAlgorithm.SHA256);
+        }
+
+        validationResultHasNoIssues(opened.validate());
+    }
+
+    @Test
+    void dataFileChangedAfterDigesting_signatureInvalid() throws IOException {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        List<Path> files = createDataFiles(5);
+
+        List<DataFile> dataFiles;
+        try (ParallelDigester digester = new ParallelDigester(4)) {
+            dataFiles = digester.dataFiles(files, "application/octet-stream", DigestAlgorithm.SHA256);
+        }
+        // The precomputed digest of the first file no longer matches its content
+        byte[] changed = Files.readAllBytes(files.get(0));
+        changed[0] ^= 0x01;
+        Files.write(files.get(0), changed);
+
+        Container container = buildContainer(Container.DocumentType.ASICE, configuration, dataFiles);
+        SignPkcs12(container, SignatureProfile.LT);
+        Path containerFile = tempDir.resolve("wrongDigest.asice");
+        container.saveAsFile(containerFile.toString());
+
+        ContainerValidationResult result = ContainerOpener.open(containerFile.toString(), configuration).validate();
+        assertFalse(result.isValid());
+        assertEquals(Indication.TOTAL_FAILED, result.getSignatureReports().get(0).getIndication());
+    }
+
+    private List<Path> createDataFiles(int count) throws IOException {
+        Random random = new Random(42);
+        List<Path> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] data = new byte[1024 + random.nextInt(300 * 1024)];
+            random.nextBytes(data);
+            files.add(Files.write(tempDir.resolve("data" + i + ".bin"), data));
+        }
+        return files;
+    }
+}
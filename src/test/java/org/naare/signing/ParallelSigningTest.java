@@ -0,0 +1,67 @@
+package org.naare.signing;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerOpener;
+import org.digidoc4j.Signature;
+import org.digidoc4j.SignatureProfile;
+import org.digidoc4j.signers.PKCS12SignatureToken;
+import org.junit.jupiter.api.Test;
+import org.naare.utils.ParallelSigner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.naare.signing.Helpers.*;
+
+class ParallelSigningTest {
+
+    @Test
+    void signPkcs12InParallelExistingContainer() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+
+        Container container = ContainerOpener
+                .open("src/test/resources/containers/historical/1_ASICE_TEST.asice", configuration);
+
+        /* Separate keystore token per signer */
+        List<PKCS12SignatureToken> signatureTokens = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            signatureTokens.add(getDefaultPkcs12SignatureToken("1234"));
+        }
+
+        List<Signature> signatures;
+        try (ParallelSigner signer = new ParallelSigner(10)) {
+            signatures = signer.sign(container, signatureTokens, SignatureProfile.LT);
+        }
+
+        assertEquals(10, signatures.size());
+        assertEquals(11, container.getSignatures().size());
+        // Signatures are added in token order after the existing signature
+        for (int i = 0; i < signatures.size(); i++) {
+            assertEquals(signatures.get(i).getId(), container.getSignatures().get(i + 1).getId());
+            assertEquals(SignatureProfile.LT, container.getSignatures().get(i + 1).getProfile());
+        }
+    }
+
+    @Test
+    void signPkcs12InParallelNewContainer_valid() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+
+        Container container = buildContainer(Container.DocumentType.ASICE, configuration);
+
+        /* Same token for all signatures, signing calls on it are serialized */
+        PKCS12SignatureToken signatureToken = getDefaultPkcs12SignatureToken("1234");
+        List<PKCS12SignatureToken> signatureTokens = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            signatureTokens.add(signatureToken);
+        }
+
+        try (ParallelSigner signer = new ParallelSigner(3)) {
+            signer.sign(container, signatureTokens, SignatureProfile.LT);
+        }
+
+        assertEquals(3, container.getSignatures().size());
+        validationResultHasNoIssues(container.validate());
+    }
+}
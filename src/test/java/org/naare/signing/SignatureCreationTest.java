@@ -248,7 +248,7 @@ class SignatureCreationTest {
                 (signatureProfile == SignatureProfile.B_BES ? "B" : signatureProfile) + "\""));
 
 //        System.out.println(result.getReport());
-//        saveContainer(container);
+//        saveContainer(container, "signWithAllowedProfile");
     }
 
     @ParameterizedTest
@@ -133,6 +133,6 @@ public class SignatureCustomConfTest {
         validationResultHasNoIssues(result);
 
         // Save container
-//        saveContainer(container);
+//        saveContainer(container, "signWithTslV6_Succeeds");
     }
 }
@@ -0,0 +1,107 @@
+package org.naare.signing;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.SignatureProfile;
+import org.digidoc4j.impl.CommonOCSPSource;
+import org.digidoc4j.impl.SKOnlineOCSPSource;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.junit.jupiter.api.Test;
+import org.naare.utils.PooledDataLoader;
+import org.naare.utils.PooledHttpClient;
+import org.naare.utils.StubHttp2Server;
+import org.naare.utils.StubHttpServer;
+import org.naare.utils.TestTSPSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.naare.signing.Helpers.*;
+
+class SignatureDataLoaderTest {
+
+    @Test
+    void pooledDataLoader_reusesConnection() throws IOException {
+        try (StubHttpServer server = new StubHttpServer("OK".getBytes(StandardCharsets.UTF_8), "text/plain", 0);
+             PooledHttpClient httpClient = new PooledHttpClient()) {
+
+            PooledDataLoader timestampLoader = PooledDataLoader.forTimestamps(httpClient);
+            PooledDataLoader ocspLoader = PooledDataLoader.forOcsp(httpClient);
+            for (int i = 0; i < 10; i++) {
+                assertEquals("OK", new String(timestampLoader.post(server.getUrl(), new byte[]{1}), StandardCharsets.UTF_8));
+                assertEquals("OK", new String(ocspLoader.post(server.getUrl(), new byte[]{2}), StandardCharsets.UTF_8));
+            }
+
+            // Sequential requests of both loaders share one kept-alive connection
+            assertEquals(20, server.getRequestCount());
+            assertEquals(1, server.getConnectionCount());
+        }
+    }
+
+    @Test
+    void pooledDataLoader_limitsConnectionsPerHost() throws Exception {
+        try (StubHttpServer server = new StubHttpServer("OK".getBytes(StandardCharsets.UTF_8), "text/plain", 50);
+             PooledHttpClient httpClient = new PooledHttpClient(2, 10, 30000, false)) {
+
+            PooledDataLoader dataLoader = PooledDataLoader.forTimestamps(httpClient);
+            Thread[] threads = new Thread[8];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(() -> dataLoader.post(server.getUrl(), new byte[]{1}));
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(8, server.getRequestCount());
+            assertTrue(server.getConnectionCount() <= 2);
+        }
+    }
+
+    @Test
+    void pooledDataLoader_http2_multiplexesOverOneConnection() throws Exception {
+        try (StubHttp2Server server = new StubHttp2Server("OK".getBytes(StandardCharsets.UTF_8), "text/plain", 50);
+             PooledHttpClient httpClient = new PooledHttpClient(2, 10, 30000, HttpVersionPolicy.FORCE_HTTP_2)) {
+
+            PooledDataLoader dataLoader = PooledDataLoader.forTimestamps(httpClient);
+            // First request opens the connection, the concurrent ones are streams on it
+            dataLoader.post(server.getUrl(), new byte[]{1});
+            Thread[] threads = new Thread[8];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(() -> dataLoader.post(server.getUrl(), new byte[]{1}));
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(9, server.getRequestCount());
+            assertEquals(1, server.getConnectionCount());
+        }
+    }
+
+    @Test
+    void signLta_withPooledDataLoaderForTspAndOcsp_pass() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        PooledHttpClient httpClient = PooledHttpClient.shared();
+
+        // TSA requests through the shared pool
+        TestTSPSource tspSource = new TestTSPSource("http://tsa.demo.sk.ee/tsarsa", PooledDataLoader.forTimestamps(httpClient));
+        configuration.setSignatureTspSourceFactory(() -> tspSource);
+        configuration.setArchiveTspSourceFactory(() -> tspSource);
+
+        // OCSP requests through the same pool
+        SKOnlineOCSPSource ocspSource = new CommonOCSPSource(configuration);
+        ocspSource.setDataLoader(PooledDataLoader.forOcsp(httpClient));
+        configuration.setSigningOcspSourceFactory(() -> ocspSource);
+        configuration.setExtendingOcspSourceFactory(() -> ocspSource);
+
+        // Create signed container
+        Container container = buildContainer(Container.DocumentType.ASICE, configuration);
+        SignPkcs12(container, SignatureProfile.LTA);
+        SignPkcs12(container, SignatureProfile.LTA);
+
+        validationResultHasNoIssues(container.validate());
+    }
+}
@@ -0,0 +1,99 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.TimestampBinary;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.tsp.TimeStampToken;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Timestamp token issued over a Merkle root together with the inclusion proof of a single digest.
+ * Created by {@link AggregatingTSPSource}.
+ */
+public class AggregatedTimestamp {
+
+    /**
+     * One step of the inclusion proof: the sibling hash and whether it is on the left side.
+     */
+    public static class ProofStep {
+
+        private final byte[] siblingHash;
+        private final boolean left;
+
+        public ProofStep(byte[] siblingHash, boolean left) {
+            this.siblingHash = siblingHash;
+            this.left = left;
+        }
+
+        public byte[] getSiblingHash() {
+            return siblingHash;
+        }
+
+        public boolean isLeft() {
+            return left;
+        }
+    }
+
+    private final DigestAlgorithm digestAlgorithm;
+    private final byte[] digest;
+    private final List<ProofStep> proof;
+    private final byte[] rootHash;
+    private final TimestampBinary timestampBinary;
+
+    public AggregatedTimestamp(DigestAlgorithm digestAlgorithm, byte[] digest, List<ProofStep> proof,
+                               byte[] rootHash, TimestampBinary timestampBinary) {
+        this.digestAlgorithm = digestAlgorithm;
+        this.digest = digest;
+        this.proof = Collections.unmodifiableList(proof);
+        this.rootHash = rootHash;
+        this.timestampBinary = timestampBinary;
+    }
+
+    public DigestAlgorithm getDigestAlgorithm() {
+        return digestAlgorithm;
+    }
+
+    public byte[] getDigest() {
+        return digest;
+    }
+
+    public List<ProofStep> getProof() {
+        return proof;
+    }
+
+    public byte[] getRootHash() {
+        return rootHash;
+    }
+
+    public TimestampBinary getTimestampBinary() {
+        return timestampBinary;
+    }
+
+    /**
+     * Recomputes the Merkle root from the digest and inclusion proof and checks that the
+     * timestamp token message imprint matches it.
+     *
+     * @return true if the digest is covered by the timestamp token
+     */
+    public boolean verify() {
+        byte[] hash = AggregatingTSPSource.leafHash(digestAlgorithm, digest);
+        for (ProofStep step : proof) {
+            hash = step.isLeft()
+                    ? AggregatingTSPSource.nodeHash(digestAlgorithm, step.getSiblingHash(), hash)
+                    : AggregatingTSPSource.nodeHash(digestAlgorithm, hash, step.getSiblingHash());
+        }
+        if (!MessageDigest.isEqual(hash, rootHash)) {
+            return false;
+        }
+        try {
+            TimeStampToken token = new TimeStampToken(new CMSSignedData(timestampBinary.getBytes()));
+            return Arrays.equals(rootHash, token.getTimeStampInfo().getMessageImprintDigest());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.TimestampBinary;
+import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects digests submitted during a short window, builds a Merkle tree over them and requests a
+ * single timestamp token over the root from the delegate {@link TSPSource}. Every caller gets the
+ * shared token together with the inclusion proof of its own digest, so TSA calls scale with the
+ * number of batches instead of the number of digests.
+ * <p>
+ * Leaves are hashed as H(0x00 || digest) and inner nodes as H(0x01 || left || right); an odd node
+ * is promoted to the next level unchanged.
+ * <p>
+ * Every batch has its own window timer, cancelled when the batch is timestamped earlier, so a timer never
+ * flushes a later batch. Digests submitted after {@link #close()} are rejected.
+ */
+public class AggregatingTSPSource implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AggregatingTSPSource.class);
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    private static class PendingDigest {
+        private final byte[] digest;
+        private final CompletableFuture<AggregatedTimestamp> result = new CompletableFuture<>();
+
+        private PendingDigest(byte[] digest) {
+            this.digest = digest;
+        }
+    }
+
+    private final TSPSource tspSource;
+    private final DigestAlgorithm digestAlgorithm;
+    private final long windowMillis;
+    private final int maxBatchSize;
+
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+
+    private final AtomicLong tsaCallCount = new AtomicLong();
+    private final AtomicLong digestCount = new AtomicLong();
+
+    private List<PendingDigest> batch = new ArrayList<>();
+    private ScheduledFuture<?> windowTimer;
+    private boolean closed;
+
+    /**
+     * Constructs an AggregatingTSPSource.
+     *
+     * @param tspSource       TSP source used to timestamp the Merkle root
+     * @param digestAlgorithm digest algorithm of the submitted digests and of the Merkle tree
+     * @param windowMillis    how long digests are collected before the batch is timestamped
+     * @param maxBatchSize    batch size at which the batch is timestamped without waiting for the window
+     */
+    public AggregatingTSPSource(TSPSource tspSource, DigestAlgorithm digestAlgorithm, long windowMillis, int maxBatchSize) {
+        this(tspSource, digestAlgorithm, windowMillis, maxBatchSize, Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "aggregating-tsp-source");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * Constructs an AggregatingTSPSource that runs the window timers and the timestamp requests on the given
+     * executor. The executor is not shut down by {@link #close()}.
+     *
+     * @param tspSource       TSP source used to timestamp the Merkle root
+     * @param digestAlgorithm digest algorithm of the submitted digests and of the Merkle tree
+     * @param windowMillis    how long digests are collected before the batch is timestamped
+     * @param maxBatchSize    batch size at which the batch is timestamped without waiting for the window
+     * @param executor        executor of the window timers and the timestamp requests
+     */
+    public AggregatingTSPSource(TSPSource tspSource, DigestAlgorithm digestAlgorithm, long windowMillis, int maxBatchSize,
+                                ScheduledExecutorService executor) {
+        this(tspSource, digestAlgorithm, windowMillis, maxBatchSize, executor, false);
+    }
+
+    private AggregatingTSPSource(TSPSource tspSource, DigestAlgorithm digestAlgorithm, long windowMillis, int maxBatchSize,
+                                 ScheduledExecutorService executor, boolean ownsExecutor) {
+        this.tspSource = Objects.requireNonNull(tspSource, "TSP source cannot be null");
+        this.digestAlgorithm = Objects.requireNonNull(digestAlgorithm, "Digest algorithm cannot be null");
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.executor = Objects.requireNonNull(executor, "Executor cannot be null");
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Adds the digest to the current batch.
+     *
+     * @param digest digest to be timestamped
+     * @return future completed when the batch has been timestamped
+     * @throws RejectedExecutionException if the source has been closed
+     */
+    public CompletableFuture<AggregatedTimestamp> submit(byte[] digest) {
+        PendingDigest pending = new PendingDigest(digest.clone());
+        synchronized (this) {
+            if (closed) {
+                throw new RejectedExecutionException("Aggregating TSP source is closed");
+            }
+            // Flushes are bound to this batch, a flush running after the batch was taken does nothing
+            List<PendingDigest> current = batch;
+            if (current.isEmpty()) {
+                windowTimer = executor.schedule(() -> flush(current), windowMillis, TimeUnit.MILLISECONDS);
+            }
+            current.add(pending);
+            if (current.size() == maxBatchSize) {
+                executor.execute(() -> flush(current));
+            }
+        }
+        return pending.result;
+    }
+
+    /**
+     * Adds the digest to the current batch and waits until it is timestamped.
+     *
+     * @param digest digest to be timestamped
+     * @return timestamp token with the inclusion proof of the digest
+     */
+    public AggregatedTimestamp getTimeStamp(byte[] digest) {
+        try {
+            return submit(digest).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the timestamp", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(String.format("Aggregated timestamping failed: %s", e.getCause().getMessage()), e.getCause());
+        }
+    }
+
+    /**
+     * @return number of timestamp requests made to the delegate TSP source
+     */
+    public long getTsaCallCount() {
+        return tsaCallCount.get();
+    }
+
+    /**
+     * @return number of digests timestamped
+     */
+    public long getDigestCount() {
+        return digestCount.get();
+    }
+
+    @Override
+    public void close() {
+        List<PendingDigest> current;
+        synchronized (this) {
+            closed = true;
+            current = batch;
+        }
+        flush(current);
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private void flush(List<PendingDigest> expected) {
+        List<PendingDigest> current;
+        synchronized (this) {
+            if (batch != expected || batch.isEmpty()) {
+                return;
+            }
+            current = batch;
+            batch = new ArrayList<>();
+            windowTimer.cancel(false);
+            windowTimer = null;
+        }
+
+        try {
+            List<List<byte[]>> levels = buildTree(current);
+            byte[] root = levels.get(levels.size() - 1).get(0);
+
+            TimestampBinary timestampBinary = tspSource.getTimeStampResponse(digestAlgorithm, root);
+            tsaCallCount.incrementAndGet();
+            digestCount.addAndGet(current.size());
+            LOG.debug("Timestamped batch of {} digests", current.size());
+
+            for (int i = 0; i < current.size(); i++) {
+                PendingDigest pending = current.get(i);
+                pending.result.complete(new AggregatedTimestamp(
+                        digestAlgorithm, pending.digest, getProof(levels, i), root, timestampBinary));
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Timestamping batch of {} digests failed: {}", current.size(), e.getMessage());
+            for (PendingDigest pending : current) {
+                pending.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private List<List<byte[]>> buildTree(List<PendingDigest> pending) {
+        List<List<byte[]>> levels = new ArrayList<>();
+        List<byte[]> level = new ArrayList<>(pending.size());
+        for (PendingDigest p : pending) {
+            level.add(leafHash(digestAlgorithm, p.digest));
+        }
+        levels.add(level);
+
+        while (level.size() > 1) {
+            List<byte[]> parent = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i < level.size(); i += 2) {
+                parent.add(i + 1 < level.size()
+                        ? nodeHash(digestAlgorithm, level.get(i), level.get(i + 1))
+                        : level.get(i));
+            }
+            levels.add(parent);
+            level = parent;
+        }
+        return levels;
+    }
+
+    private static List<AggregatedTimestamp.ProofStep> getProof(List<List<byte[]>> levels, int index) {
+        List<AggregatedTimestamp.ProofStep> proof = new ArrayList<>();
+        for (int i = 0; i < levels.size() - 1; i++) {
+            List<byte[]> level = levels.get(i);
+            int sibling = index ^ 1;
+            if (sibling < level.size()) {
+                proof.add(new AggregatedTimestamp.ProofStep(level.get(sibling), sibling < index));
+            }
+            index /= 2;
+        }
+        return proof;
+    }
+
+    static byte[] leafHash(DigestAlgorithm digestAlgorithm, byte[] digest) {
+        MessageDigest messageDigest = getMessageDigest(digestAlgorithm);
+        messageDigest.update(LEAF_PREFIX);
+        return messageDigest.digest(digest);
+    }
+
+    static byte[] nodeHash(DigestAlgorithm digestAlgorithm, byte[] left, byte[] right) {
+        MessageDigest messageDigest = getMessageDigest(digestAlgorithm);
+        messageDigest.update(NODE_PREFIX);
+        messageDigest.update(left);
+        return messageDigest.digest(right);
+    }
+
+    private static MessageDigest getMessageDigest(DigestAlgorithm digestAlgorithm) {
+        try {
+            return MessageDigest.getInstance(digestAlgorithm.getJavaName());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(String.format("Unsupported digest algorithm: %s", digestAlgorithm.getName()), e);
+        }
+    }
+}
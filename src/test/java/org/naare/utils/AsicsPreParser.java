@@ -0,0 +1,264 @@
+package org.naare.utils;
+
+import org.digidoc4j.exceptions.DigiDoc4JException;
+import org.digidoc4j.exceptions.DuplicateTimestampException;
+import org.digidoc4j.exceptions.IllegalContainerContentException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Structural pre-check of ASiC-S containers that reads only the ZIP central directory. Nothing is
+ * inflated, so malformed uploads are rejected before {@code ContainerOpener.open} parses the container.
+ * The same rules as DD4J are applied to the entry names, with the same exception types and messages:
+ * <ul>
+ *     <li>single mimetype and manifest entries;</li>
+ *     <li>no duplicate timestamp tokens or archive manifests;</li>
+ *     <li>no evidence records or CAdES signatures;</li>
+ *     <li>no signatures together with timestamp tokens;</li>
+ *     <li>exactly one data file in a timestamped container, at most one otherwise.</li>
+ * </ul>
+ * Passing the pre-check does not mean the container is valid, only that its structure is not rejected.
+ */
+public final class AsicsPreParser {
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_EOCD_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int CENTRAL_FILE_HEADER_SIGNATURE = 0x02014b50;
+    private static final int EOCD_MIN_SIZE = 22;
+    private static final int ZIP64_EOCD_LOCATOR_SIZE = 20;
+    private static final int ZIP64_EOCD_SIZE = 56;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    /**
+     * Largest central directory read, enough for thousands of entries.
+     */
+    private static final int MAX_CENTRAL_DIRECTORY_SIZE = 4 * 1024 * 1024;
+
+    private static final String META_INF = "META-INF/";
+    private static final String MIMETYPE = "mimetype";
+    private static final String MANIFEST = "META-INF/manifest.xml";
+
+    /**
+     * Random access to the container bytes.
+     */
+    private interface Source {
+
+        long size() throws IOException;
+
+        ByteBuffer read(long position, int length) throws IOException;
+    }
+
+    private AsicsPreParser() {
+    }
+
+    /**
+     * Checks the structure of the ASiC-S container file.
+     *
+     * @param path container path
+     * @return entry names in central directory order
+     * @throws DigiDoc4JException if the structure is not allowed or the file is not a ZIP archive
+     */
+    public static List<String> check(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<String> entryNames = readEntryNames(new Source() {
+                @Override
+                public long size() throws IOException {
+                    return channel.size();
+                }
+
+                @Override
+                public ByteBuffer read(long position, int length) throws IOException {
+                    if (position < 0 || length < 0 || position > channel.size() - length) {
+                        throw new DigiDoc4JException("Unexpected end of ZIP archive");
+                    }
+                    ByteBuffer buffer = ByteBuffer.allocate(length);
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, position + buffer.position()) == -1) {
+                            throw new DigiDoc4JException("Unexpected end of ZIP archive");
+                        }
+                    }
+                    buffer.flip();
+                    return buffer;
+                }
+            });
+            checkEntryNames(entryNames);
+            return entryNames;
+        }
+    }
+
+    /**
+     * Checks the structure of the ASiC-S container held in memory, e.g. an uploaded request body.
+     *
+     * @param container container bytes
+     * @return entry names in central directory order
+     * @throws DigiDoc4JException if the structure is not allowed or the bytes are not a ZIP archive
+     */
+    public static List<String> check(byte[] container) {
+        try {
+            List<String> entryNames = readEntryNames(new Source() {
+                @Override
+                public long size() {
+                    return container.length;
+                }
+
+                @Override
+                public ByteBuffer read(long position, int length) {
+                    if (position < 0 || length < 0 || position > container.length - length) {
+                        throw new DigiDoc4JException("Unexpected end of ZIP archive");
+                    }
+                    return ByteBuffer.wrap(container, (int) position, length).slice();
+                }
+            });
+            checkEntryNames(entryNames);
+            return entryNames;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Applies the DD4J ASiC-S structure rules to the entry names.
+     *
+     * @param entryNames ZIP entry names
+     */
+    static void checkEntryNames(List<String> entryNames) {
+        Set<String> names = new HashSet<>();
+        boolean mimetypeFound = false;
+        boolean manifestFound = false;
+        boolean hasTimestamps = false;
+        boolean hasSignatures = false;
+        List<String> dataFiles = new ArrayList<>();
+
+        for (String name : entryNames) {
+            if (MIMETYPE.equals(name)) {
+                if (mimetypeFound) {
+                    throw new DigiDoc4JException("Multiple mimetype files disallowed");
+                }
+                mimetypeFound = true;
+            } else if (MANIFEST.equalsIgnoreCase(name)) {
+                if (manifestFound) {
+                    throw new DigiDoc4JException("Multiple manifest.xml files disallowed");
+                }
+                manifestFound = true;
+            }
+        }
+
+        for (String name : entryNames) {
+            boolean duplicate = !names.add(name);
+            if (name.endsWith("/") || MIMETYPE.equals(name) || MANIFEST.equalsIgnoreCase(name)) {
+                continue;
+            }
+            if (!name.startsWith(META_INF)) {
+                dataFiles.add(name);
+                continue;
+            }
+            String lowerCaseName = name.toLowerCase(Locale.ROOT);
+            if (lowerCaseName.endsWith(".tst")) {
+                if (duplicate) {
+                    throw new DuplicateTimestampException("Container contains duplicate timestamp token: " + name);
+                }
+                hasTimestamps = true;
+            } else if (lowerCaseName.startsWith("meta-inf/asicarchivemanifest") && lowerCaseName.endsWith(".xml")) {
+                if (duplicate) {
+                    throw new DuplicateTimestampException("Container contains duplicate timestamp manifest: " + name);
+                }
+            } else if (lowerCaseName.startsWith("meta-inf/evidencerecord")) {
+                throw new IllegalContainerContentException("Unsupported evidence record entry: " + name);
+            } else if (lowerCaseName.endsWith(".p7s")) {
+                throw new IllegalContainerContentException("Unsupported CAdES signature entry: " + name);
+            } else if (lowerCaseName.contains("signatures") && lowerCaseName.endsWith(".xml")) {
+                hasSignatures = true;
+            }
+        }
+
+        if (hasSignatures && hasTimestamps) {
+            throw new IllegalContainerContentException("ASiC-S container cannot contain signatures and timestamp tokens simultaneously");
+        }
+        if (hasTimestamps && dataFiles.size() != 1) {
+            throw new IllegalContainerContentException("Timestamped ASiC-S container must contain exactly one datafile");
+        }
+        if (dataFiles.size() > 1) {
+            throw new IllegalContainerContentException("ASiC-S container cannot contain more than one datafile");
+        }
+    }
+
+    private static List<String> readEntryNames(Source source) throws IOException {
+        long size = source.size();
+        if (size < EOCD_MIN_SIZE) {
+            throw new DigiDoc4JException("Not a ZIP archive");
+        }
+
+        // End of central directory record is at the end, followed only by the archive comment
+        int tailLength = (int) Math.min(size, EOCD_MIN_SIZE + MAX_COMMENT_SIZE + ZIP64_EOCD_LOCATOR_SIZE);
+        long tailPosition = size - tailLength;
+        ByteBuffer tail = source.read(tailPosition, tailLength).order(ByteOrder.LITTLE_ENDIAN);
+        int eocd = -1;
+        for (int i = tailLength - EOCD_MIN_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIGNATURE) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            throw new DigiDoc4JException("Not a ZIP archive: end of central directory not found");
+        }
+
+        long entryCount = tail.getShort(eocd + 10) & 0xFFFF;
+        long directorySize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+        long directoryOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+
+        int locator = eocd - ZIP64_EOCD_LOCATOR_SIZE;
+        if (locator >= 0 && tail.getInt(locator) == ZIP64_EOCD_LOCATOR_SIGNATURE) {
+            long zip64EocdOffset = tail.getLong(locator + 8);
+            if (zip64EocdOffset < 0 || zip64EocdOffset > size - ZIP64_EOCD_SIZE) {
+                throw new DigiDoc4JException("Invalid ZIP64 end of central directory");
+            }
+            ByteBuffer zip64Eocd = source.read(zip64EocdOffset, ZIP64_EOCD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (zip64Eocd.getInt(0) != ZIP64_EOCD_SIGNATURE) {
+                throw new DigiDoc4JException("Invalid ZIP64 end of central directory");
+            }
+            entryCount = zip64Eocd.getLong(32);
+            directorySize = zip64Eocd.getLong(40);
+            directoryOffset = zip64Eocd.getLong(48);
+        }
+
+        // ZIP64 values are signed longs in Java, every one must be within the archive before it is used
+        if (entryCount < 0 || directorySize < 0 || directorySize > MAX_CENTRAL_DIRECTORY_SIZE
+                || directoryOffset < 0 || directoryOffset > size - directorySize) {
+            throw new DigiDoc4JException("Invalid ZIP central directory");
+        }
+
+        ByteBuffer directory = source.read(directoryOffset, (int) directorySize).order(ByteOrder.LITTLE_ENDIAN);
+        List<String> entryNames = new ArrayList<>((int) Math.min(entryCount, 1024));
+        int position = 0;
+        for (long i = 0; i < entryCount; i++) {
+            if (position + 46 > directory.limit() || directory.getInt(position) != CENTRAL_FILE_HEADER_SIGNATURE) {
+                throw new DigiDoc4JException("Invalid ZIP central directory entry");
+            }
+            int nameLength = directory.getShort(position + 28) & 0xFFFF;
+            int extraLength = directory.getShort(position + 30) & 0xFFFF;
+            int commentLength = directory.getShort(position + 32) & 0xFFFF;
+            if (position + 46 + nameLength > directory.limit()) {
+                throw new DigiDoc4JException("Invalid ZIP central directory entry");
+            }
+            byte[] name = new byte[nameLength];
+            directory.position(position + 46);
+            directory.get(name);
+            entryNames.add(new String(name, StandardCharsets.UTF_8));
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+        return entryNames;
+    }
+}
@@ -0,0 +1,223 @@
+package org.naare.utils;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerOpener;
+import org.digidoc4j.ContainerValidationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Opens and validates containers in parallel on a bounded executor. All containers share one
+ * {@link Configuration}, so the TSL is loaded once and reused. Results are handed to the listener as soon
+ * as each container finishes, and validation latencies are collected into a {@link LatencyHistogram}.
+ */
+public class BatchValidator implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchValidator.class);
+
+    public static final Set<String> CONTAINER_EXTENSIONS = new HashSet<>(
+            Arrays.asList("asice", "sce", "asics", "scs", "bdoc", "ddoc", "pdf"));
+
+    /**
+     * Validation outcome of a single container.
+     */
+    public static class Result {
+
+        private final Path path;
+        private final ContainerValidationResult validationResult;
+        private final Exception error;
+        private final long durationNanos;
+
+        private Result(Path path, ContainerValidationResult validationResult, Exception error, long durationNanos) {
+            this.path = path;
+            this.validationResult = validationResult;
+            this.error = error;
+            this.durationNanos = durationNanos;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * @return validation result, or null if the container could not be opened or validated
+         */
+        public ContainerValidationResult getValidationResult() {
+            return validationResult;
+        }
+
+        /**
+         * @return exception thrown while opening or validating, or null
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        public boolean isValid() {
+            return validationResult != null && validationResult.isValid();
+        }
+    }
+
+    private final Configuration configuration;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final boolean ownsExecutor;
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+    /**
+     * Constructs a BatchValidator with a ForkJoinPool of the given parallelism.
+     *
+     * @param configuration configuration shared by all containers
+     * @param parallelism   number of containers validated at the same time
+     */
+    public BatchValidator(Configuration configuration, int parallelism) {
+        this(configuration, new ForkJoinPool(parallelism), parallelism, true);
+    }
+
+    /**
+     * Constructs a BatchValidator on the given executor, e.g. a virtual thread per task executor on newer JDKs.
+     *
+     * @param configuration configuration shared by all containers
+     * @param executor      executor running the validations
+     * @param maxInFlight   maximum number of containers submitted but not yet finished
+     */
+    public BatchValidator(Configuration configuration, ExecutorService executor, int maxInFlight) {
+        this(configuration, executor, maxInFlight, false);
+    }
+
+    private BatchValidator(Configuration configuration, ExecutorService executor, int maxInFlight, boolean ownsExecutor) {
+        this.configuration = Objects.requireNonNull(configuration, "Configuration cannot be null");
+        this.executor = executor;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.ownsExecutor = ownsExecutor;
+
+        // Load the TSL once before the first container is validated
+        long start = System.nanoTime();
+        int certificateCount = configuration.getTSL().getCertificates().size();
+        LOG.info("TSL loaded with {} certificates in {} ms", certificateCount, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Validates all containers in the directory (not recursively).
+     *
+     * @param directory directory containing the containers
+     * @param listener  called from the worker thread when a container has been validated
+     * @return number of containers validated
+     */
+    public int validateDirectory(Path directory, Consumer<Result> listener) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return validate(paths.filter(Files::isRegularFile).filter(BatchValidator::isContainer), listener);
+        }
+    }
+
+    /**
+     * Validates the containers and waits until all of them are finished.
+     *
+     * @param paths    container paths
+     * @param listener called from the worker thread when a container has been validated
+     * @return number of containers validated
+     */
+    public int validate(Stream<Path> paths, Consumer<Result> listener) {
+        Phaser phaser = new Phaser(1);
+        int count = 0;
+        RejectedExecutionException rejection = null;
+        Iterator<Path> iterator = paths.iterator();
+        while (iterator.hasNext()) {
+            Path path = iterator.next();
+            inFlight.acquireUninterruptibly();
+            phaser.register();
+            try {
+                executor.execute(() -> {
+                    try {
+                        listener.accept(validate(path));
+                    } finally {
+                        inFlight.release();
+                        phaser.arriveAndDeregister();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The rejected task never runs, release its permit and party and wait for the submitted ones
+                inFlight.release();
+                phaser.arriveAndDeregister();
+                rejection = e;
+                break;
+            }
+            count++;
+        }
+        phaser.arriveAndAwaitAdvance();
+        if (rejection != null) {
+            LOG.warn("Validation stopped after {} containers, executor rejected the next one", count);
+            throw rejection;
+        }
+        LOG.info("Validated {} containers: {}", count, latencyHistogram);
+        return count;
+    }
+
+    /**
+     * Opens and validates a single container on the calling thread.
+     *
+     * @param path container path
+     * @return validation outcome
+     */
+    public Result validate(Path path) {
+        long start = System.nanoTime();
+        try {
+            Container container = ContainerOpener.open(path.toString(), configuration);
+            ContainerValidationResult validationResult = container.validate();
+            long duration = System.nanoTime() - start;
+            latencyHistogram.record(duration);
+            return new Result(path, validationResult, null, duration);
+        } catch (Exception e) {
+            long duration = System.nanoTime() - start;
+            latencyHistogram.record(duration);
+            LOG.warn("Validation of {} failed: {}", path, e.getMessage());
+            return new Result(path, null, e, duration);
+        }
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Returns whether the file has a container extension. Package-private, also used by {@link BulkExtender}
+     * to select the containers of a store.
+     *
+     * @param path file path
+     * @return true for a container file name
+     */
+    static boolean isContainer(Path path) {
+        String fileName = path.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 && CONTAINER_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,404 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.model.TimestampBinary;
+import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerOpener;
+import org.digidoc4j.Signature;
+import org.digidoc4j.SignatureProfile;
+import org.digidoc4j.exceptions.DigiDoc4JException;
+import org.digidoc4j.impl.asic.AsicContainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Extends the signatures of many containers to a target profile, e.g. LT to LTA before the signer
+ * certificates expire. Each container is opened, screened with an {@link ExtensionScreener}, prefiltered with
+ * {@link AsicContainer#getExtensionValidationErrors(SignatureProfile, List)}, extended and written back atomically
+ * with a {@link ContainerSaver}. Containers are processed on a fixed number of workers, while the number of
+ * concurrent archive timestamp requests is bounded separately so that the TSA is not overloaded.
+ * <p>
+ * Every archive timestamp covers one signature, so each extended signature still costs one TSA request.
+ * The shared {@link Configuration} is changed to use the throttled archive TSP source.
+ */
+public class BulkExtender implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkExtender.class);
+
+    /**
+     * Outcome of a single container.
+     */
+    public enum Status {
+        /**
+         * At least one signature was extended and the container was written.
+         */
+        EXTENDED,
+        /**
+         * No signature needed or allowed extension, the container was not written.
+         */
+        SKIPPED,
+        /**
+         * Opening, extending or writing the container failed.
+         */
+        FAILED
+    }
+
+    /**
+     * Extension outcome of a single container.
+     */
+    public static class Result {
+
+        private final Path path;
+        private final Status status;
+        private final int extendedSignatureCount;
+        private final Map<String, DigiDoc4JException> extensionValidationErrors;
+        private final Exception error;
+
+        private Result(Path path, Status status, int extendedSignatureCount,
+                       Map<String, DigiDoc4JException> extensionValidationErrors, Exception error) {
+            this.path = path;
+            this.status = status;
+            this.extendedSignatureCount = extendedSignatureCount;
+            this.extensionValidationErrors = extensionValidationErrors;
+            this.error = error;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public int getExtendedSignatureCount() {
+            return extendedSignatureCount;
+        }
+
+        /**
+         * @return prefilter errors by signature unique ID, empty if the container could not be opened
+         */
+        public Map<String, DigiDoc4JException> getExtensionValidationErrors() {
+            return extensionValidationErrors;
+        }
+
+        /**
+         * @return exception thrown while opening, extending or writing, or null
+         */
+        public Exception getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Metrics of one {@link #extend(Stream, Consumer)} call.
+     */
+    public static class BatchReport {
+
+        private final int extendedCount;
+        private final int skippedCount;
+        private final int failedCount;
+        private final int extendedSignatureCount;
+        private final long durationNanos;
+        private final LatencyHistogram latencyHistogram;
+
+        private BatchReport(int extendedCount, int skippedCount, int failedCount, int extendedSignatureCount,
+                            long durationNanos, LatencyHistogram latencyHistogram) {
+            this.extendedCount = extendedCount;
+            this.skippedCount = skippedCount;
+            this.failedCount = failedCount;
+            this.extendedSignatureCount = extendedSignatureCount;
+            this.durationNanos = durationNanos;
+            this.latencyHistogram = latencyHistogram;
+        }
+
+        public int getContainerCount() {
+            return extendedCount + skippedCount + failedCount;
+        }
+
+        public int getExtendedCount() {
+            return extendedCount;
+        }
+
+        public int getSkippedCount() {
+            return skippedCount;
+        }
+
+        public int getFailedCount() {
+            return failedCount;
+        }
+
+        public int getExtendedSignatureCount() {
+            return extendedSignatureCount;
+        }
+
+        public long getDurationMillis() {
+            return durationNanos / 1_000_000;
+        }
+
+        public double getContainersPerSecond() {
+            return durationNanos == 0 ? 0 : getContainerCount() * 1_000_000_000.0 / durationNanos;
+        }
+
+        /**
+         * @return per container latency of this batch
+         */
+        public LatencyHistogram getLatencyHistogram() {
+            return latencyHistogram;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("containers=%d, extended=%d, skipped=%d, failed=%d, signatures=%d, duration=%dms, "
+                            + "throughput=%.1f containers/s, latency: %s",
+                    getContainerCount(), extendedCount, skippedCount, failedCount, extendedSignatureCount,
+                    getDurationMillis(), getContainersPerSecond(), latencyHistogram);
+        }
+    }
+
+    private final Configuration configuration;
+    private final SignatureProfile targetProfile;
+    private final ContainerSaver containerSaver;
+    private final Path outputDirectory;
+    private final ThrottledTSPSource archiveTspSource;
+    private final ExtensionScreener screener = new ExtensionScreener();
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+
+    /**
+     * Constructs a BulkExtender that takes archive timestamps from the configured archive TSA.
+     *
+     * @param configuration      configuration shared by all containers
+     * @param targetProfile      profile to extend to
+     * @param outputDirectory    directory of the extended containers, or null to replace the originals
+     * @param workers            number of containers processed at the same time
+     * @param maxTsaConcurrency  maximum number of concurrent timestamp requests
+     */
+    public BulkExtender(Configuration configuration, SignatureProfile targetProfile, Path outputDirectory,
+                        int workers, int maxTsaConcurrency) {
+        this(configuration, targetProfile, outputDirectory, workers,
+                new TestTSPSource(configuration.getTspSourceForArchiveTimestamps()), maxTsaConcurrency);
+    }
+
+    /**
+     * Constructs a BulkExtender that takes archive timestamps from the given TSP source.
+     *
+     * @param configuration      configuration shared by all containers
+     * @param targetProfile      profile to extend to
+     * @param outputDirectory    directory of the extended containers, or null to replace the originals
+     * @param workers            number of containers processed at the same time
+     * @param archiveTspSource   TSP source of the archive timestamps
+     * @param maxTsaConcurrency  maximum number of concurrent timestamp requests
+     */
+    public BulkExtender(Configuration configuration, SignatureProfile targetProfile, Path outputDirectory,
+                        int workers, TSPSource archiveTspSource, int maxTsaConcurrency) {
+        this.configuration = Objects.requireNonNull(configuration, "Configuration cannot be null");
+        this.targetProfile = Objects.requireNonNull(targetProfile, "Target profile cannot be null");
+        this.outputDirectory = outputDirectory;
+        this.containerSaver = new ContainerSaver(outputDirectory);
+        this.archiveTspSource = new ThrottledTSPSource(archiveTspSource, maxTsaConcurrency);
+        this.executor = Executors.newFixedThreadPool(workers);
+        // Keep the queue short so that paths are read from the store only when a worker is about to be free
+        this.inFlight = new Semaphore(workers * 2);
+
+        configuration.setArchiveTspSourceFactory(() -> this.archiveTspSource);
+    }
+
+    /**
+     * Extends all containers in the directory (not recursively).
+     *
+     * @param directory directory containing the containers
+     * @param listener  called from the worker thread when a container has been processed
+     * @return batch metrics
+     */
+    public BatchReport extendDirectory(Path directory, Consumer<Result> listener) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return extend(paths.filter(Files::isRegularFile).filter(BatchValidator::isContainer), listener);
+        }
+    }
+
+    /**
+     * Extends the containers as one batch and waits until all of them are processed.
+     *
+     * @param paths    container paths
+     * @param listener called from the worker thread when a container has been processed
+     * @return batch metrics
+     */
+    public BatchReport extend(Stream<Path> paths, Consumer<Result> listener) {
+        long start = System.nanoTime();
+        LatencyHistogram latencyHistogram = new LatencyHistogram();
+        AtomicInteger extendedCount = new AtomicInteger();
+        AtomicInteger skippedCount = new AtomicInteger();
+        AtomicInteger failedCount = new AtomicInteger();
+        AtomicInteger extendedSignatureCount = new AtomicInteger();
+
+        Phaser phaser = new Phaser(1);
+        int count = 0;
+        RejectedExecutionException rejection = null;
+        Iterator<Path> iterator = paths.iterator();
+        while (iterator.hasNext()) {
+            Path path = iterator.next();
+            inFlight.acquireUninterruptibly();
+            phaser.register();
+            try {
+                executor.execute(() -> {
+                    try {
+                        long containerStart = System.nanoTime();
+                        Result result = extend(path);
+                        latencyHistogram.record(System.nanoTime() - containerStart);
+                        switch (result.getStatus()) {
+                            case EXTENDED:
+                                extendedCount.incrementAndGet();
+                                extendedSignatureCount.addAndGet(result.getExtendedSignatureCount());
+                                break;
+                            case SKIPPED:
+                                skippedCount.incrementAndGet();
+                                break;
+                            default:
+                                failedCount.incrementAndGet();
+                        }
+                        listener.accept(result);
+                    } finally {
+                        inFlight.release();
+                        phaser.arriveAndDeregister();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The rejected task never runs, release its permit and party and wait for the submitted ones
+                inFlight.release();
+                phaser.arriveAndDeregister();
+                rejection = e;
+                break;
+            }
+            count++;
+        }
+        phaser.arriveAndAwaitAdvance();
+        if (rejection != null) {
+            LOG.warn("Extension stopped after {} containers, executor rejected the next one", count);
+            throw rejection;
+        }
+
+        BatchReport report = new BatchReport(extendedCount.get(), skippedCount.get(), failedCount.get(),
+                extendedSignatureCount.get(), System.nanoTime() - start, latencyHistogram);
+        LOG.info("Extension batch finished: {}", report);
+        return report;
+    }
+
+    /**
+     * Extends a single container on the calling thread.
+     *
+     * @param path container path
+     * @return extension outcome
+     */
+    public Result extend(Path path) {
+        Map<String, DigiDoc4JException> errors = Collections.emptyMap();
+        try {
+            Container container = ContainerOpener.open(path.toString(), configuration);
+            if (!(container instanceof AsicContainer)) {
+                return new Result(path, Status.SKIPPED, 0, errors, null);
+            }
+
+            // Signatures already at the target profile are left as they are
+            List<Signature> candidates = container.getSignatures().stream()
+                    .filter(s -> s.getProfile() != targetProfile)
+                    .collect(Collectors.toList());
+
+            // Cheap screening first, full extension validation only for signatures that passed it
+            errors = new LinkedHashMap<>(screener.screen(container, targetProfile, candidates));
+            candidates = withoutErrors(candidates, errors);
+            if (!candidates.isEmpty()) {
+                errors.putAll(((AsicContainer) container).getExtensionValidationErrors(targetProfile, candidates));
+            }
+            List<Signature> signatures = withoutErrors(candidates, errors);
+            if (signatures.isEmpty()) {
+                return new Result(path, Status.SKIPPED, 0, errors, null);
+            }
+
+            container.extendSignatureProfile(targetProfile, signatures);
+            Path target = outputDirectory == null ? path : outputDirectory.resolve(path.getFileName());
+            containerSaver.saveAs(container, target);
+            return new Result(path, Status.EXTENDED, signatures.size(), errors, null);
+        } catch (Exception e) {
+            LOG.warn("Extension of {} failed: {}", path, e.getMessage());
+            return new Result(path, Status.FAILED, 0, errors, e);
+        }
+    }
+
+    private static List<Signature> withoutErrors(List<Signature> signatures, Map<String, DigiDoc4JException> errors) {
+        return signatures.stream()
+                .filter(s -> !errors.containsKey(s.getUniqueId()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return highest number of concurrent timestamp requests seen
+     */
+    public int getMaxConcurrentTsaRequests() {
+        return archiveTspSource.maxConcurrent.get();
+    }
+
+    /**
+     * @return number of archive timestamp requests
+     */
+    public long getTsaRequestCount() {
+        return archiveTspSource.requestCount.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * TSP source that allows a limited number of requests to the delegate at the same time.
+     */
+    static class ThrottledTSPSource implements TSPSource {
+
+        private final TSPSource delegate;
+        private final Semaphore permits;
+        private final AtomicInteger concurrent = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+        private final AtomicLong requestCount = new AtomicLong();
+
+        ThrottledTSPSource(TSPSource delegate, int maxConcurrency) {
+            this.delegate = Objects.requireNonNull(delegate, "TSP source cannot be null");
+            this.permits = new Semaphore(maxConcurrency, true);
+        }
+
+        @Override
+        public TimestampBinary getTimeStampResponse(DigestAlgorithm digestAlgorithm, byte[] digest) throws DSSException {
+            permits.acquireUninterruptibly();
+            try {
+                maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                requestCount.incrementAndGet();
+                return delegate.getTimeStampResponse(digestAlgorithm, digest);
+            } finally {
+                concurrent.decrementAndGet();
+                permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.spi.CertificateExtensionsUtils;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+import eu.europa.esig.dss.spi.x509.aia.AIASource;
+import eu.europa.esig.dss.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link AIASource} that keeps the issuer certificates downloaded from AIA caIssuers URLs in memory and in
+ * a store directory, one file per URL, so chain building downloads an issuer once and later runs and
+ * restarts read it from the store. A stored response is checked against its SHA-256 digest when read, and
+ * a corrupt file is downloaded again.
+ * <p>
+ * Entries older than the refresh interval are still served, and a download replacing them is started in
+ * the background. {@link #prefetch(Collection)} downloads the issuers of the CA certificates of a loaded
+ * TSL at startup, so chain building does not wait for the network:
+ * <pre>
+ * configuration.setAiaSourceFactory(() -> aiaSource);
+ * aiaSource.prefetch(configuration.getTSL().getCertificates());
+ * </pre>
+ * Store file layout: magic "DD4JAIA1", URL (UTF), download time (long), SHA-256 digest of the response
+ * (32 bytes), response length (int) followed by the response as downloaded (DER certificate or PKCS#7).
+ */
+public class CachingAIASource implements AIASource, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingAIASource.class);
+
+    private static final byte[] MAGIC = "DD4JAIA1".getBytes(StandardCharsets.US_ASCII);
+    private static final String FILE_SUFFIX = ".aia";
+    private static final int DOWNLOAD_THREADS = 8;
+
+    private static class Entry {
+        private final Set<CertificateToken> certificates;
+        private final long downloadedAt;
+
+        private Entry(Set<CertificateToken> certificates, long downloadedAt) {
+            this.certificates = certificates;
+            this.downloadedAt = downloadedAt;
+        }
+    }
+
+    private final DataLoader dataLoader;
+    private final Path directory;
+    private final long refreshMillis;
+
+    private final ConcurrentMap<String, CompletableFuture<Entry>> entries = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newFixedThreadPool(DOWNLOAD_THREADS);
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong storeReadCount = new AtomicLong();
+    private final AtomicLong downloadCount = new AtomicLong();
+
+    /**
+     * Constructs a CachingAIASource.
+     *
+     * @param dataLoader      data loader for AIA downloads
+     * @param directory       store directory, created if missing
+     * @param refreshInterval age after which an entry is downloaded again in the background
+     */
+    public CachingAIASource(DataLoader dataLoader, Path directory, Duration refreshInterval) throws IOException {
+        this.dataLoader = dataLoader;
+        this.directory = Files.createDirectories(directory);
+        this.refreshMillis = refreshInterval.toMillis();
+    }
+
+    @Override
+    public Set<CertificateToken> getCertificatesByAIA(CertificateToken certificateToken) {
+        List<String> urls = CertificateExtensionsUtils.getCAIssuersAccessUrls(certificateToken);
+        if (Utils.isCollectionEmpty(urls)) {
+            return Collections.emptySet();
+        }
+        Set<CertificateToken> certificates = new LinkedHashSet<>();
+        for (String url : urls) {
+            certificates.addAll(getCertificates(url));
+        }
+        return certificates;
+    }
+
+    /**
+     * Downloads the AIA issuers of the certificates concurrently, e.g. of every CA certificate in a loaded
+     * TSL. Issuers already in the store are read from it.
+     *
+     * @param certificates certificates whose issuers are loaded
+     * @return number of AIA URLs loaded
+     */
+    public int prefetch(Collection<CertificateToken> certificates) {
+        long start = System.nanoTime();
+        Set<String> urls = new LinkedHashSet<>();
+        for (CertificateToken certificate : certificates) {
+            if (certificate.isCA()) {
+                urls.addAll(CertificateExtensionsUtils.getCAIssuersAccessUrls(certificate));
+            }
+        }
+        List<Future<Set<CertificateToken>>> futures = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            futures.add(executor.submit(() -> getCertificates(url)));
+        }
+        for (Future<Set<CertificateToken>> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while prefetching AIA certificates", e);
+            } catch (ExecutionException e) {
+                LOG.warn("AIA prefetch failed: {}", e.getCause().getMessage());
+            }
+        }
+        LOG.info("Prefetched {} AIA URLs of {} certificates in {} ms",
+                urls.size(), certificates.size(), (System.nanoTime() - start) / 1_000_000);
+        return urls.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getStoreReadCount() {
+        return storeReadCount.get();
+    }
+
+    public long getDownloadCount() {
+        return downloadCount.get();
+    }
+
+    /**
+     * Returns the store file of the AIA URL.
+     *
+     * @param url AIA caIssuers URL
+     * @return store file path
+     */
+    public Path getFile(String url) {
+        return directory.resolve(Utils.toHex(sha256().digest(url.getBytes(StandardCharsets.UTF_8))) + FILE_SUFFIX);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private Set<CertificateToken> getCertificates(String url) {
+        CompletableFuture<Entry> future = entries.get(url);
+        if (future == null) {
+            CompletableFuture<Entry> loading = new CompletableFuture<>();
+            future = entries.putIfAbsent(url, loading);
+            if (future == null) {
+                // Concurrent requests for the URL wait for this load
+                future = loading;
+                loading.complete(load(url));
+            }
+        } else {
+            hitCount.incrementAndGet();
+        }
+        Entry entry = future.join();
+        if (System.currentTimeMillis() - entry.downloadedAt > refreshMillis && refreshing.add(url)) {
+            executor.submit(() -> {
+                try {
+                    Entry refreshed = download(url);
+                    if (refreshed != null) {
+                        entries.put(url, CompletableFuture.completedFuture(refreshed));
+                    }
+                } finally {
+                    refreshing.remove(url);
+                }
+            });
+        }
+        return entry.certificates;
+    }
+
+    private Entry load(String url) {
+        Entry entry = read(url);
+        if (entry != null) {
+            storeReadCount.incrementAndGet();
+            return entry;
+        }
+        entry = download(url);
+        // A failed download is tried again in the background on the next request
+        return entry != null ? entry : new Entry(Collections.emptySet(), 0);
+    }
+
+    private Entry download(String url) {
+        downloadCount.incrementAndGet();
+        long downloadedAt = System.currentTimeMillis();
+        byte[] response;
+        Set<CertificateToken> certificates;
+        try {
+            response = dataLoader.get(url);
+            certificates = parse(response);
+        } catch (RuntimeException | CertificateException e) {
+            LOG.warn("Unable to load AIA certificates from {}: {}", url, e.getMessage());
+            return null;
+        }
+        try {
+            write(url, downloadedAt, response);
+        } catch (IOException e) {
+            LOG.warn("Unable to store AIA certificates of {}: {}", url, e.getMessage());
+        }
+        LOG.debug("Downloaded {} AIA certificates from {}", certificates.size(), url);
+        return new Entry(certificates, downloadedAt);
+    }
+
+    private Entry read(String url) {
+        Path file = getFile(url);
+        try (InputStream fileIn = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(MAGIC, magic) || !url.equals(in.readUTF())) {
+                throw new IOException("Not an AIA store entry of the URL");
+            }
+            long downloadedAt = in.readLong();
+            byte[] digest = new byte[32];
+            in.readFully(digest);
+            byte[] response = new byte[in.readInt()];
+            in.readFully(response);
+            if (!MessageDigest.isEqual(digest, sha256().digest(response))) {
+                throw new IOException("Digest mismatch");
+            }
+            return new Entry(parse(response), downloadedAt);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | CertificateException | RuntimeException e) {
+            LOG.warn("Discarding AIA store entry {} of {}: {}", file, url, e.getMessage());
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                LOG.warn("Unable to delete {}: {}", file, ex.getMessage());
+            }
+            return null;
+        }
+    }
+
+    private void write(String url, long downloadedAt, byte[] response) throws IOException {
+        Path file = getFile(url);
+        Path tempFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream fileOut = Files.newOutputStream(tempFile);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+                out.write(MAGIC);
+                out.writeUTF(url);
+                out.writeLong(downloadedAt);
+                out.write(sha256().digest(response));
+                out.writeInt(response.length);
+                out.write(response);
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static Set<CertificateToken> parse(byte[] response) throws CertificateException {
+        // A single DER or PEM certificate, or a PKCS#7 certs-only structure
+        Collection<? extends Certificate> certificates = CertificateFactory.getInstance("X.509")
+                .generateCertificates(new ByteArrayInputStream(response));
+        Set<CertificateToken> tokens = new HashSet<>();
+        for (Certificate certificate : certificates) {
+            tokens.add(new CertificateToken((X509Certificate) certificate));
+        }
+        return Collections.unmodifiableSet(tokens);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not supported", e);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.spi.x509.revocation.ocsp.OCSPSource;
+import eu.europa.esig.dss.spi.x509.revocation.ocsp.OCSPToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link OCSPSource} decorator that caches OCSP responses by CertID (issuer name hash, issuer key hash
+ * and serial number). The cache is bounded and evicts the least recently used entry. An entry expires at
+ * the response nextUpdate or when the freshness window counted from the response production time ends,
+ * whichever comes first.
+ * <p>
+ * The source itself is intended for validation. An extended signature needs an OCSP response produced after
+ * its signature timestamp, so for extension use {@link #extendingSource(Date)} with the timestamp time of the
+ * signature being extended. Do not use the cache for signing: signing responses are bound to a nonce of the
+ * signature and are never shared.
+ */
+public class CachingOCSPSource implements OCSPSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingOCSPSource.class);
+
+    private static class CacheEntry {
+        private final OCSPToken token;
+        private final long expiresAt;
+
+        private CacheEntry(OCSPToken token, long expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * The OCSP source responses are requested from.
+     */
+    private final OCSPSource ocspSource;
+
+    /**
+     * Maximum time in milliseconds a response is served from the cache after it was produced.
+     */
+    private final long freshnessMillis;
+
+    private final transient Map<OcspCertificateId, CacheEntry> cache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Constructs a CachingOCSPSource.
+     *
+     * @param ocspSource      OCSP source to query on cache miss
+     * @param maxEntries      maximum number of cached responses
+     * @param freshnessMillis maximum age of a cached response
+     */
+    public CachingOCSPSource(OCSPSource ocspSource, int maxEntries, long freshnessMillis) {
+        this.ocspSource = Objects.requireNonNull(ocspSource, "OCSP source cannot be null");
+        this.freshnessMillis = freshnessMillis;
+        this.cache = new LinkedHashMap<OcspCertificateId, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<OcspCertificateId, CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public OCSPToken getRevocationToken(CertificateToken certificateToken, CertificateToken issuerCertificateToken) {
+        return getRevocationToken(certificateToken, issuerCertificateToken, null);
+    }
+
+    /**
+     * Returns an OCSP source for extending a signature. A cached response is served only when it was produced
+     * after the signature timestamp, otherwise a new response is requested and stored. The source is created
+     * per extended signature, e.g.:
+     * <pre>
+     * configuration.setExtendingOcspSourceFactory(() -&gt; cache.extendingSource(signature.getTimeStampCreationTime()));
+     * </pre>
+     *
+     * @param notBefore signature timestamp time of the signature being extended
+     * @return OCSP source for {@code setExtendingOcspSourceFactory}
+     */
+    public OCSPSource extendingSource(Date notBefore) {
+        Objects.requireNonNull(notBefore, "Signature timestamp time cannot be null");
+        return (certificateToken, issuerCertificateToken) ->
+                getRevocationToken(certificateToken, issuerCertificateToken, notBefore);
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    private OCSPToken getRevocationToken(CertificateToken certificateToken, CertificateToken issuerCertificateToken,
+                                         Date notBefore) {
+        OcspCertificateId certificateId = OcspCertificateId.of(certificateToken, issuerCertificateToken);
+        OCSPToken cachedToken = getCached(certificateId);
+        if (cachedToken != null && (notBefore == null || isProducedAfter(cachedToken, notBefore))) {
+            hitCount.incrementAndGet();
+            LOG.debug("OCSP response served from cache: {}", certificateId);
+            return cachedToken;
+        }
+        missCount.incrementAndGet();
+        return requestAndStore(certificateId, certificateToken, issuerCertificateToken);
+    }
+
+    private synchronized OCSPToken getCached(OcspCertificateId certificateId) {
+        CacheEntry entry = cache.get(certificateId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            cache.remove(certificateId);
+            return null;
+        }
+        return entry.token;
+    }
+
+    private static boolean isProducedAfter(OCSPToken token, Date time) {
+        Date producedAt = token.getProductionDate() != null ? token.getProductionDate() : token.getThisUpdate();
+        return producedAt != null && producedAt.after(time);
+    }
+
+    private OCSPToken requestAndStore(OcspCertificateId certificateId, CertificateToken certificateToken,
+                                      CertificateToken issuerCertificateToken) {
+        OCSPToken token = ocspSource.getRevocationToken(certificateToken, issuerCertificateToken);
+        if (token != null) {
+            long expiresAt = getExpirationTime(token);
+            if (expiresAt > System.currentTimeMillis()) {
+                synchronized (this) {
+                    cache.put(certificateId, new CacheEntry(token, expiresAt));
+                }
+            }
+        }
+        return token;
+    }
+
+    private long getExpirationTime(OCSPToken token) {
+        Date producedAt = token.getProductionDate() != null ? token.getProductionDate() : token.getThisUpdate();
+        long expiresAt = (producedAt != null ? producedAt.getTime() : System.currentTimeMillis()) + freshnessMillis;
+        Date nextUpdate = token.getNextUpdate();
+        return nextUpdate != null ? Math.min(expiresAt, nextUpdate.getTime()) : expiresAt;
+    }
+}
@@ -0,0 +1,166 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.spi.x509.revocation.ocsp.OCSPSource;
+import eu.europa.esig.dss.spi.x509.revocation.ocsp.OCSPToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link OCSPSource} decorator that coalesces concurrent requests for the same CertID (issuer name hash,
+ * issuer key hash and serial number). A request never joins a call that is already in flight, as its
+ * response could have been produced before the signature timestamp of the request. Requests arriving
+ * while a call is in flight wait for it to complete and then share one new call, so every response comes
+ * from a call started after the request arrived. Once a call completes nothing is kept.
+ * <p>
+ * A nonce-based delegate sends one nonce per call, and coalesced requests get the response to the nonce
+ * of the call they joined. Use it where a response with a nonce of the caller's own is not mandatory, e.g.
+ * bursts of LT signatures with the same e-seal certificate. It must not be used for time-mark signatures
+ * (LT_TM, BDOC-TM), where the nonce binds the OCSP response to one signature value.
+ */
+public class CoalescingOCSPSource implements OCSPSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CoalescingOCSPSource.class);
+
+    private static class Call {
+        private final CompletableFuture<OCSPToken> response = new CompletableFuture<>();
+    }
+
+    /**
+     * Calls of one CertID: the call in flight and the next call collecting the requests that arrived
+     * during it. Guarded by its own monitor.
+     */
+    private static class Slot {
+        private Call inFlight;
+        private Call next;
+        private boolean removed;
+    }
+
+    /**
+     * The OCSP source responses are requested from.
+     */
+    private final OCSPSource ocspSource;
+
+    private final ConcurrentMap<OcspCertificateId, Slot> slots = new ConcurrentHashMap<>();
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong callCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Constructs a CoalescingOCSPSource.
+     *
+     * @param ocspSource OCSP source to query
+     */
+    public CoalescingOCSPSource(OCSPSource ocspSource) {
+        this.ocspSource = Objects.requireNonNull(ocspSource, "OCSP source cannot be null");
+    }
+
+    @Override
+    public OCSPToken getRevocationToken(CertificateToken certificateToken, CertificateToken issuerCertificateToken) {
+        requestCount.incrementAndGet();
+        OcspCertificateId certificateId = OcspCertificateId.of(certificateToken, issuerCertificateToken);
+
+        while (true) {
+            Slot slot = slots.computeIfAbsent(certificateId, id -> new Slot());
+            Call call;
+            Call previous = null;
+            boolean joined = false;
+            synchronized (slot) {
+                if (slot.removed) {
+                    continue;
+                }
+                if (slot.next != null) {
+                    call = slot.next;
+                    joined = true;
+                } else if (slot.inFlight == null) {
+                    call = new Call();
+                    slot.inFlight = call;
+                } else {
+                    call = new Call();
+                    slot.next = call;
+                    previous = slot.inFlight;
+                }
+            }
+            if (joined) {
+                coalescedCount.incrementAndGet();
+                LOG.debug("OCSP request joined the next call: {}", certificateId);
+                return await(call);
+            }
+            if (previous != null) {
+                // The next call starts once the one in flight has completed
+                previous.response.handle((token, e) -> null).join();
+                synchronized (slot) {
+                    slot.inFlight = call;
+                    slot.next = null;
+                }
+            }
+            return request(certificateId, slot, call, certificateToken, issuerCertificateToken);
+        }
+    }
+
+    /**
+     * @return number of OCSP requests received
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return number of calls made to the delegate
+     */
+    public long getCallCount() {
+        return callCount.get();
+    }
+
+    /**
+     * @return number of requests that shared a call of another request, i.e. the calls saved
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    private OCSPToken request(OcspCertificateId certificateId, Slot slot, Call call,
+                              CertificateToken certificateToken, CertificateToken issuerCertificateToken) {
+        callCount.incrementAndGet();
+        try {
+            OCSPToken token = ocspSource.getRevocationToken(certificateToken, issuerCertificateToken);
+            call.response.complete(token);
+            return token;
+        } catch (RuntimeException e) {
+            call.response.completeExceptionally(e);
+            throw e;
+        } finally {
+            synchronized (slot) {
+                if (slot.inFlight == call) {
+                    slot.inFlight = null;
+                }
+                if (slot.inFlight == null && slot.next == null) {
+                    slot.removed = true;
+                    slots.remove(certificateId, slot);
+                }
+            }
+        }
+    }
+
+    private static OCSPToken await(Call call) {
+        try {
+            return call.response.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the OCSP response", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(String.format("OCSP request failed: %s", e.getCause().getMessage()), e.getCause());
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.asic.cades.validation.ASiCContainerWithCAdESValidator;
+import eu.europa.esig.dss.diagnostic.TimestampWrapper;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.enumerations.Indication;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.FileDocument;
+import eu.europa.esig.dss.utils.Utils;
+import eu.europa.esig.dss.validation.CommonCertificateVerifier;
+import eu.europa.esig.dss.validation.SignedDocumentValidator;
+import eu.europa.esig.dss.validation.reports.Reports;
+import org.digidoc4j.CompositeContainer;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerOpener;
+import org.digidoc4j.ContainerValidationResult;
+import org.digidoc4j.DataFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Validates composite containers layer by layer and memoizes the outcome of every layer. The innermost,
+ * non-composite container is validated with {@link Container#validate()}. For a composite layer only its
+ * own timestamps are validated with DSS, which does not open the nested container, with the TSL, AIA
+ * source and validation policy of the configuration; a timestamp passes only if it also covers the nested
+ * container file. The nested container is validated by a recursive call, which returns the memoized outcome
+ * when the same nested container has been validated before. After re-timestamping an archive only the new
+ * timestamps are validated, so the cost grows linearly with the nesting depth, whereas
+ * {@code CompositeContainer.validate()} validates the nested container again on every call.
+ * <p>
+ * Like {@link ValidationResultCache}, a memoized outcome is keyed by the SHA-256 of the layer together with
+ * the loaded TSL version, the validation policy and the validation time bucket, so an outcome is not reused
+ * after a TSL refresh or on another day. At most {@code maxEntries} outcomes are kept, the least recently
+ * used are dropped first.
+ */
+public class CompositeValidator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompositeValidator.class);
+
+    private static final int DEFAULT_MAX_ENTRIES = 1024;
+    private static final Duration DEFAULT_TIME_BUCKET = Duration.ofDays(1);
+
+    /**
+     * Validation outcome of a container layer.
+     */
+    public static class Result {
+
+        private final String digest;
+        private final Map<String, Indication> timestampIndications;
+        private final Result nestedResult;
+        private final ContainerValidationResult containerValidationResult;
+
+        private Result(String digest, Map<String, Indication> timestampIndications, Result nestedResult,
+                       ContainerValidationResult containerValidationResult) {
+            this.digest = digest;
+            this.timestampIndications = Collections.unmodifiableMap(timestampIndications);
+            this.nestedResult = nestedResult;
+            this.containerValidationResult = containerValidationResult;
+        }
+
+        /**
+         * @return hex encoded SHA-256 of the layer bytes
+         */
+        public String getDigest() {
+            return digest;
+        }
+
+        /**
+         * @return indications of the timestamps added in this layer, empty for a non-composite container
+         */
+        public Map<String, Indication> getTimestampIndications() {
+            return timestampIndications;
+        }
+
+        /**
+         * @return outcome of the nested container, or null for a non-composite container
+         */
+        public Result getNestedResult() {
+            return nestedResult;
+        }
+
+        /**
+         * @return DD4J validation result of a non-composite container, or null for a composite layer
+         */
+        public ContainerValidationResult getContainerValidationResult() {
+            return containerValidationResult;
+        }
+
+        /**
+         * @return number of layers including this one
+         */
+        public int getDepth() {
+            return nestedResult == null ? 1 : nestedResult.getDepth() + 1;
+        }
+
+        public boolean isValid() {
+            if (nestedResult == null) {
+                return containerValidationResult.isValid();
+            }
+            return !timestampIndications.isEmpty()
+                    && timestampIndications.values().stream().allMatch(Indication.PASSED::equals)
+                    && nestedResult.isValid();
+        }
+    }
+
+    private final Configuration configuration;
+    private final long timeBucketMillis;
+    private final Map<String, Result> results;
+    private final AtomicLong validatedLayerCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /**
+     * Constructs a CompositeValidator keeping up to 1024 outcomes for a day.
+     *
+     * @param configuration configuration used for validation
+     */
+    public CompositeValidator(Configuration configuration) {
+        this(configuration, DEFAULT_MAX_ENTRIES, DEFAULT_TIME_BUCKET);
+    }
+
+    /**
+     * Constructs a CompositeValidator.
+     *
+     * @param configuration configuration used for validation
+     * @param maxEntries    maximum number of memoized layer outcomes
+     * @param timeBucket    outcomes are reused only within the same time bucket, e.g. one day
+     */
+    public CompositeValidator(Configuration configuration, int maxEntries, Duration timeBucket) {
+        this.configuration = configuration;
+        this.timeBucketMillis = timeBucket.toMillis();
+        this.results = Collections.synchronizedMap(new LinkedHashMap<String, Result>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * Validates the container file.
+     *
+     * @param path container path
+     * @return outcome of the outermost layer
+     */
+    public Result validate(Path path) {
+        return validate(new FileDocument(path.toFile()));
+    }
+
+    /**
+     * Validates the container, reusing the memoized outcome of any layer validated before with the same
+     * TSL, policy and time bucket.
+     *
+     * @param document container document
+     * @return outcome of the outermost layer
+     */
+    public Result validate(DSSDocument document) {
+        return validate(document, getValidationContext());
+    }
+
+    /**
+     * @return number of layers validated, not counting memoized ones
+     */
+    public long getValidatedLayerCount() {
+        return validatedLayerCount.get();
+    }
+
+    /**
+     * @return number of layers whose memoized outcome was reused
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of memoized layer outcomes
+     */
+    public int size() {
+        return results.size();
+    }
+
+    private Result validate(DSSDocument document, byte[] validationContext) {
+        byte[] layerDigest = document.getDigestValue(DigestAlgorithm.SHA256);
+        MessageDigest keyDigest = ValidationResultCache.sha256();
+        keyDigest.update(layerDigest);
+        keyDigest.update(validationContext);
+        String key = Utils.toHex(keyDigest.digest());
+        Result result = results.get(key);
+        if (result != null) {
+            hitCount.incrementAndGet();
+            return result;
+        }
+
+        String digest = Utils.toHex(layerDigest);
+        Container container = open(document);
+        if (container instanceof CompositeContainer) {
+            DataFile nestedDataFile = ((CompositeContainer) container).getNestingContainerDataFiles().get(0);
+            Result nestedResult = validate(nestedDataFile.getDocument(), validationContext);
+            result = new Result(digest, validateTimestamps(document, nestedDataFile.getName()), nestedResult, null);
+        } else {
+            result = new Result(digest, Collections.emptyMap(), null, validateContainer(container));
+        }
+        validatedLayerCount.incrementAndGet();
+        LOG.debug("Validated layer {} of type {}", digest, container.getType());
+
+        results.put(key, result);
+        return result;
+    }
+
+    /**
+     * Digest of the TSL version, validation policy and time bucket, the memo key parts besides the layer.
+     */
+    private byte[] getValidationContext() {
+        MessageDigest digest = ValidationResultCache.sha256();
+        digest.update(ValidationResultCache.getTslVersion(configuration.getTSL()));
+        try {
+            digest.update(ValidationResultCache.getPolicyDigest(configuration));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read validation policy", e);
+        }
+        long bucket = System.currentTimeMillis() / timeBucketMillis;
+        digest.update(ByteBuffer.allocate(Long.BYTES).putLong(bucket).array());
+        return digest.digest();
+    }
+
+    /**
+     * Validates a non-composite container with DD4J.
+     *
+     * @param container container
+     * @return validation result
+     */
+    protected ContainerValidationResult validateContainer(Container container) {
+        return container.validate();
+    }
+
+    /**
+     * Validates the timestamps of a composite layer with DSS. DSS does not open the nested container, so
+     * only the timestamps of this layer are validated. A timestamp whose message imprint does not match or
+     * whose scope does not include the nested container file is reported as {@link Indication#FAILED}.
+     *
+     * @param document       composite layer
+     * @param nestedFileName name of the nested container file in the layer
+     * @return indications by timestamp id
+     */
+    protected Map<String, Indication> validateTimestamps(DSSDocument document, String nestedFileName) {
+        CommonCertificateVerifier verifier = new CommonCertificateVerifier();
+        verifier.setTrustedCertSources(configuration.getTSL());
+        if (configuration.getAiaSourceFactory() != null) {
+            verifier.setAIASource(configuration.getAiaSourceFactory().create());
+        }
+
+        SignedDocumentValidator validator = ASiCContainerWithCAdESValidator.fromDocument(document);
+        validator.setCertificateVerifier(verifier);
+        Reports reports;
+        try {
+            byte[] policy = ValidationResultCache.readPolicy(configuration);
+            reports = policy != null ? validator.validateDocument(new ByteArrayInputStream(policy)) : validator.validateDocument();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read validation policy", e);
+        }
+
+        Map<String, Indication> timestampIndications = new LinkedHashMap<>();
+        for (TimestampWrapper timestamp : reports.getDiagnosticData().getTimestampList()) {
+            boolean coversNestedFile = timestamp.isMessageImprintDataFound() && timestamp.isMessageImprintDataIntact()
+                    && timestamp.getTimestampScopes().stream().anyMatch(scope -> nestedFileName.equals(scope.getName()));
+            timestampIndications.put(timestamp.getId(), coversNestedFile
+                    ? reports.getSimpleReport().getIndication(timestamp.getId()) : Indication.FAILED);
+        }
+        return timestampIndications;
+    }
+
+    private Container open(DSSDocument document) {
+        try (InputStream in = document.openStream()) {
+            return ContainerOpener.open(in, configuration);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read container", e);
+        }
+    }
+}
@@ -0,0 +1,520 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+import eu.europa.esig.dss.utils.Utils;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.ExternalConnectionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * TSL data loader with conditional GET. The ETag and Last-Modified of every downloaded LOTL and TSL are
+ * kept with the document in a store directory, and the next download sends If-None-Match and
+ * If-Modified-Since. A 304 response returns the stored document.
+ * <p>
+ * A document downloaded again with a sequence number not higher than the stored one is not a new
+ * version, e.g. the same list re-served with a new ETag, and the stored document is returned instead.
+ * DSS re-parses and re-verifies a trusted list only when its content changes, so an unchanged list
+ * skips both the download and the XML signature verification:
+ * <pre>
+ * ConditionalTslDataLoader loader = new ConditionalTslDataLoader(configuration, directory);
+ * configuration.setTslDataLoaderFactory(() -> loader);
+ * </pre>
+ * DD4J keeps the documents in its own file cache in front of the loader, so the loader is asked again
+ * only after the TSL cache expiration time of the configuration has passed.
+ * <p>
+ * Downloads use {@link HttpURLConnection} with the TSL proxy and SSL settings and the connection and socket
+ * timeouts of the configuration. Redirects are followed, also between HTTP and HTTPS, up to
+ * {@link #MAX_REDIRECTS} hops, and the conditional headers are sent to the redirect target. The
+ * proxy user and password are sent as Basic Proxy-Authorization, which HttpURLConnection does not send
+ * when tunnelling HTTPS through the proxy; an authenticating HTTPS proxy also needs the default
+ * {@link java.net.Authenticator} of the JVM.
+ * <p>
+ * Store file layout: magic "DD4JTSC1", URL, ETag and Last-Modified (UTF, empty if missing), sequence
+ * number (long, -1 if missing), SHA-256 digest of the document (32 bytes), document length (int)
+ * followed by the document.
+ */
+public class ConditionalTslDataLoader implements DataLoader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConditionalTslDataLoader.class);
+
+    private static final byte[] MAGIC = "DD4JTSC1".getBytes(StandardCharsets.US_ASCII);
+    private static final String FILE_SUFFIX = ".tsl";
+
+    /**
+     * Sequence number of a LOTL or TSL, before the signature and the trust service provider list.
+     */
+    private static final Pattern SEQUENCE_NUMBER = Pattern.compile("<(?:[\\w-]+:)?TSLSequenceNumber>\\s*(\\d+)\\s*<");
+    private static final int SEQUENCE_NUMBER_SEARCH_LENGTH = 16 * 1024;
+
+    /**
+     * Timeout without a configuration.
+     */
+    private static final int TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * Maximum number of redirects followed for one download.
+     */
+    public static final int MAX_REDIRECTS = 5;
+
+    private static class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final long sequenceNumber;
+        private final byte[] document;
+
+        private Entry(String etag, String lastModified, long sequenceNumber, byte[] document) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.sequenceNumber = sequenceNumber;
+            this.document = document;
+        }
+    }
+
+    private final transient Path directory;
+    private final transient Function<String, String> urlMapper;
+    private final transient Proxy httpProxy;
+    private final transient Proxy httpsProxy;
+    private final transient String httpProxyAuthorization;
+    private final transient String httpsProxyAuthorization;
+    private final transient SSLSocketFactory sslSocketFactory;
+    private final transient int connectTimeoutMillis;
+    private final transient int readTimeoutMillis;
+    private final transient ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong downloadCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+    private final AtomicLong sameSequenceNumberCount = new AtomicLong();
+
+    /**
+     * Constructs a ConditionalTslDataLoader without proxy and SSL settings and with 30 second timeouts.
+     *
+     * @param directory store directory, created if missing
+     */
+    public ConditionalTslDataLoader(Path directory) throws IOException {
+        this(directory, Function.identity());
+    }
+
+    /**
+     * Constructs a ConditionalTslDataLoader without proxy and SSL settings and with 30 second timeouts that
+     * downloads from mapped URLs, e.g. from a {@link TslFixtureServer} with {@code server::getUrl}.
+     * Documents are stored by their original URL.
+     *
+     * @param directory store directory, created if missing
+     * @param urlMapper maps the LOTL and TSL URLs to the URLs downloaded from
+     */
+    public ConditionalTslDataLoader(Path directory, Function<String, String> urlMapper) throws IOException {
+        this(null, directory, urlMapper);
+    }
+
+    /**
+     * Constructs a ConditionalTslDataLoader with the TSL proxy and SSL settings and the timeouts of the
+     * configuration.
+     *
+     * @param configuration configuration whose {@link ExternalConnectionType#TSL} settings are used
+     * @param directory     store directory, created if missing
+     */
+    public ConditionalTslDataLoader(Configuration configuration, Path directory) throws IOException {
+        this(configuration, directory, Function.identity());
+    }
+
+    /**
+     * Constructs a ConditionalTslDataLoader with the TSL proxy and SSL settings and the timeouts of the
+     * configuration that downloads from mapped URLs. Documents are stored by their original URL.
+     *
+     * @param configuration configuration whose {@link ExternalConnectionType#TSL} settings are used, null for none
+     * @param directory     store directory, created if missing
+     * @param urlMapper     maps the LOTL and TSL URLs to the URLs downloaded from
+     */
+    public ConditionalTslDataLoader(Configuration configuration, Path directory,
+                                    Function<String, String> urlMapper) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.urlMapper = urlMapper;
+        ExternalConnectionType type = ExternalConnectionType.TSL;
+        if (configuration != null && configuration.isNetworkProxyEnabledFor(type)) {
+            this.httpProxy = getProxy(configuration.getHttpProxyHostFor(type), configuration.getHttpProxyPortFor(type));
+            this.httpsProxy = getProxy(configuration.getHttpsProxyHostFor(type), configuration.getHttpsProxyPortFor(type));
+            this.httpProxyAuthorization = getProxyAuthorization(
+                    configuration.getHttpProxyUserFor(type), configuration.getHttpProxyPasswordFor(type));
+            this.httpsProxyAuthorization = getProxyAuthorization(
+                    configuration.getHttpsProxyUserFor(type), configuration.getHttpsProxyPasswordFor(type));
+        } else {
+            this.httpProxy = null;
+            this.httpsProxy = null;
+            this.httpProxyAuthorization = null;
+            this.httpsProxyAuthorization = null;
+        }
+        this.sslSocketFactory = configuration != null && configuration.isSslConfigurationEnabledFor(type)
+                ? getSslSocketFactory(configuration, type) : null;
+        this.connectTimeoutMillis = configuration != null ? configuration.getConnectionTimeout() : TIMEOUT_MILLIS;
+        this.readTimeoutMillis = configuration != null ? configuration.getSocketTimeout() : TIMEOUT_MILLIS;
+    }
+
+    @Override
+    public byte[] get(String url) {
+        Entry stored = getStored(url);
+        HttpURLConnection connection = null;
+        try {
+            URL target = new URL(urlMapper.apply(url));
+            int status;
+            for (int redirects = 0; ; redirects++) {
+                connection = openConnection(target, stored);
+                status = connection.getResponseCode();
+                String location = connection.getHeaderField("Location");
+                if (!isRedirect(status) || location == null) {
+                    break;
+                }
+                if (redirects == MAX_REDIRECTS) {
+                    throw new DSSException(String.format("Unable to download '%s'. More than %d redirects",
+                            url, MAX_REDIRECTS));
+                }
+                // Followed here, HttpURLConnection does not follow redirects between HTTP and HTTPS
+                target = new URL(target, location);
+                LOG.debug("Redirected from {} to {}", url, target);
+                connection.disconnect();
+                connection = null;
+            }
+
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && stored != null) {
+                notModifiedCount.incrementAndGet();
+                LOG.debug("Not modified: {}", url);
+                return stored.document;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new DSSException(String.format("Unable to download '%s'. HTTP status: %d", url, status));
+            }
+
+            downloadCount.incrementAndGet();
+            byte[] document;
+            try (InputStream in = connection.getInputStream()) {
+                document = readAll(in);
+            }
+            Entry entry = new Entry(nullToEmpty(connection.getHeaderField("ETag")),
+                    nullToEmpty(connection.getHeaderField("Last-Modified")), getSequenceNumber(document), document);
+
+            if (stored != null && entry.sequenceNumber >= 0 && entry.sequenceNumber <= stored.sequenceNumber) {
+                // Not a new version, keep the stored document and remember the new validators
+                sameSequenceNumberCount.incrementAndGet();
+                LOG.debug("Sequence number {} of {} not changed", entry.sequenceNumber, url);
+                entry = new Entry(entry.etag, entry.lastModified, stored.sequenceNumber, stored.document);
+            }
+            store(url, entry);
+            return entry.document;
+        } catch (IOException e) {
+            throw new DSSException(String.format("Unable to download '%s': %s", url, e.getMessage()), e);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    @Override
+    public DataAndUrl get(List<String> urlStrings) {
+        DSSException lastException = null;
+        for (String url : urlStrings) {
+            try {
+                return new DataAndUrl(url, get(url));
+            } catch (DSSException e) {
+                lastException = e;
+            }
+        }
+        throw new DSSException(String.format("Unable to download any of the URLs: %s", urlStrings), lastException);
+    }
+
+    @Override
+    public byte[] post(String url, byte[] content) {
+        throw new DSSException(String.format("POST is not supported by the TSL data loader: %s", url));
+    }
+
+    @Override
+    public void setContentType(String contentType) {
+        // Not used for GET requests
+    }
+
+    /**
+     * @return number of full (200) downloads
+     */
+    public long getDownloadCount() {
+        return downloadCount.get();
+    }
+
+    /**
+     * @return number of 304 responses answered with the stored document
+     */
+    public long getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    /**
+     * @return number of downloads whose sequence number was not higher than the stored one
+     */
+    public long getSameSequenceNumberCount() {
+        return sameSequenceNumberCount.get();
+    }
+
+    /**
+     * Returns the store file of the URL.
+     *
+     * @param url LOTL or TSL URL
+     * @return store file path
+     */
+    public Path getFile(String url) {
+        return directory.resolve(Utils.toHex(sha256().digest(url.getBytes(StandardCharsets.UTF_8))) + FILE_SUFFIX);
+    }
+
+    /**
+     * Returns the sequence number of the LOTL or TSL document.
+     *
+     * @param document LOTL or TSL XML
+     * @return sequence number, -1 if not found
+     */
+    static long getSequenceNumber(byte[] document) {
+        String head = new String(document, 0, Math.min(document.length, SEQUENCE_NUMBER_SEARCH_LENGTH), StandardCharsets.UTF_8);
+        Matcher matcher = SEQUENCE_NUMBER.matcher(head);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    private HttpURLConnection openConnection(URL url, Entry stored) throws IOException {
+        boolean https = "https".equalsIgnoreCase(url.getProtocol());
+        if (!https && !"http".equalsIgnoreCase(url.getProtocol())) {
+            throw new IOException(String.format("Unsupported protocol: %s", url.getProtocol()));
+        }
+        Proxy proxy = https ? httpsProxy : httpProxy;
+        HttpURLConnection connection = (HttpURLConnection) (proxy != null ? url.openConnection(proxy) : url.openConnection());
+        connection.setInstanceFollowRedirects(false);
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        if (stored != null) {
+            if (!stored.etag.isEmpty()) {
+                connection.setRequestProperty("If-None-Match", stored.etag);
+            }
+            if (!stored.lastModified.isEmpty()) {
+                connection.setRequestProperty("If-Modified-Since", stored.lastModified);
+            }
+        }
+        String proxyAuthorization = https ? httpsProxyAuthorization : httpProxyAuthorization;
+        if (proxy != null && proxyAuthorization != null) {
+            connection.setRequestProperty("Proxy-Authorization", proxyAuthorization);
+        }
+        if (sslSocketFactory != null && connection instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) connection).setSSLSocketFactory(sslSocketFactory);
+        }
+        return connection;
+    }
+
+    private static boolean isRedirect(int status) {
+        switch (status) {
+            case HttpURLConnection.HTTP_MOVED_PERM:
+            case HttpURLConnection.HTTP_MOVED_TEMP:
+            case HttpURLConnection.HTTP_SEE_OTHER:
+            case 307:
+            case 308:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Proxy getProxy(String host, Integer port) {
+        if (Utils.isStringEmpty(host) || port == null) {
+            return null;
+        }
+        return new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved(host, port));
+    }
+
+    private static String getProxyAuthorization(String user, String password) {
+        if (Utils.isStringEmpty(user)) {
+            return null;
+        }
+        String credentials = user + ":" + nullToEmpty(password);
+        return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static SSLSocketFactory getSslSocketFactory(Configuration configuration, ExternalConnectionType type) throws IOException {
+        try {
+            KeyManagerFactory keyManagerFactory = null;
+            String keystorePath = configuration.getSslKeystorePathFor(type);
+            if (!Utils.isStringEmpty(keystorePath)) {
+                char[] password = toCharArray(configuration.getSslKeystorePasswordFor(type));
+                keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+                keyManagerFactory.init(loadKeyStore(keystorePath, configuration.getSslKeystoreTypeFor(type), password), password);
+            }
+            TrustManagerFactory trustManagerFactory = null;
+            String truststorePath = configuration.getSslTruststorePathFor(type);
+            if (!Utils.isStringEmpty(truststorePath)) {
+                trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+                trustManagerFactory.init(loadKeyStore(truststorePath, configuration.getSslTruststoreTypeFor(type),
+                        toCharArray(configuration.getSslTruststorePasswordFor(type))));
+            }
+            String protocol = configuration.getSslProtocolFor(type);
+            SSLContext sslContext = SSLContext.getInstance(Utils.isStringEmpty(protocol) ? "TLS" : protocol);
+            sslContext.init(keyManagerFactory != null ? keyManagerFactory.getKeyManagers() : null,
+                    trustManagerFactory != null ? trustManagerFactory.getTrustManagers() : null, null);
+            return sslContext.getSocketFactory();
+        } catch (GeneralSecurityException e) {
+            throw new IOException(String.format("Unable to initialize the TSL SSL settings: %s", e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Loads a key store from a file path or a {@code classpath:} resource, as in the DD4J configuration.
+     */
+    private static KeyStore loadKeyStore(String path, String type, char[] password) throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance(Utils.isStringEmpty(type) ? KeyStore.getDefaultType() : type);
+        try (InputStream in = openKeyStore(path)) {
+            keyStore.load(in, password);
+        }
+        return keyStore;
+    }
+
+    private static InputStream openKeyStore(String path) throws IOException {
+        String classpathPrefix = "classpath:";
+        if (!path.startsWith(classpathPrefix)) {
+            return Files.newInputStream(Paths.get(path));
+        }
+        InputStream in = ConditionalTslDataLoader.class.getClassLoader().getResourceAsStream(path.substring(classpathPrefix.length()));
+        if (in == null) {
+            throw new NoSuchFileException(path);
+        }
+        return in;
+    }
+
+    private static char[] toCharArray(String password) {
+        return password != null ? password.toCharArray() : null;
+    }
+
+    private Entry getStored(String url) {
+        Entry entry = entries.get(url);
+        if (entry == null) {
+            entry = read(url);
+            if (entry != null) {
+                entries.putIfAbsent(url, entry);
+            }
+        }
+        return entry;
+    }
+
+    private void store(String url, Entry entry) {
+        entries.put(url, entry);
+        try {
+            write(url, entry);
+        } catch (IOException e) {
+            LOG.warn("Unable to store {}: {}", url, e.getMessage());
+        }
+    }
+
+    private Entry read(String url) {
+        Path file = getFile(url);
+        try (InputStream fileIn = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(MAGIC, magic) || !url.equals(in.readUTF())) {
+                throw new IOException("Not a TSL store entry of the URL");
+            }
+            String etag = in.readUTF();
+            String lastModified = in.readUTF();
+            long sequenceNumber = in.readLong();
+            byte[] digest = new byte[32];
+            in.readFully(digest);
+            byte[] document = new byte[in.readInt()];
+            in.readFully(document);
+            if (!MessageDigest.isEqual(digest, sha256().digest(document))) {
+                throw new IOException("Digest mismatch");
+            }
+            return new Entry(etag, lastModified, sequenceNumber, document);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOG.warn("Discarding TSL store entry {} of {}: {}", file, url, e.getMessage());
+            return null;
+        }
+    }
+
+    private void write(String url, Entry entry) throws IOException {
+        Path file = getFile(url);
+        Path tempFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream fileOut = Files.newOutputStream(tempFile);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+                out.write(MAGIC);
+                out.writeUTF(url);
+                out.writeUTF(entry.etag);
+                out.writeUTF(entry.lastModified);
+                out.writeLong(entry.sequenceNumber);
+                out.write(sha256().digest(entry.document));
+                out.writeInt(entry.document.length);
+                out.write(entry.document);
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not supported", e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.naare.utils;
+
+import org.digidoc4j.Container;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Saves containers into an output directory. The file is written under a temporary name and moved into place
+ * atomically, so readers never see a partly written container. The ZIP is written by DD4J through a buffered
+ * stream, which costs the same copies as {@code Container.saveAsFile}: DD4J writes the entries itself, so
+ * data files cannot be transferred from their file channels.
+ * <p>
+ * File names are built from the given name, the current time and a sequence number, which is unique
+ * within the saver and cheap to compute.
+ */
+public class ContainerSaver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ContainerSaver.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path outputDirectory;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    public ContainerSaver(Path outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * Saves the container as {@code <name>_<millis>_<sequence>.<container type>}.
+     *
+     * @param container container to save
+     * @param name      file name prefix
+     * @return path of the saved file
+     */
+    public Path save(Container container, String name) {
+        String fileName = String.format("%s_%d_%d.%s",
+                name,
+                System.currentTimeMillis(),
+                sequence.incrementAndGet(),
+                container.getType().toLowerCase(Locale.ROOT));
+        return saveAs(container, outputDirectory.resolve(fileName));
+    }
+
+    /**
+     * Saves the container to the given file, replacing it atomically if it exists.
+     *
+     * @param container container to save
+     * @param target    target file
+     * @return target file
+     */
+    public Path saveAs(Container container, Path target) {
+        try {
+            Path directory = target.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path tempFile = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                     OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE)) {
+                    container.save(out);
+                    out.flush();
+                    bytesWritten.addAndGet(channel.size());
+                }
+                move(tempFile, target);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            LOG.debug("Container saved to {}", target);
+            return target;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to save container to %s", target), e);
+        }
+    }
+
+    /**
+     * @return total number of bytes written by this saver
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
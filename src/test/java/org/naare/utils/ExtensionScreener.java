@@ -0,0 +1,206 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.spi.x509.tsp.TimestampToken;
+import eu.europa.esig.dss.xades.validation.XAdESSignature;
+import org.apache.xml.security.signature.Reference;
+import org.digidoc4j.Container;
+import org.digidoc4j.DataFile;
+import org.digidoc4j.Signature;
+import org.digidoc4j.SignatureProfile;
+import org.digidoc4j.exceptions.DigiDoc4JException;
+import org.digidoc4j.exceptions.NotSupportedException;
+import org.digidoc4j.impl.asic.AsicSignature;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides cheaply whether signatures can be extended, without DSS validation and without OCSP or TSL
+ * access. Only the things that make {@code AsicContainer.getExtensionValidationErrors} fail are checked:
+ * <ul>
+ *     <li>the profile transition is one DD4J allows;</li>
+ *     <li>the signing certificate is valid at the check time, or an unbroken chain of timestamps proves the
+ *     signature existed while it was valid;</li>
+ *     <li>the signature references every data file of the container and nothing else.</li>
+ * </ul>
+ * Signatures passing the screening can still fail full validation, e.g. because of a broken signature
+ * value or a revoked certificate, so the screening is a triage step and not a replacement.
+ */
+public class ExtensionScreener {
+
+    private static final String TIMESTAMPING_KEY_PURPOSE = "1.3.6.1.5.5.7.3.8";
+    private static final String SIGNED_PROPERTIES_TYPE = "http://uri.etsi.org/01903#SignedProperties";
+
+    private final Clock clock;
+
+    public ExtensionScreener() {
+        this(Clock.systemUTC());
+    }
+
+    /**
+     * Constructs an ExtensionScreener that checks certificate validity at the time of the given clock.
+     *
+     * @param clock clock giving the check time
+     */
+    public ExtensionScreener(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Screens all signatures of the container.
+     *
+     * @param container     container to screen
+     * @param targetProfile profile to extend to
+     * @return errors by signature unique ID, empty if all signatures passed
+     */
+    public Map<String, DigiDoc4JException> screen(Container container, SignatureProfile targetProfile) {
+        return screen(container, targetProfile, container.getSignatures());
+    }
+
+    /**
+     * Screens the given signatures of the container.
+     *
+     * @param container     container holding the signatures
+     * @param targetProfile profile to extend to
+     * @param signatures    signatures to screen
+     * @return errors by signature unique ID, empty if all signatures passed
+     */
+    public Map<String, DigiDoc4JException> screen(Container container, SignatureProfile targetProfile, List<Signature> signatures) {
+        Set<String> dataFileNames = new HashSet<>();
+        for (DataFile dataFile : container.getDataFiles()) {
+            dataFileNames.add(dataFile.getName());
+        }
+        Date checkTime = Date.from(clock.instant());
+
+        Map<String, DigiDoc4JException> errors = new LinkedHashMap<>();
+        for (Signature signature : signatures) {
+            DigiDoc4JException error = screen(signature, targetProfile, dataFileNames, checkTime);
+            if (error != null) {
+                errors.put(signature.getUniqueId(), error);
+            }
+        }
+        return errors;
+    }
+
+    private static DigiDoc4JException screen(Signature signature, SignatureProfile targetProfile,
+                                             Set<String> dataFileNames, Date checkTime) {
+        SignatureProfile profile = signature.getProfile();
+        if (!isExtensionAllowed(profile, targetProfile)) {
+            return new NotSupportedException("It is not possible to extend " + profile + " signature to " + targetProfile + ".");
+        }
+        if (!(signature instanceof AsicSignature)) {
+            return new NotSupportedException("Screening is supported only for ASiC signatures");
+        }
+        AsicSignature asicSignature = (AsicSignature) signature;
+
+        X509Certificate signingCertificate = signature.getSigningCertificate().getX509Certificate();
+        if (signingCertificate.getNotAfter().before(checkTime)
+                && !hasProofOfExistence(asicSignature.getOrigin().getDssSignature(), signingCertificate, checkTime)) {
+            return new DigiDoc4JException(String.format(
+                    "The signing certificate has expired and there is no POE during its validity range : [%s - %s]",
+                    signingCertificate.getNotBefore().toInstant(), signingCertificate.getNotAfter().toInstant()));
+        }
+
+        Set<String> uncovered = new HashSet<>(dataFileNames);
+        for (Reference reference : asicSignature.getOrigin().getReferences()) {
+            if (SIGNED_PROPERTIES_TYPE.equals(reference.getType())) {
+                continue;
+            }
+            String fileName = decode(reference.getURI());
+            if (!uncovered.remove(fileName) && !dataFileNames.contains(fileName)) {
+                return new DigiDoc4JException("Signature references a missing data file: " + fileName);
+            }
+        }
+        if (!uncovered.isEmpty()) {
+            return new DigiDoc4JException("Signature does not cover data files: " + uncovered);
+        }
+        return null;
+    }
+
+    /**
+     * Profile transitions allowed by DD4J: only B_BES, T, LT and LTA signatures are extended, only to a higher
+     * profile, and LTA signatures can get another archive timestamp.
+     */
+    static boolean isExtensionAllowed(SignatureProfile from, SignatureProfile to) {
+        int fromLevel = level(from);
+        int toLevel = level(to);
+        if (fromLevel < 0 || toLevel < 0) {
+            return false;
+        }
+        return fromLevel < toLevel || (from == SignatureProfile.LTA && to == SignatureProfile.LTA);
+    }
+
+    private static int level(SignatureProfile profile) {
+        switch (profile) {
+            case B_BES:
+                return 0;
+            case T:
+                return 1;
+            case LT:
+                return 2;
+            case LTA:
+                return 3;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * A signature is protected if a timestamp was taken while the signing certificate was valid, every
+     * timestamp was taken while the certificate of the previous one was valid, and the certificate of the
+     * last timestamp is still valid at the check time.
+     */
+    private static boolean hasProofOfExistence(XAdESSignature dssSignature, X509Certificate signingCertificate, Date checkTime) {
+        List<TimestampToken> timestamps = new ArrayList<>(dssSignature.getSignatureTimestamps());
+        timestamps.addAll(dssSignature.getArchiveTimestamps());
+        timestamps.sort(Comparator.comparing(TimestampToken::getGenerationTime));
+
+        Date protectedUntil = null;
+        for (TimestampToken timestamp : timestamps) {
+            Date generationTime = timestamp.getGenerationTime();
+            boolean startsChain = !generationTime.after(signingCertificate.getNotAfter());
+            boolean continuesChain = protectedUntil != null && !generationTime.after(protectedUntil);
+            if (startsChain || continuesChain) {
+                X509Certificate tsaCertificate = getTsaCertificate(timestamp);
+                if (tsaCertificate != null) {
+                    protectedUntil = tsaCertificate.getNotAfter();
+                }
+            }
+        }
+        return protectedUntil != null && protectedUntil.after(checkTime);
+    }
+
+    private static X509Certificate getTsaCertificate(TimestampToken timestamp) {
+        for (CertificateToken certificateToken : timestamp.getCertificates()) {
+            try {
+                List<String> keyPurposes = certificateToken.getCertificate().getExtendedKeyUsage();
+                if (keyPurposes != null && keyPurposes.contains(TIMESTAMPING_KEY_PURPOSE)) {
+                    return certificateToken.getCertificate();
+                }
+            } catch (CertificateParsingException e) {
+                // Not usable as TSA certificate
+            }
+        }
+        return null;
+    }
+
+    private static String decode(String uri) {
+        try {
+            return URLDecoder.decode(uri.replace("+", "%2B"), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
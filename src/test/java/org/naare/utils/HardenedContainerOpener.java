@@ -0,0 +1,291 @@
+package org.naare.utils;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerOpener;
+import org.digidoc4j.exceptions.DigiDoc4JException;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Opens containers with {@link ContainerOpener} after a streaming pass over the ZIP structure that enforces
+ * limits on the total number of inflated bytes, the compression ratio of each entry, the number of entries
+ * and the nesting depth of containers inside containers. Every limit is checked while inflating, so an
+ * adversarial upload is rejected as soon as it crosses a limit, with bounded CPU and memory, regardless of
+ * the sizes declared in the ZIP headers. Nested containers are scanned straight from the outer stream.
+ * <p>
+ * Input that is not a ZIP archive (DDOC) contains no entries and is passed to DD4J as is.
+ */
+public final class HardenedContainerOpener {
+
+    private static final Set<String> NESTED_CONTAINER_EXTENSIONS = new HashSet<>(
+            Arrays.asList("asice", "sce", "asics", "scs", "bdoc", "zip"));
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Limits enforced while reading a container.
+     */
+    public static class Limits {
+
+        private final long maxInflatedBytes;
+        private final int maxCompressionRatio;
+        private final long compressionRatioThresholdBytes;
+        private final int maxEntryCount;
+        private final int maxNestingDepth;
+
+        /**
+         * Constructs the limits.
+         *
+         * @param maxInflatedBytes               maximum inflated bytes of all entries, nested ones included
+         * @param maxCompressionRatio            maximum inflated to compressed size ratio of an entry
+         * @param compressionRatioThresholdBytes ratio is checked only for entries inflated beyond this size
+         * @param maxEntryCount                  maximum number of entries, nested ones included
+         * @param maxNestingDepth                maximum depth of containers nested in the container
+         */
+        public Limits(long maxInflatedBytes, int maxCompressionRatio, long compressionRatioThresholdBytes,
+                      int maxEntryCount, int maxNestingDepth) {
+            this.maxInflatedBytes = maxInflatedBytes;
+            this.maxCompressionRatio = maxCompressionRatio;
+            this.compressionRatioThresholdBytes = compressionRatioThresholdBytes;
+            this.maxEntryCount = maxEntryCount;
+            this.maxNestingDepth = maxNestingDepth;
+        }
+
+        /**
+         * @return limits suitable for an upload endpoint: 256 MB inflated, ratio 100 above 1 MB,
+         * 1000 entries and two nested container levels
+         */
+        public static Limits defaults() {
+            return new Limits(256L * 1024 * 1024, 100, 1024 * 1024, 1000, 2);
+        }
+    }
+
+    /**
+     * Counters shared by a container and all containers nested in it.
+     */
+    private static class Budget {
+
+        private final Limits limits;
+        private long inflatedBytes;
+        private int entryCount;
+
+        Budget(Limits limits) {
+            this.limits = limits;
+        }
+    }
+
+    private HardenedContainerOpener() {
+    }
+
+    /**
+     * Reads the container file once, checks it and opens it from the checked bytes, so the file cannot be
+     * replaced between the check and the open. See {@link #open(InputStream, Configuration, Limits)}.
+     *
+     * @param path          container path
+     * @param configuration configuration
+     * @param limits        limits to enforce
+     * @return container
+     * @throws DigiDoc4JException if a limit is exceeded
+     */
+    public static Container open(Path path, Configuration configuration, Limits limits) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return open(in, configuration, limits);
+        }
+    }
+
+    /**
+     * Reads the container stream, checks it and opens it. The compressed stream is spooled to a temporary
+     * file, at most {@code maxInflatedBytes} of it, so memory stays bounded by the copy buffer whatever the
+     * upload size; the file is checked and opened from and deleted before returning.
+     *
+     * @param in            container stream
+     * @param configuration configuration
+     * @param limits        limits to enforce
+     * @return container
+     * @throws DigiDoc4JException if a limit is exceeded
+     */
+    public static Container open(InputStream in, Configuration configuration, Limits limits) throws IOException {
+        Path spool = Files.createTempFile("hardened-container", ".tmp");
+        try {
+            copyBounded(in, spool, limits.maxInflatedBytes);
+            try (InputStream checked = new BufferedInputStream(Files.newInputStream(spool))) {
+                check(checked, limits);
+            }
+            try (InputStream checked = new BufferedInputStream(Files.newInputStream(spool))) {
+                return ContainerOpener.open(checked, configuration);
+            }
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+
+    /**
+     * Streams through the ZIP archive and its nested containers and enforces the limits.
+     *
+     * @param in     container stream
+     * @param limits limits to enforce
+     * @throws DigiDoc4JException if a limit is exceeded
+     */
+    public static void check(InputStream in, Limits limits) throws IOException {
+        check(in, new Budget(limits), 0);
+    }
+
+    private static void check(InputStream in, Budget budget, int depth) throws IOException {
+        Limits limits = budget.limits;
+        CountingInputStream compressed = new CountingInputStream(in);
+        ZipInputStream zip = new ZipInputStream(compressed);
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (++budget.entryCount > limits.maxEntryCount) {
+                throw new DigiDoc4JException(String.format("Container has more than %d entries", limits.maxEntryCount));
+            }
+            if (isNestedContainer(entry.getName())) {
+                if (depth + 1 > limits.maxNestingDepth) {
+                    throw new DigiDoc4JException(String.format("Container nesting is deeper than %d levels: %s",
+                            limits.maxNestingDepth, entry.getName()));
+                }
+                // The nested archive is read from the inflating stream, counting against the same budget
+                EntryInputStream entryIn = new EntryInputStream(zip, entry.getName(), compressed, budget);
+                check(entryIn, budget, depth + 1);
+                entryIn.drain(buffer);
+            } else {
+                new EntryInputStream(zip, entry.getName(), compressed, budget).drain(buffer);
+            }
+        }
+    }
+
+    private static boolean isNestedContainer(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && NESTED_CONTAINER_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static void copyBounded(InputStream in, Path file, long maxBytes) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+                if (total > maxBytes) {
+                    throw new DigiDoc4JException(String.format("Container is larger than %d bytes", maxBytes));
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Counts bytes read from the compressed stream, to compute the compression ratio of the current entry.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * Inflated data of one entry. Checks the total inflated size and the entry compression ratio on every read,
+     * and is not closed together with the nested ZIP stream reading from it.
+     */
+    private static class EntryInputStream extends FilterInputStream {
+
+        private final String name;
+        private final CountingInputStream compressed;
+        private final long compressedStart;
+        private final Budget budget;
+        private long inflatedBytes;
+
+        EntryInputStream(ZipInputStream zip, String name, CountingInputStream compressed, Budget budget) {
+            super(zip);
+            this.name = name;
+            this.compressed = compressed;
+            this.compressedStart = compressed.count;
+            this.budget = budget;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                account(read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // The outer ZIP stream stays open
+        }
+
+        void drain(byte[] buffer) throws IOException {
+            while (read(buffer, 0, buffer.length) != -1) {
+                // Inflate and count the rest of the entry
+            }
+        }
+
+        private void account(int read) {
+            Limits limits = budget.limits;
+            inflatedBytes += read;
+            budget.inflatedBytes += read;
+            if (budget.inflatedBytes > limits.maxInflatedBytes) {
+                throw new DigiDoc4JException(String.format("Container inflates to more than %d bytes", limits.maxInflatedBytes));
+            }
+            if (inflatedBytes > limits.compressionRatioThresholdBytes) {
+                long compressedBytes = Math.max(1, compressed.count - compressedStart);
+                if (inflatedBytes / compressedBytes > limits.maxCompressionRatio) {
+                    throw new DigiDoc4JException(String.format("Entry %s exceeds compression ratio %d",
+                            name, limits.maxCompressionRatio));
+                }
+            }
+        }
+    }
+}
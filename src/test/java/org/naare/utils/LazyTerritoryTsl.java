@@ -0,0 +1,172 @@
+package org.naare.utils;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerOpener;
+import org.digidoc4j.Signature;
+import org.digidoc4j.Timestamp;
+import org.digidoc4j.X509Cert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Loads trusted lists per territory on first use instead of every TSL of the LOTL up front. Containers are
+ * opened with {@link #open(Path)}, which reads the territories from the issuer country of the signing,
+ * signature timestamp, OCSP responder and container timestamp certificates and reopens the container with a
+ * configuration trusting only those territories.
+ * The TSL of that configuration is downloaded, verified and loaded the first time the territories are
+ * needed, and concurrent requests for the same territories wait for the same load.
+ * <p>
+ * A configuration is kept per territory set. A container mixing territories gets a configuration of its
+ * own, whose trusted lists are read from the DD4J TSL file cache when already downloaded.
+ */
+public class LazyTerritoryTsl {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LazyTerritoryTsl.class);
+
+    private final Supplier<Configuration> configurationFactory;
+    private final Function<String, String> territoryOfCountry;
+    private final Configuration openingConfiguration;
+
+    private final ConcurrentMap<Set<String>, CompletableFuture<Configuration>> configurations = new ConcurrentHashMap<>();
+    private final AtomicLong loadCount = new AtomicLong();
+
+    /**
+     * Constructs a LazyTerritoryTsl.
+     *
+     * @param configurationFactory creates the configurations, e.g. {@code () -> Configuration.of(Configuration.Mode.TEST)}
+     * @param territoryOfCountry   maps a certificate issuer country to the LOTL territory code, e.g. "EE" to
+     *                             "EE_T" for the test LOTL
+     */
+    public LazyTerritoryTsl(Supplier<Configuration> configurationFactory, Function<String, String> territoryOfCountry) {
+        this.configurationFactory = configurationFactory;
+        this.territoryOfCountry = territoryOfCountry;
+        // Opening a container does not load the TSL
+        this.openingConfiguration = configurationFactory.get();
+    }
+
+    /**
+     * Opens the container with a configuration trusting the territories of its certificates. Containers
+     * without certificates of a known country keep a configuration loading every territory.
+     * <p>
+     * DD4J binds a container to its configuration when it is opened, so the container is parsed twice:
+     * once to read its certificates and once with the territory configuration. The file is read once and
+     * both parses use the same bytes; neither validates anything, and the cost is small next to validation.
+     *
+     * @param path container path
+     * @return container
+     */
+    public Container open(Path path) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to read container %s", path), e);
+        }
+        Container container = ContainerOpener.open(new ByteArrayInputStream(bytes), openingConfiguration);
+        Set<String> territories = getTerritories(container);
+        if (territories.isEmpty()) {
+            LOG.warn("No territory found for {}, all territories are loaded on validation", path);
+            return container;
+        }
+        return ContainerOpener.open(new ByteArrayInputStream(bytes), getConfiguration(territories));
+    }
+
+    /**
+     * Returns the configuration trusting the territories, loading its TSL the first time.
+     *
+     * @param territories LOTL territory codes
+     * @return configuration with the TSL loaded
+     */
+    public Configuration getConfiguration(Set<String> territories) {
+        Set<String> key = Collections.unmodifiableSet(new TreeSet<>(territories));
+        CompletableFuture<Configuration> future = configurations.get(key);
+        if (future == null) {
+            CompletableFuture<Configuration> loading = new CompletableFuture<>();
+            future = configurations.putIfAbsent(key, loading);
+            if (future == null) {
+                future = loading;
+                try {
+                    loading.complete(load(key));
+                } catch (RuntimeException e) {
+                    // Not kept, the next request tries again
+                    configurations.remove(key, loading);
+                    loading.completeExceptionally(e);
+                }
+            }
+        }
+        return future.join();
+    }
+
+    /**
+     * Returns the territories of the signing, signature timestamp, OCSP responder and container timestamp
+     * certificates of the container.
+     *
+     * @param container container
+     * @return LOTL territory codes
+     */
+    public Set<String> getTerritories(Container container) {
+        Set<String> territories = new TreeSet<>();
+        for (Signature signature : container.getSignatures()) {
+            addTerritory(territories, signature.getSigningCertificate());
+            addTerritory(territories, signature.getTimeStampTokenCertificate());
+            addTerritory(territories, signature.getOCSPCertificate());
+        }
+        for (Timestamp timestamp : container.getTimestamps()) {
+            addTerritory(territories, timestamp.getCertificate());
+        }
+        return territories;
+    }
+
+    /**
+     * @return territory sets whose TSL is loaded or being loaded
+     */
+    public Set<Set<String>> getLoadedTerritories() {
+        return Collections.unmodifiableSet(configurations.keySet());
+    }
+
+    /**
+     * @return number of TSL loads started
+     */
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    private Configuration load(Set<String> territories) {
+        loadCount.incrementAndGet();
+        long start = System.nanoTime();
+        String[] territoryCodes = territories.toArray(new String[0]);
+        Configuration configuration = configurationFactory.get();
+        configuration.setTrustedTerritories(territoryCodes);
+        configuration.setRequiredTerritories(territoryCodes);
+        configuration.getTSL().refresh();
+        LOG.info("TSL of {} loaded with {} certificates in {} ms", territories,
+                configuration.getTSL().getCertificates().size(), (System.nanoTime() - start) / 1_000_000);
+        return configuration;
+    }
+
+    private void addTerritory(Set<String> territories, X509Cert certificate) {
+        if (certificate == null) {
+            return;
+        }
+        String country = certificate.getIssuerName(X509Cert.Issuer.C);
+        if (country != null && !country.isEmpty()) {
+            territories.add(territoryOfCountry.apply(country));
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package org.naare.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.Req;
+import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process OCSP responder on a local HTTP port. Responses are built with BouncyCastle
+ * {@link BasicOCSPRespBuilder} for every CertID in the request, including the CertIDs of the test PKCS#12
+ * signing certificate, and signed with an in-memory test key, so OCSP can be exercised without network
+ * access. Use {@link #getUrl()} with {@code Configuration.setOcspSource}.
+ * <p>
+ * The certificate status, nonce echo, response latency and the producedAt and thisUpdate offsets from the
+ * current time can be changed while the responder is running, e.g. to test the OCSP freshness rules.
+ * <p>
+ * The default responder certificate is issued by a generated test CA, {@link #getCaCertificate()}. Trusting
+ * the CA makes the responses acceptable to DD4J, e.g. to sign with the local responder:
+ * <pre>
+ * configuration.getTSL().addTSLCertificate(responder.getCaCertificate());
+ * configuration.setOcspSource(responder.getUrl());
+ * </pre>
+ */
+public class LocalOcspResponder implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LocalOcspResponder.class);
+
+    public static final String DEFAULT_RESPONDER_NAME = "CN=LOCAL TEST OCSP RESPONDER, O=dd4jTestDemo, C=EE";
+    public static final String DEFAULT_CA_NAME = "CN=LOCAL TEST OCSP CA, O=dd4jTestDemo, C=EE";
+
+    private static final String OCSP_RESPONSE_CONTENT_TYPE = "application/ocsp-response";
+
+    private final PrivateKey privateKey;
+    private final X509Certificate responderCertificate;
+    private final X509Certificate caCertificate;
+    private final X509CertificateHolder[] responderChain;
+    private final RespID responderId;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private volatile CertificateStatus certificateStatus = CertificateStatus.GOOD;
+    private volatile int responseStatus = OCSPRespBuilder.SUCCESSFUL;
+    private volatile boolean nonceEcho = true;
+    private volatile long latencyMillis;
+    private volatile Duration producedAtOffset = Duration.ZERO;
+    private volatile Duration thisUpdateOffset = Duration.ZERO;
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    /**
+     * Starts a LocalOcspResponder with a freshly generated EC key and a responder certificate issued by a
+     * freshly generated test CA.
+     */
+    public LocalOcspResponder() throws IOException {
+        this(TestCertificates.newKeyPair(), TestCertificates.newKeyPair());
+    }
+
+    private LocalOcspResponder(final KeyPair caKeyPair, final KeyPair keyPair) throws IOException {
+        this(keyPair.getPrivate(), TestCertificates.certificate(DEFAULT_RESPONDER_NAME, keyPair)
+                        .issuedBy(DEFAULT_CA_NAME, caKeyPair).keyIdentifiers().ocspNoCheck()
+                        .extendedKeyUsage(KeyPurposeId.id_kp_OCSPSigning).build(),
+                TestCertificates.certificate(DEFAULT_CA_NAME, caKeyPair).ca().keyIdentifiers().build());
+    }
+
+    /**
+     * Starts a LocalOcspResponder on a free local port that signs responses with the given key and certificate.
+     *
+     * @param privateKey           the responder signing key
+     * @param responderCertificate the responder certificate matching the key
+     */
+    public LocalOcspResponder(final PrivateKey privateKey, final X509Certificate responderCertificate) throws IOException {
+        this(privateKey, responderCertificate, null);
+    }
+
+    private LocalOcspResponder(final PrivateKey privateKey, final X509Certificate responderCertificate,
+                               final X509Certificate caCertificate) throws IOException {
+        this.privateKey = privateKey;
+        this.responderCertificate = responderCertificate;
+        this.caCertificate = caCertificate;
+        try {
+            X509CertificateHolder certificateHolder = new JcaX509CertificateHolder(responderCertificate);
+            this.responderChain = caCertificate == null ? new X509CertificateHolder[]{certificateHolder}
+                    : new X509CertificateHolder[]{certificateHolder, new JcaX509CertificateHolder(caCertificate)};
+            this.responderId = new RespID(certificateHolder.getSubject());
+        } catch (CertificateEncodingException e) {
+            throw new IllegalStateException(String.format("Failed to initialize local OCSP responder: %s", e.getMessage()), e);
+        }
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+        LOG.info("LocalOcspResponder started at {} with responder certificate: {}",
+                getUrl(), responderCertificate.getSubjectX500Principal());
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    public X509Certificate getResponderCertificate() {
+        return responderCertificate;
+    }
+
+    /**
+     * @return CA certificate of the default responder certificate, null for a given responder certificate
+     */
+    public X509Certificate getCaCertificate() {
+        return caCertificate;
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @param certificateStatus status returned for every CertID, {@link CertificateStatus#GOOD},
+     *                          {@code RevokedStatus} or {@code UnknownStatus}
+     */
+    public void setCertificateStatus(CertificateStatus certificateStatus) {
+        this.certificateStatus = certificateStatus;
+    }
+
+    /**
+     * @param responseStatus OCSP response status, e.g. {@link OCSPRespBuilder#TRY_LATER}. Responses other than
+     *                       {@link OCSPRespBuilder#SUCCESSFUL} have no body.
+     */
+    public void setResponseStatus(int responseStatus) {
+        this.responseStatus = responseStatus;
+    }
+
+    /**
+     * @param nonceEcho whether the request nonce is copied to the response
+     */
+    public void setNonceEcho(boolean nonceEcho) {
+        this.nonceEcho = nonceEcho;
+    }
+
+    /**
+     * @param latencyMillis delay before the response is sent
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * @param producedAtOffset offset of producedAt from the current time, negative for a response produced
+     *                         in the past
+     */
+    public void setProducedAtOffset(Duration producedAtOffset) {
+        this.producedAtOffset = producedAtOffset;
+    }
+
+    /**
+     * @param thisUpdateOffset offset of thisUpdate from the current time
+     */
+    public void setThisUpdateOffset(Duration thisUpdateOffset) {
+        this.thisUpdateOffset = thisUpdateOffset;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+
+        byte[] request;
+        try (InputStream in = exchange.getRequestBody()) {
+            request = readAll(in);
+        }
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        byte[] response = generateResponse(request);
+        exchange.getResponseHeaders().set("Content-Type", OCSP_RESPONSE_CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    private byte[] generateResponse(byte[] request) throws IOException {
+        OCSPRespBuilder responseBuilder = new OCSPRespBuilder();
+        try {
+            if (responseStatus != OCSPRespBuilder.SUCCESSFUL) {
+                return responseBuilder.build(responseStatus, null).getEncoded();
+            }
+            OCSPReq ocspRequest;
+            try {
+                ocspRequest = new OCSPReq(request);
+            } catch (IOException e) {
+                LOG.debug("Malformed OCSP request: {}", e.getMessage());
+                return responseBuilder.build(OCSPRespBuilder.MALFORMED_REQUEST, null).getEncoded();
+            }
+
+            long now = System.currentTimeMillis();
+            Date thisUpdate = new Date(now + thisUpdateOffset.toMillis());
+            Date producedAt = new Date(now + producedAtOffset.toMillis());
+
+            BasicOCSPRespBuilder builder = new BasicOCSPRespBuilder(responderId);
+            for (Req singleRequest : ocspRequest.getRequestList()) {
+                builder.addResponse(singleRequest.getCertID(), certificateStatus, thisUpdate, null, null);
+            }
+            Extension nonce = ocspRequest.getExtension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce);
+            if (nonceEcho && nonce != null) {
+                builder.setResponseExtensions(new Extensions(nonce));
+            }
+
+            // A new content signer per response, ContentSigner is not thread-safe
+            BasicOCSPResp basicResponse = builder.build(
+                    new JcaContentSignerBuilder(TestCertificates.getSignatureAlgorithm(privateKey)).build(privateKey), responderChain, producedAt);
+            return responseBuilder.build(OCSPRespBuilder.SUCCESSFUL, basicResponse).getEncoded();
+        } catch (OCSPException | OperatorCreationException e) {
+            LOG.warn("Failed to generate OCSP response: {}", e.getMessage());
+            try {
+                return responseBuilder.build(OCSPRespBuilder.INTERNAL_ERROR, null).getEncoded();
+            } catch (OCSPException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,135 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.model.TimestampBinary;
+import eu.europa.esig.dss.spi.DSSASN1Utils;
+import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
+import eu.europa.esig.dss.utils.Utils;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoGeneratorBuilder;
+import org.bouncycastle.operator.DefaultDigestAlgorithmIdentifierFinder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.tsp.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process RFC 3161 time-stamp authority. Tokens are generated with BouncyCastle
+ * {@code TimeStampResponseGenerator} and signed with an in-memory test key, so timestamping
+ * does not need network access. Can be used in place of {@link TestTSPSource} with
+ * {@code setArchiveTspSourceFactory} and {@code setSignatureTspSourceFactory}.
+ * <p>
+ * The TSA certificate is not in any trusted list, so containers timestamped with it are
+ * not expected to pass qualification checks.
+ */
+public class LocalTSPSource implements TSPSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LocalTSPSource.class);
+
+    public static final String DEFAULT_TSA_NAME = "CN=LOCAL TEST TIMESTAMPING UNIT, O=dd4jTestDemo, C=EE";
+    public static final String DEFAULT_POLICY_OID = "1.3.6.1.4.1.10015.1000.3.2.1";
+
+    /**
+     * The certificate of the TSA, included in every token.
+     */
+    private final X509Certificate tsaCertificate;
+
+    /**
+     * The generator used to create the TSP response.
+     */
+    private final TimeStampResponseGenerator responseGenerator;
+
+    /**
+     * Serial number of the last issued token.
+     */
+    private final AtomicLong serialNumber = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * Constructs a LocalTSPSource with a freshly generated EC key and self-signed TSA certificate.
+     */
+    public LocalTSPSource() {
+        this(TestCertificates.newKeyPair());
+    }
+
+    private LocalTSPSource(final KeyPair keyPair) {
+        this(keyPair.getPrivate(), TestCertificates.certificate(DEFAULT_TSA_NAME, keyPair)
+                .extendedKeyUsage(KeyPurposeId.id_kp_timeStamping).build());
+    }
+
+    /**
+     * Constructs a LocalTSPSource that signs tokens with the given key and certificate.
+     *
+     * @param privateKey     the TSA signing key
+     * @param tsaCertificate the TSA certificate matching the key
+     */
+    public LocalTSPSource(final PrivateKey privateKey, final X509Certificate tsaCertificate) {
+        this.tsaCertificate = tsaCertificate;
+        try {
+            TimeStampTokenGenerator tokenGenerator = new TimeStampTokenGenerator(
+                    new JcaSimpleSignerInfoGeneratorBuilder().build(TestCertificates.getSignatureAlgorithm(privateKey), privateKey, tsaCertificate),
+                    new JcaDigestCalculatorProviderBuilder().build()
+                            .get(new DefaultDigestAlgorithmIdentifierFinder().find("SHA-256")),
+                    new ASN1ObjectIdentifier(DEFAULT_POLICY_OID));
+            tokenGenerator.addCertificates(new JcaCertStore(Collections.singletonList(tsaCertificate)));
+            this.responseGenerator = new TimeStampResponseGenerator(tokenGenerator, TSPAlgorithms.ALLOWED);
+        } catch (Exception e) {
+            throw new IllegalStateException(String.format("Failed to initialize local TSA: %s", e.getMessage()), e);
+        }
+        LOG.info("LocalTSPSource initialized with TSA certificate: {}", tsaCertificate.getSubjectX500Principal());
+    }
+
+    /**
+     * Returns the certificate of the TSA.
+     *
+     * @return TSA certificate
+     */
+    public X509Certificate getTsaCertificate() {
+        return tsaCertificate;
+    }
+
+    @Override
+    public TimestampBinary getTimeStampResponse(final eu.europa.esig.dss.enumerations.DigestAlgorithm digestAlgorithm, final byte[] digest) throws DSSException {
+        LOG.debug("Timestamp digest algorithm: {}", digestAlgorithm.getName());
+        LOG.debug("Timestamp digest value: {}", Utils.toHex(digest));
+
+        try {
+            // Set up the time stamp request
+            TimeStampRequestGenerator tsqGenerator = new TimeStampRequestGenerator();
+            tsqGenerator.setCertReq(true);
+
+            ASN1ObjectIdentifier asn1ObjectIdentifier = new ASN1ObjectIdentifier(digestAlgorithm.getOid());
+            TimeStampRequest timeStampRequest = tsqGenerator.generate(asn1ObjectIdentifier, digest);
+
+            // Generate the response locally instead of calling the communications layer
+            TimeStampResponse timeStampResponse = generateResponse(timeStampRequest);
+
+            // Validate token, nonce, policy id, message digest, etc.
+            timeStampResponse.validate(timeStampRequest);
+
+            TimeStampToken timeStampToken = timeStampResponse.getTimeStampToken();
+            if (timeStampToken == null) {
+                throw new TSPException(String.format("Request rejected: %s", timeStampResponse.getStatusString()));
+            }
+            return new TimestampBinary(DSSASN1Utils.getDEREncoded(timeStampToken));
+
+        } catch (TSPException e) {
+            throw new RuntimeException(String.format("Invalid TSP response: %s", e.getMessage()), e);
+        }
+    }
+
+    // ContentSigner behind the token generator is not thread-safe
+    private synchronized TimeStampResponse generateResponse(final TimeStampRequest timeStampRequest) throws TSPException {
+        return responseGenerator.generateGrantedResponse(timeStampRequest,
+                BigInteger.valueOf(serialNumber.incrementAndGet()), new Date());
+    }
+}
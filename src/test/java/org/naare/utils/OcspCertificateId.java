@@ -0,0 +1,85 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.utils.Utils;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+/**
+ * OCSP CertID (RFC 6960) of a certificate: SHA-1 hashes of the issuer name and issuer public key,
+ * and the certificate serial number. Used as a key for OCSP responses.
+ */
+public final class OcspCertificateId {
+
+    private final String issuerNameHash;
+    private final String issuerKeyHash;
+    private final BigInteger serialNumber;
+
+    private OcspCertificateId(String issuerNameHash, String issuerKeyHash, BigInteger serialNumber) {
+        this.issuerNameHash = issuerNameHash;
+        this.issuerKeyHash = issuerKeyHash;
+        this.serialNumber = serialNumber;
+    }
+
+    /**
+     * Creates the CertID of the certificate.
+     *
+     * @param certificateToken       certificate to check
+     * @param issuerCertificateToken issuer of the certificate
+     * @return CertID
+     */
+    public static OcspCertificateId of(CertificateToken certificateToken, CertificateToken issuerCertificateToken) {
+        byte[] issuerName = issuerCertificateToken.getCertificate().getSubjectX500Principal().getEncoded();
+        byte[] issuerKey = SubjectPublicKeyInfo.getInstance(issuerCertificateToken.getPublicKey().getEncoded())
+                .getPublicKeyData().getBytes();
+        return new OcspCertificateId(sha1Hex(issuerName), sha1Hex(issuerKey), certificateToken.getSerialNumber());
+    }
+
+    public String getIssuerNameHash() {
+        return issuerNameHash;
+    }
+
+    public String getIssuerKeyHash() {
+        return issuerKeyHash;
+    }
+
+    public BigInteger getSerialNumber() {
+        return serialNumber;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof OcspCertificateId)) {
+            return false;
+        }
+        OcspCertificateId that = (OcspCertificateId) o;
+        return issuerNameHash.equals(that.issuerNameHash)
+                && issuerKeyHash.equals(that.issuerKeyHash)
+                && serialNumber.equals(that.serialNumber);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(issuerNameHash, issuerKeyHash, serialNumber);
+    }
+
+    @Override
+    public String toString() {
+        return "CertID[issuerNameHash=" + issuerNameHash + ", issuerKeyHash=" + issuerKeyHash + ", serialNumber=" + serialNumber + "]";
+    }
+
+    private static String sha1Hex(byte[] data) {
+        try {
+            return Utils.toHex(MessageDigest.getInstance("SHA-1").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not supported", e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.FileDocument;
+import org.digidoc4j.Container;
+import org.digidoc4j.DataFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Computes data file digests concurrently, with at most {@code parallelism} files hashed at the same time.
+ * <p>
+ * DD4J and DSS digest data files one after another while building the signature or validating it. Files
+ * added from disk are hashed here through a {@link FileChannel} into a direct buffer per thread, and the
+ * digests are carried by the returned data files, so {@code SignatureBuilder.buildDataToSign} finds them
+ * already computed. For opened containers {@link #digest(Container, DigestAlgorithm)} fills the digest
+ * cache of each data file document before validation.
+ */
+public class ParallelDigester implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelDigester.class);
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * File document with a digest computed in advance. Other digest algorithms are computed by DSS as usual.
+     */
+    static class DigestedFileDocument extends FileDocument {
+
+        private final DigestAlgorithm digestAlgorithm;
+        private final byte[] digest;
+
+        DigestedFileDocument(Path path, DigestAlgorithm digestAlgorithm, byte[] digest) {
+            super(path.toFile());
+            this.digestAlgorithm = digestAlgorithm;
+            this.digest = digest;
+        }
+
+        @Override
+        public byte[] getDigestValue(DigestAlgorithm digestAlgorithm) {
+            if (this.digestAlgorithm == digestAlgorithm) {
+                return digest.clone();
+            }
+            return super.getDigestValue(digestAlgorithm);
+        }
+    }
+
+    private final ExecutorService executor;
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    /**
+     * Constructs a ParallelDigester.
+     *
+     * @param parallelism maximum number of files hashed at the same time
+     */
+    public ParallelDigester(int parallelism) {
+        this.executor = Executors.newFixedThreadPool(parallelism);
+    }
+
+    /**
+     * Hashes the files concurrently and returns data files carrying the digests.
+     *
+     * @param files           data file paths
+     * @param mimeType        mime type of all data files
+     * @param digestAlgorithm digest algorithm used for the signature references
+     * @return data files in the order of the paths
+     */
+    public List<DataFile> dataFiles(List<Path> files, String mimeType, DigestAlgorithm digestAlgorithm) {
+        List<byte[]> digests = digest(files, digestAlgorithm);
+        List<DataFile> dataFiles = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            DataFile dataFile = new DataFile(new DigestedFileDocument(files.get(i), digestAlgorithm, digests.get(i)));
+            dataFile.setMediaType(mimeType);
+            dataFiles.add(dataFile);
+        }
+        return dataFiles;
+    }
+
+    /**
+     * Hashes the files concurrently.
+     *
+     * @param files           file paths
+     * @param digestAlgorithm digest algorithm
+     * @return digests in the order of the paths
+     */
+    public List<byte[]> digest(List<Path> files, DigestAlgorithm digestAlgorithm) {
+        long start = System.nanoTime();
+        List<Future<byte[]>> futures = new ArrayList<>(files.size());
+        for (Path file : files) {
+            futures.add(executor.submit(() -> digest(file, digestAlgorithm)));
+        }
+        List<byte[]> digests = new ArrayList<>(files.size());
+        for (Future<byte[]> future : futures) {
+            digests.add(getResult(future));
+        }
+        LOG.debug("Digested {} files in {} ms", files.size(), (System.nanoTime() - start) / 1_000_000);
+        return digests;
+    }
+
+    /**
+     * Computes the digests of all data file documents of the container concurrently. DSS keeps the digests
+     * of a document, so validation and signing reuse them.
+     *
+     * @param container       container whose data files are hashed
+     * @param digestAlgorithm digest algorithm
+     */
+    public void digest(Container container, DigestAlgorithm digestAlgorithm) {
+        List<Future<byte[]>> futures = new ArrayList<>();
+        for (DataFile dataFile : container.getDataFiles()) {
+            futures.add(executor.submit(() -> dataFile.getDocument().getDigestValue(digestAlgorithm)));
+        }
+        for (Future<byte[]> future : futures) {
+            getResult(future);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private byte[] digest(Path file, DigestAlgorithm digestAlgorithm) throws IOException {
+        MessageDigest digest = messageDigest(digestAlgorithm);
+        ByteBuffer buffer = buffers.get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest messageDigest(DigestAlgorithm digestAlgorithm) {
+        try {
+            return MessageDigest.getInstance(digestAlgorithm.getJavaName());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] getResult(Future<byte[]> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the digest", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw new UncheckedIOException((IOException) e.getCause());
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(String.format("Digest failed: %s", e.getCause().getMessage()), e.getCause());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.naare.utils;
+
+import org.digidoc4j.Container;
+import org.digidoc4j.DataToSign;
+import org.digidoc4j.Signature;
+import org.digidoc4j.SignatureBuilder;
+import org.digidoc4j.SignatureProfile;
+import org.digidoc4j.SignatureToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Adds several signatures to a container with overlapping I/O. All {@link DataToSign} objects are prepared
+ * first on the calling thread, then every signature is signed with its token and finalized (OCSP and TSA
+ * requests) on the executor, and finally the signatures are added to the container in the order of the tokens.
+ * <p>
+ * Each signature only covers the data files, so signatures prepared before any of them is added are
+ * independent of each other. This holds for ASiC-E/BDOC; ASiC-S can hold only one signature.
+ * Calls on the same token instance are serialized, so use separate token instances to sign in parallel.
+ */
+public class ParallelSigner implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelSigner.class);
+
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a ParallelSigner.
+     *
+     * @param parallelism number of signatures signed and finalized at the same time
+     */
+    public ParallelSigner(int parallelism) {
+        this.executor = Executors.newFixedThreadPool(parallelism);
+    }
+
+    /**
+     * Signs the container with every token and adds the signatures to the container.
+     *
+     * @param container        container to sign
+     * @param signatureTokens  one token per signature
+     * @param signatureProfile signature profile of all signatures
+     * @return added signatures in the order of the tokens
+     */
+    public List<Signature> sign(Container container, List<? extends SignatureToken> signatureTokens, SignatureProfile signatureProfile) {
+        long start = System.nanoTime();
+
+        // Prepare all signatures before the container is changed
+        List<DataToSign> dataToSignList = new ArrayList<>(signatureTokens.size());
+        for (SignatureToken signatureToken : signatureTokens) {
+            dataToSignList.add(SignatureBuilder
+                    .aSignature(container)
+                    .withSigningCertificate(signatureToken.getCertificate())
+                    .withSignatureProfile(signatureProfile)
+                    .buildDataToSign());
+        }
+
+        // Sign and finalize concurrently
+        List<Future<Signature>> futures = new ArrayList<>(signatureTokens.size());
+        for (int i = 0; i < signatureTokens.size(); i++) {
+            SignatureToken signatureToken = signatureTokens.get(i);
+            DataToSign dataToSign = dataToSignList.get(i);
+            futures.add(executor.submit(() -> {
+                byte[] signatureValue;
+                synchronized (signatureToken) {
+                    signatureValue = signatureToken.sign(dataToSign.getDigestAlgorithm(), dataToSign.getDataToSign());
+                }
+                return dataToSign.finalize(signatureValue);
+            }));
+        }
+
+        List<Signature> signatures = new ArrayList<>(futures.size());
+        for (Future<Signature> future : futures) {
+            signatures.add(getResult(future));
+        }
+
+        // Add in deterministic order, only after all signatures succeeded
+        for (Signature signature : signatures) {
+            container.addSignature(signature);
+        }
+
+        LOG.info("Added {} signatures in {} ms", signatures.size(), (System.nanoTime() - start) / 1_000_000);
+        return signatures;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static Signature getResult(Future<Signature> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the signature", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(String.format("Signing failed: %s", e.getCause().getMessage()), e.getCause());
+        }
+    }
+}
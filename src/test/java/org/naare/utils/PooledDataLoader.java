@@ -0,0 +1,116 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.digidoc4j.Constant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * {@link DataLoader} that sends requests through a shared {@link PooledHttpClient}, so TSA and OCSP
+ * requests reuse open connections instead of connecting for every request.
+ * Can be given to {@link TestTSPSource} or set on an OCSP source with {@code setDataLoader}.
+ */
+public class PooledDataLoader implements DataLoader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PooledDataLoader.class);
+
+    public static final String TIMESTAMP_QUERY_CONTENT_TYPE = "application/timestamp-query";
+    public static final String OCSP_REQUEST_CONTENT_TYPE = "application/ocsp-request";
+
+    /**
+     * The client holding the shared connection pool.
+     */
+    private final transient PooledHttpClient httpClient;
+
+    private String contentType;
+    private String userAgent = Constant.USER_AGENT_STRING;
+
+    /**
+     * Constructs a PooledDataLoader on the JVM wide shared client.
+     */
+    public PooledDataLoader() {
+        this(PooledHttpClient.shared());
+    }
+
+    /**
+     * Constructs a PooledDataLoader on the given client.
+     *
+     * @param httpClient pooled client
+     */
+    public PooledDataLoader(PooledHttpClient httpClient) {
+        this.httpClient = Objects.requireNonNull(httpClient, "HTTP client cannot be null");
+    }
+
+    /**
+     * Creates a data loader for TSA requests.
+     *
+     * @param httpClient pooled client
+     * @return data loader
+     */
+    public static PooledDataLoader forTimestamps(PooledHttpClient httpClient) {
+        PooledDataLoader dataLoader = new PooledDataLoader(httpClient);
+        dataLoader.setContentType(TIMESTAMP_QUERY_CONTENT_TYPE);
+        return dataLoader;
+    }
+
+    /**
+     * Creates a data loader for OCSP requests.
+     *
+     * @param httpClient pooled client
+     * @return data loader
+     */
+    public static PooledDataLoader forOcsp(PooledHttpClient httpClient) {
+        PooledDataLoader dataLoader = new PooledDataLoader(httpClient);
+        dataLoader.setContentType(OCSP_REQUEST_CONTENT_TYPE);
+        return dataLoader;
+    }
+
+    public void setUserAgent(String userAgent) {
+        this.userAgent = userAgent;
+    }
+
+    @Override
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    @Override
+    public byte[] get(String url) {
+        LOG.debug("Making get to: {}", url);
+        return httpClient.execute(SimpleRequestBuilder.get(url)
+                .setHeader("User-Agent", userAgent)
+                .build());
+    }
+
+    @Override
+    public DataAndUrl get(List<String> urlStrings) {
+        DSSException lastException = null;
+        for (String url : urlStrings) {
+            try {
+                return new DataAndUrl(url, get(url));
+            } catch (DSSException e) {
+                LOG.warn("Unable to get data from '{}': {}", url, e.getMessage());
+                lastException = e;
+            }
+        }
+        throw new DSSException(String.format("Unable to get data from any of the URLs: %s", urlStrings), lastException);
+    }
+
+    @Override
+    public byte[] post(String url, byte[] content) {
+        LOG.debug("Making post to: {}", url);
+        ContentType requestContentType = contentType != null
+                ? ContentType.create(contentType)
+                : ContentType.APPLICATION_OCTET_STREAM;
+        return httpClient.execute(SimpleRequestBuilder.post(url)
+                .setHeader("User-Agent", userAgent)
+                .setBody(content, requestContentType)
+                .build());
+    }
+}
@@ -0,0 +1,150 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.model.DSSException;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * HTTP client with a connection pool shared by all {@link PooledDataLoader} instances created on it.
+ * Connections are kept alive between requests and limited per host. With HTTP/2 enabled, the protocol is
+ * negotiated with ALPN on TLS connections, HTTP/1.1 is used for servers without HTTP/2 and for plain HTTP,
+ * and requests to an HTTP/2 host are multiplexed over a pooled connection. Plain HTTP/2 (h2c) needs
+ * {@link HttpVersionPolicy#FORCE_HTTP_2}.
+ */
+public class PooledHttpClient implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PooledHttpClient.class);
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 10;
+    public static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 50;
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = 30000;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+    private static PooledHttpClient sharedInstance;
+
+    private final CloseableHttpAsyncClient httpClient;
+    private final long timeoutMillis;
+
+    /**
+     * Constructs a client with default limits, using HTTP/1.1 with keep-alive.
+     */
+    public PooledHttpClient() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_MAX_CONNECTIONS_TOTAL, DEFAULT_KEEP_ALIVE_MILLIS, false);
+    }
+
+    /**
+     * Constructs a pooled client.
+     *
+     * @param maxConnectionsPerHost maximum number of open connections to a single host
+     * @param maxConnectionsTotal   maximum number of open connections
+     * @param keepAliveMillis       how long an idle connection is kept open
+     * @param http2                 negotiate HTTP/2 and multiplex requests over pooled connections, otherwise HTTP/1.1
+     */
+    public PooledHttpClient(int maxConnectionsPerHost, int maxConnectionsTotal, long keepAliveMillis, boolean http2) {
+        this(maxConnectionsPerHost, maxConnectionsTotal, keepAliveMillis,
+                http2 ? HttpVersionPolicy.NEGOTIATE : HttpVersionPolicy.FORCE_HTTP_1);
+    }
+
+    /**
+     * Constructs a pooled client with the given HTTP version policy. The pool limits and keep-alive apply to
+     * every policy.
+     *
+     * @param maxConnectionsPerHost maximum number of open connections to a single host
+     * @param maxConnectionsTotal   maximum number of open connections
+     * @param keepAliveMillis       how long an idle connection is kept open
+     * @param versionPolicy         HTTP version policy, e.g. {@link HttpVersionPolicy#FORCE_HTTP_2} for h2c
+     */
+    public PooledHttpClient(int maxConnectionsPerHost, int maxConnectionsTotal, long keepAliveMillis,
+                            HttpVersionPolicy versionPolicy) {
+        this.timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(timeoutMillis))
+                .setResponseTimeout(Timeout.ofMilliseconds(timeoutMillis))
+                .build();
+
+        PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnPerRoute(maxConnectionsPerHost)
+                .setMaxConnTotal(maxConnectionsTotal)
+                .build();
+
+        this.httpClient = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setVersionPolicy(versionPolicy)
+                .setKeepAliveStrategy((response, context) -> TimeValue.ofMilliseconds(keepAliveMillis))
+                .evictIdleConnections(TimeValue.ofMilliseconds(keepAliveMillis))
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+        this.httpClient.start();
+
+        LOG.info("PooledHttpClient initialized: maxConnectionsPerHost={}, maxConnectionsTotal={}, keepAlive={}ms, versionPolicy={}",
+                maxConnectionsPerHost, maxConnectionsTotal, keepAliveMillis, versionPolicy);
+    }
+
+    /**
+     * Returns a lazily created client with default settings, shared across the JVM.
+     *
+     * @return shared client
+     */
+    public static synchronized PooledHttpClient shared() {
+        if (sharedInstance == null) {
+            sharedInstance = new PooledHttpClient();
+        }
+        return sharedInstance;
+    }
+
+    /**
+     * Executes the request and returns the response body.
+     *
+     * @param request request to execute
+     * @return response body
+     */
+    public byte[] execute(SimpleHttpRequest request) {
+        Future<SimpleHttpResponse> future = httpClient.execute(request, null);
+        try {
+            SimpleHttpResponse response = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (response.getCode() != 200) {
+                throw new DSSException(String.format("Unable to process %s request to '%s'. HTTP status: %d",
+                        request.getMethod(), request.getRequestUri(), response.getCode()));
+            }
+            byte[] body = response.getBodyBytes();
+            return body != null ? body : new byte[0];
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new DSSException(String.format("Interrupted while requesting '%s'", request.getRequestUri()), e);
+        } catch (TimeoutException e) {
+            // Cancelling releases the connection of the abandoned exchange back to the pool
+            future.cancel(true);
+            throw new DSSException(String.format("Unable to process %s request to '%s': timed out after %d ms",
+                    request.getMethod(), request.getRequestUri(), timeoutMillis), e);
+        } catch (ExecutionException e) {
+            throw new DSSException(String.format("Unable to process %s request to '%s': %s",
+                    request.getMethod(), request.getRequestUri(), e.getMessage()), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (Exception e) {
+            LOG.warn("Failed to close HTTP client: {}", e.getMessage());
+        }
+    }
+}
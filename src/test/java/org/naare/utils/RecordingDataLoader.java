@@ -0,0 +1,72 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * {@link DataLoader} decorator that stores every GET response under the directory, in the layout
+ * served by {@link TslFixtureServer}. Used once with network access to record the LOTL and TSLs:
+ * <pre>
+ * configuration.setTslDataLoaderFactory(() -&gt; new RecordingDataLoader(new CommonsDataLoader(), root));
+ * configuration.getTSL().invalidateCache();
+ * configuration.getTSL().refresh();
+ * </pre>
+ */
+public class RecordingDataLoader implements DataLoader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RecordingDataLoader.class);
+
+    private final DataLoader dataLoader;
+    private final transient Path root;
+
+    public RecordingDataLoader(DataLoader dataLoader, Path root) {
+        this.dataLoader = Objects.requireNonNull(dataLoader, "DataLoader is not provided!");
+        this.root = root;
+    }
+
+    @Override
+    public byte[] get(String url) {
+        byte[] content = dataLoader.get(url);
+        record(url, content);
+        return content;
+    }
+
+    @Override
+    public DataAndUrl get(List<String> urlStrings) {
+        DataAndUrl dataAndUrl = dataLoader.get(urlStrings);
+        record(dataAndUrl.getUrlString(), dataAndUrl.getData());
+        return dataAndUrl;
+    }
+
+    @Override
+    public byte[] post(String url, byte[] content) {
+        return dataLoader.post(url, content);
+    }
+
+    @Override
+    public void setContentType(String contentType) {
+        dataLoader.setContentType(contentType);
+    }
+
+    private void record(String url, byte[] content) {
+        if (content == null) {
+            return;
+        }
+        Path file = root.resolve(TslFixtureServer.toRelativePath(url));
+        try {
+            Files.createDirectories(file.getParent());
+            Files.write(file, content);
+            LOG.info("Recorded {} to {}", url, file);
+        } catch (IOException e) {
+            throw new DSSException(String.format("Unable to record '%s': %s", url, e.getMessage()), e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.naare.utils;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerOpener;
+import org.digidoc4j.ContainerValidationResult;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Opens and validates containers from a stream with DD4J big files support. This class only sets
+ * {@code setMaxFileSizeCachedInMemoryInMB} and opens with {@code ContainerOpener.open(InputStream)};
+ * keeping data files larger than the limit in temporary files instead of on heap is done by DD4J.
+ */
+public final class StreamingContainers {
+
+    /**
+     * Default size limit in MB for data files kept in memory.
+     */
+    public static final long DEFAULT_IN_MEMORY_LIMIT_MB = 1;
+
+    private StreamingContainers() {
+    }
+
+    /**
+     * Enables big files support: data files larger than the limit are cached in temporary files.
+     *
+     * @param configuration  configuration to change
+     * @param inMemoryLimitMb maximum data file size in MB kept in memory
+     * @return the same configuration
+     */
+    public static Configuration withBigFilesSupport(Configuration configuration, long inMemoryLimitMb) {
+        configuration.setMaxFileSizeCachedInMemoryInMB(inMemoryLimitMb);
+        return configuration;
+    }
+
+    /**
+     * Opens the container from a buffered file stream.
+     *
+     * @param path          container path
+     * @param configuration configuration with big files support enabled
+     * @return container
+     */
+    public static Container open(Path path, Configuration configuration) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path), 64 * 1024)) {
+            return ContainerOpener.open(in, configuration);
+        }
+    }
+
+    /**
+     * Opens the container from a buffered file stream and validates it.
+     *
+     * @param path          container path
+     * @param configuration configuration with big files support enabled
+     * @return validation result
+     */
+    public static ContainerValidationResult openAndValidate(Path path, Configuration configuration) throws IOException {
+        return open(path, configuration).validate();
+    }
+
+    /**
+     * Returns a stream of pseudo-random bytes of the given size, generated on the fly so that huge test
+     * data files never exist on heap or disk before they are written into a container.
+     *
+     * @param size number of bytes
+     * @param seed random seed
+     * @return input stream
+     */
+    public static InputStream generatedData(long size, long seed) {
+        return new InputStream() {
+            private final Random random = new Random(seed);
+            private final byte[] block = new byte[8192];
+            private int blockPosition = block.length;
+            private long remaining = size;
+
+            @Override
+            public int read() {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                if (blockPosition == block.length) {
+                    random.nextBytes(block);
+                    blockPosition = 0;
+                }
+                int count = (int) Math.min(Math.min(length, block.length - blockPosition), remaining);
+                System.arraycopy(block, blockPosition, buffer, offset, count);
+                blockPosition += count;
+                remaining -= count;
+                return count;
+            }
+        };
+    }
+}
@@ -0,0 +1,133 @@
+package org.naare.utils;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.AsyncEntityProducers;
+import org.apache.hc.core5.http.nio.entity.DiscardingEntityConsumer;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.nio.support.BasicResponseProducer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http.protocol.HttpCoreContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plain HTTP/2 (h2c) counterpart of {@link StubHttpServer}: answers every request with a fixed response
+ * body and counts requests and distinct client connections, so multiplexing can be checked. Clients need
+ * prior knowledge of HTTP/2, e.g. a {@link PooledHttpClient} with {@link HttpVersionPolicy#FORCE_HTTP_2}.
+ */
+public class StubHttp2Server implements AutoCloseable {
+
+    private final HttpAsyncServer server;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final int port;
+    private final byte[] responseBody;
+    private final ContentType contentType;
+    private final long latencyMillis;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final Set<SocketAddress> clientAddresses = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Starts a stub server on a free local port.
+     *
+     * @param responseBody  body returned for every request
+     * @param contentType   content type of the response
+     * @param latencyMillis delay before the response is sent, without blocking the other streams
+     */
+    public StubHttp2Server(byte[] responseBody, String contentType, long latencyMillis) throws IOException {
+        this.responseBody = responseBody;
+        this.contentType = ContentType.parse(contentType);
+        this.latencyMillis = latencyMillis;
+        this.server = H2ServerBootstrap.bootstrap()
+                .setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_2)
+                .register("*", new AsyncServerRequestHandler<Message<HttpRequest, Void>>() {
+                    @Override
+                    public AsyncRequestConsumer<Message<HttpRequest, Void>> prepare(HttpRequest request,
+                                                                                  EntityDetails entityDetails,
+                                                                                  HttpContext context) {
+                        return new BasicRequestConsumer<>(new DiscardingEntityConsumer<Void>());
+                    }
+
+                    @Override
+                    public void handle(Message<HttpRequest, Void> message, ResponseTrigger responseTrigger,
+                                       HttpContext context) {
+                        StubHttp2Server.this.handle(responseTrigger, context);
+                    }
+                })
+                .create();
+        this.server.start();
+        try {
+            ListenerEndpoint endpoint = server.listen(new InetSocketAddress("127.0.0.1", 0), URIScheme.HTTP).get();
+            this.port = ((InetSocketAddress) endpoint.getAddress()).getPort();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IOException("Interrupted while starting the stub server", e);
+        } catch (ExecutionException e) {
+            close();
+            throw new IOException(String.format("Unable to start the stub server: %s", e.getMessage()), e);
+        }
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + port + "/";
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return number of distinct client sockets that have sent requests
+     */
+    public int getConnectionCount() {
+        return clientAddresses.size();
+    }
+
+    @Override
+    public void close() {
+        server.close(CloseMode.IMMEDIATE);
+        scheduler.shutdownNow();
+    }
+
+    private void handle(AsyncServerRequestHandler.ResponseTrigger responseTrigger, HttpContext context) {
+        requestCount.incrementAndGet();
+        clientAddresses.add(HttpCoreContext.adapt(context).getEndpointDetails().getRemoteAddress());
+
+        // The handler runs on the I/O reactor, a delayed response must not block it
+        Runnable respond = () -> {
+            try {
+                responseTrigger.submitResponse(new BasicResponseProducer(HttpStatus.SC_OK,
+                        AsyncEntityProducers.create(responseBody, contentType)), context);
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to send the stub response", e);
+            }
+        };
+        if (latencyMillis > 0) {
+            scheduler.schedule(respond, latencyMillis, TimeUnit.MILLISECONDS);
+        } else {
+            respond.run();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.naare.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal local HTTP server that answers every request with a fixed response body.
+ * Counts requests and distinct client connections, so connection reuse can be checked.
+ */
+public class StubHttpServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] responseBody;
+    private final String contentType;
+    private final long latencyMillis;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final Set<InetSocketAddress> clientAddresses = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Starts a stub server on a free local port.
+     *
+     * @param responseBody  body returned for every request
+     * @param contentType   content type of the response
+     * @param latencyMillis delay before the response is sent
+     */
+    public StubHttpServer(byte[] responseBody, String contentType, long latencyMillis) throws IOException {
+        this.responseBody = responseBody;
+        this.contentType = contentType;
+        this.latencyMillis = latencyMillis;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", this::handle);
+        this.executor = Executors.newCachedThreadPool();
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return number of distinct client sockets that have sent requests
+     */
+    public int getConnectionCount() {
+        return clientAddresses.size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        clientAddresses.add(exchange.getRemoteAddress());
+
+        try (InputStream in = exchange.getRequestBody()) {
+            while (in.read() != -1) {
+                // Drain the request body, otherwise the connection cannot be reused
+            }
+        }
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, responseBody.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(responseBody);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package org.naare.utils;
+
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AccessDescription;
+import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Key pairs and certificates for tests and the in-process TSA and OCSP responder. Certificates are valid
+ * from a day ago for a year and are self-signed unless an issuer is given:
+ * <pre>
+ * X509Certificate ca = TestCertificates.certificate("CN=TEST CA", caKeyPair).ca().build();
+ * X509Certificate signer = TestCertificates.certificate("CN=TEST SIGNER", TestCertificates.newKeyPair())
+ *         .issuedBy("CN=TEST CA", caKeyPair).keyIdentifiers().build();
+ * </pre>
+ */
+public final class TestCertificates {
+
+    private static final AtomicLong SERIAL_NUMBER = new AtomicLong(System.currentTimeMillis());
+
+    private TestCertificates() {
+    }
+
+    /**
+     * @return new EC key pair on the P-256 curve
+     */
+    public static KeyPair newKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to generate EC key pair", e);
+        }
+    }
+
+    /**
+     * Starts a certificate for the subject and its key pair.
+     *
+     * @param subjectName subject DN, e.g. "CN=TEST CA"
+     * @param keyPair     subject key pair
+     * @return certificate builder
+     */
+    public static Builder certificate(String subjectName, KeyPair keyPair) {
+        return new Builder(subjectName, keyPair);
+    }
+
+    /**
+     * Returns the signature algorithm for an EC or RSA private key.
+     *
+     * @param privateKey signing key
+     * @return JCA signature algorithm name
+     */
+    public static String getSignatureAlgorithm(PrivateKey privateKey) {
+        return "EC".equals(privateKey.getAlgorithm()) ? "SHA256withECDSA" : "SHA256withRSA";
+    }
+
+    public static final class Builder {
+
+        private final String subjectName;
+        private final KeyPair keyPair;
+        private String issuerName;
+        private KeyPair issuerKeyPair;
+        private boolean ca;
+        private boolean keyIdentifiers;
+        private String caIssuersUrl;
+        private KeyPurposeId extendedKeyUsage;
+        private boolean ocspNoCheck;
+
+        private Builder(String subjectName, KeyPair keyPair) {
+            this.subjectName = subjectName;
+            this.keyPair = keyPair;
+            this.issuerName = subjectName;
+            this.issuerKeyPair = keyPair;
+        }
+
+        /**
+         * Signs the certificate with the issuer key instead of the subject key.
+         */
+        public Builder issuedBy(String issuerName, KeyPair issuerKeyPair) {
+            this.issuerName = issuerName;
+            this.issuerKeyPair = issuerKeyPair;
+            return this;
+        }
+
+        /**
+         * Marks the certificate as a CA certificate.
+         */
+        public Builder ca() {
+            this.ca = true;
+            return this;
+        }
+
+        /**
+         * Adds the subject and authority key identifiers.
+         */
+        public Builder keyIdentifiers() {
+            this.keyIdentifiers = true;
+            return this;
+        }
+
+        /**
+         * Adds an authority information access extension with the caIssuers URL.
+         */
+        public Builder caIssuersUrl(String url) {
+            this.caIssuersUrl = url;
+            return this;
+        }
+
+        /**
+         * Adds digital signature and non-repudiation key usage and the critical extended key usage, e.g.
+         * {@link KeyPurposeId#id_kp_OCSPSigning} or {@link KeyPurposeId#id_kp_timeStamping}.
+         */
+        public Builder extendedKeyUsage(KeyPurposeId keyPurpose) {
+            this.extendedKeyUsage = keyPurpose;
+            return this;
+        }
+
+        /**
+         * Adds the id-pkix-ocsp-nocheck extension of an OCSP responder certificate.
+         */
+        public Builder ocspNoCheck() {
+            this.ocspNoCheck = true;
+            return this;
+        }
+
+        public X509Certificate build() {
+            Date notBefore = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1));
+            Date notAfter = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365));
+            try {
+                JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(new X500Name(issuerName),
+                        BigInteger.valueOf(SERIAL_NUMBER.incrementAndGet()), notBefore, notAfter,
+                        new X500Name(subjectName), keyPair.getPublic());
+                builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(ca));
+                if (keyIdentifiers) {
+                    JcaX509ExtensionUtils extensionUtils = new JcaX509ExtensionUtils();
+                    builder.addExtension(Extension.subjectKeyIdentifier, false, extensionUtils.createSubjectKeyIdentifier(keyPair.getPublic()));
+                    builder.addExtension(Extension.authorityKeyIdentifier, false, extensionUtils.createAuthorityKeyIdentifier(issuerKeyPair.getPublic()));
+                }
+                if (caIssuersUrl != null) {
+                    builder.addExtension(Extension.authorityInfoAccess, false, new AuthorityInformationAccess(new AccessDescription(
+                            AccessDescription.id_ad_caIssuers, new GeneralName(GeneralName.uniformResourceIdentifier, caIssuersUrl))));
+                }
+                if (extendedKeyUsage != null) {
+                    builder.addExtension(Extension.keyUsage, true, new KeyUsage(KeyUsage.digitalSignature | KeyUsage.nonRepudiation));
+                    builder.addExtension(Extension.extendedKeyUsage, true, new ExtendedKeyUsage(extendedKeyUsage));
+                }
+                if (ocspNoCheck) {
+                    builder.addExtension(OCSPObjectIdentifiers.id_pkix_ocsp_nocheck, false, DERNull.INSTANCE);
+                }
+                PrivateKey signingKey = issuerKeyPair.getPrivate();
+                return new JcaX509CertificateConverter().getCertificate(
+                        builder.build(new JcaContentSignerBuilder(getSignatureAlgorithm(signingKey)).build(signingKey)));
+            } catch (Exception e) {
+                throw new IllegalStateException(String.format("Failed to create certificate %s", subjectName), e);
+            }
+        }
+    }
+}
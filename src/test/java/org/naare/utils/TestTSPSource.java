@@ -47,6 +47,18 @@ public class TestTSPSource implements TSPSource {
         LOG.info("TestTSPSource initialized with the default data loader.");
     }
 
+    /**
+     * Constructs a TestTSPSource that will query the specified URL with the given data loader.
+     *
+     * @param tspServer  the TSP URL
+     * @param dataLoader the data loader, e.g. a {@code PooledDataLoader} shared with other sources
+     */
+    public TestTSPSource(final String tspServer, final DataLoader dataLoader) {
+        this.tspServer = tspServer;
+        this.dataLoader = dataLoader;
+        LOG.info("TestTSPSource initialized with data loader: {}", dataLoader == null ? null : dataLoader.getClass().getSimpleName());
+    }
+
     /**
      * Sets the URL of the TSA.
      *
@@ -56,6 +68,15 @@ public class TestTSPSource implements TSPSource {
         this.tspServer = tspServer;
     }
 
+    /**
+     * Sets the data loader used to retrieve the TSP response.
+     *
+     * @param dataLoader the data loader
+     */
+    public void setDataLoader(final DataLoader dataLoader) {
+        this.dataLoader = dataLoader;
+    }
+
     @Override
     public TimestampBinary getTimeStampResponse(final eu.europa.esig.dss.enumerations.DigestAlgorithm digestAlgorithm, final byte[] digest) throws DSSException {
         Objects.requireNonNull(dataLoader, "DataLoader is not provided!");
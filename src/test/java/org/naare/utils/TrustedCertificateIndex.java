@@ -0,0 +1,125 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.utils.Utils;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
+import org.digidoc4j.Configuration;
+
+import javax.security.auth.x500.X500Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index of trusted certificates by subject key identifier and subject DN, so the issuer of a certificate
+ * is found with a hash lookup by its authority key identifier, or by its issuer DN when it has none.
+ * Signatures are verified only against the candidates found in the index, usually one, instead of against
+ * every certificate in the TSL.
+ * <p>
+ * The index is built from the certificates at construction time and does not follow later TSL refreshes.
+ */
+public class TrustedCertificateIndex {
+
+    private final Map<String, List<CertificateToken>> bySubjectKeyIdentifier = new HashMap<>();
+    private final Map<X500Principal, List<CertificateToken>> bySubject = new HashMap<>();
+    private final int size;
+
+    private final AtomicLong verificationCount = new AtomicLong();
+
+    /**
+     * Builds the index of the certificates.
+     *
+     * @param certificates trusted certificates
+     */
+    public TrustedCertificateIndex(Collection<CertificateToken> certificates) {
+        for (CertificateToken certificate : certificates) {
+            byte[] subjectKeyIdentifier = getSubjectKeyIdentifier(certificate);
+            if (subjectKeyIdentifier != null) {
+                bySubjectKeyIdentifier.computeIfAbsent(Utils.toHex(subjectKeyIdentifier), key -> new ArrayList<>()).add(certificate);
+            }
+            bySubject.computeIfAbsent(certificate.getCertificate().getSubjectX500Principal(), key -> new ArrayList<>()).add(certificate);
+        }
+        this.size = certificates.size();
+    }
+
+    /**
+     * Builds the index of the configuration TSL certificates. The TSL is loaded if it has not been loaded yet.
+     *
+     * @param configuration configuration
+     * @return index
+     */
+    public static TrustedCertificateIndex of(Configuration configuration) {
+        return new TrustedCertificateIndex(configuration.getTSL().getCertificates());
+    }
+
+    /**
+     * Finds the trusted certificate that signed the certificate.
+     *
+     * @param certificate certificate whose issuer is looked up
+     * @return issuer, empty if no trusted certificate signed it
+     */
+    public Optional<CertificateToken> findIssuer(CertificateToken certificate) {
+        for (CertificateToken candidate : getCandidates(certificate)) {
+            verificationCount.incrementAndGet();
+            if (certificate.isSignedBy(candidate)) {
+                return Optional.of(candidate);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the trusted certificates that may have signed the certificate, without verifying signatures:
+     * the certificates whose subject key identifier matches the authority key identifier of the certificate,
+     * or otherwise the certificates whose subject matches the certificate issuer.
+     *
+     * @param certificate certificate whose issuer is looked up
+     * @return candidate issuers
+     */
+    public List<CertificateToken> getCandidates(CertificateToken certificate) {
+        byte[] authorityKeyIdentifier = getAuthorityKeyIdentifier(certificate);
+        if (authorityKeyIdentifier != null) {
+            List<CertificateToken> candidates = bySubjectKeyIdentifier.get(Utils.toHex(authorityKeyIdentifier));
+            if (candidates != null) {
+                return Collections.unmodifiableList(candidates);
+            }
+        }
+        List<CertificateToken> candidates = bySubject.get(certificate.getCertificate().getIssuerX500Principal());
+        return candidates != null ? Collections.unmodifiableList(candidates) : Collections.emptyList();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of signature verifications done by {@link #findIssuer(CertificateToken)}
+     */
+    public long getVerificationCount() {
+        return verificationCount.get();
+    }
+
+    private static byte[] getSubjectKeyIdentifier(CertificateToken certificate) {
+        byte[] extension = getExtensionValue(certificate, Extension.subjectKeyIdentifier.getId());
+        return extension == null ? null : SubjectKeyIdentifier.getInstance(extension).getKeyIdentifier();
+    }
+
+    private static byte[] getAuthorityKeyIdentifier(CertificateToken certificate) {
+        byte[] extension = getExtensionValue(certificate, Extension.authorityKeyIdentifier.getId());
+        return extension == null ? null : AuthorityKeyIdentifier.getInstance(extension).getKeyIdentifier();
+    }
+
+    private static byte[] getExtensionValue(CertificateToken certificate, String oid) {
+        byte[] extension = certificate.getCertificate().getExtensionValue(oid);
+        // The extension value is wrapped in an OCTET STRING
+        return extension == null ? null : ASN1OctetString.getInstance(extension).getOctets();
+    }
+}
@@ -0,0 +1,319 @@
+package org.naare.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+import eu.europa.esig.dss.utils.Utils;
+import org.digidoc4j.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local HTTP server serving recorded LOTL and TSL files, so trust list loading can be tested and
+ * benchmarked without network access. A file recorded from {@code https://host/path} is stored as
+ * {@code <root>/host/path} (see {@link RecordingDataLoader}) and served from {@code /host/path}.
+ * <p>
+ * Responses carry ETag and Last-Modified headers and conditional requests (If-None-Match,
+ * If-Modified-Since) are answered with 304. A fixed latency can be added to every response.
+ * <p>
+ * Trust list URLs are inside the signed LOTL and cannot be rewritten, so the server is used through
+ * {@link #dataLoader()}, which maps the original URLs to the server:
+ * <pre>
+ * configuration.setTslDataLoaderFactory(server::dataLoader);
+ * </pre>
+ * Tests can load the TEST trust lists from the recorded {@link #FIXTURES} through
+ * {@link #useRecordedTsl(Configuration)}. The fixtures are recorded with network access by running
+ * {@code TslFixtureServerTest.recordTestTsl()}, and must be recorded again before the NextUpdate of
+ * the recorded LOTL and TSLs has passed, after which DSS reports them as expired.
+ */
+public class TslFixtureServer implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TslFixtureServer.class);
+
+    /**
+     * Recorded TEST LOTLs and TSLs, see {@code TslFixtureServerTest.recordTestTsl()}.
+     */
+    public static final Path FIXTURES = Paths.get("src/test/resources/tsl-fixtures");
+
+    private static TslFixtureServer recordedTslServer;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Path root;
+    private volatile long latencyMillis;
+
+    private final AtomicLong fullResponseCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+    private final AtomicLong notFoundCount = new AtomicLong();
+
+    /**
+     * Starts the fixture server on a free local port.
+     *
+     * @param root directory containing the recorded files
+     */
+    public TslFixtureServer(Path root) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", this::handle);
+        this.executor = Executors.newCachedThreadPool();
+        this.server.setExecutor(executor);
+        this.server.start();
+        LOG.info("TSL fixture server serving {} at {}", this.root, getBaseUrl());
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the fixture server URL of the recorded original URL.
+     *
+     * @param originalUrl URL the file was recorded from
+     * @return URL on the fixture server
+     */
+    public String getUrl(String originalUrl) {
+        return getBaseUrl() + "/" + toRelativePath(originalUrl).replace('\\', '/');
+    }
+
+    /**
+     * Sets the delay added before every response.
+     *
+     * @param latencyMillis delay in milliseconds
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public long getFullResponseCount() {
+        return fullResponseCount.get();
+    }
+
+    public long getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    public long getNotFoundCount() {
+        return notFoundCount.get();
+    }
+
+    /**
+     * Returns a data loader that loads any URL from this server instead of the original host.
+     *
+     * @return data loader for {@code setTslDataLoaderFactory}
+     */
+    public DataLoader dataLoader() {
+        return new FixtureDataLoader(this);
+    }
+
+    /**
+     * Loads the TSL of the configuration from the recorded {@link #FIXTURES}. The fixture server is started on
+     * first use and shared by all tests of the JVM.
+     *
+     * @param configuration configuration
+     * @return the configuration
+     * @throws IllegalStateException if the fixtures have not been recorded
+     */
+    public static Configuration useRecordedTsl(Configuration configuration) {
+        configuration.setTslDataLoaderFactory(getRecordedTslServer()::dataLoader);
+        return configuration;
+    }
+
+    private static synchronized TslFixtureServer getRecordedTslServer() {
+        if (recordedTslServer == null) {
+            if (!Files.isDirectory(FIXTURES)) {
+                throw new IllegalStateException(String.format(
+                        "No recorded TSL fixtures in %s, record them with TslFixtureServerTest.recordTestTsl()", FIXTURES));
+            }
+            try {
+                recordedTslServer = new TslFixtureServer(FIXTURES);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to start the TSL fixture server", e);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(recordedTslServer::close));
+        }
+        return recordedTslServer;
+    }
+
+    /**
+     * Maps an URL to the relative file path it is recorded to: host, optional port and path.
+     *
+     * @param url URL
+     * @return relative path
+     */
+    public static String toRelativePath(String url) {
+        URI uri = URI.create(url);
+        String host = uri.getPort() > 0 ? uri.getHost() + "_" + uri.getPort() : uri.getHost();
+        String path = uri.getPath();
+        if (path == null || path.isEmpty()) {
+            path = "/index";
+        } else if (path.endsWith("/")) {
+            path += "index";
+        }
+        if (uri.getQuery() != null) {
+            path += "_" + uri.getQuery().replaceAll("[^A-Za-z0-9._-]", "_");
+        }
+        return host + path;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        sleep(latencyMillis);
+
+        Path file = root.resolve(exchange.getRequestURI().getPath().substring(1)).normalize();
+        if (!file.startsWith(root) || !Files.isRegularFile(file)) {
+            notFoundCount.incrementAndGet();
+            LOG.warn("Fixture not found: {}", exchange.getRequestURI());
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] content = Files.readAllBytes(file);
+        String etag = "\"" + sha256Hex(content) + "\"";
+        Instant lastModified = Files.getLastModifiedTime(file).toInstant().truncatedTo(ChronoUnit.SECONDS);
+
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Last-Modified", formatHttpDate(lastModified));
+
+        if (isNotModified(exchange, etag, lastModified)) {
+            notModifiedCount.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        fullResponseCount.incrementAndGet();
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(200, content.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(content);
+        }
+    }
+
+    private static boolean isNotModified(HttpExchange exchange, String etag, Instant lastModified) {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            return ifNoneMatch.contains(etag) || "*".equals(ifNoneMatch.trim());
+        }
+        String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            try {
+                Instant since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                return !lastModified.isAfter(since);
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    static String formatHttpDate(Instant instant) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(instant.atZone(ZoneOffset.UTC));
+    }
+
+    static String sha256Hex(byte[] content) {
+        try {
+            return Utils.toHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not supported", e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Data loader that rewrites every URL to the fixture server.
+     */
+    private static class FixtureDataLoader implements DataLoader {
+
+        private final transient TslFixtureServer server;
+
+        private FixtureDataLoader(TslFixtureServer server) {
+            this.server = server;
+        }
+
+        @Override
+        public byte[] get(String url) {
+            String fixtureUrl = server.getUrl(url);
+            LOG.debug("Loading {} from fixture {}", url, fixtureUrl);
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(fixtureUrl).openConnection();
+                if (connection.getResponseCode() != 200) {
+                    throw new DSSException(String.format("No fixture for '%s'. HTTP status: %d", url, connection.getResponseCode()));
+                }
+                try (InputStream in = connection.getInputStream()) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                    }
+                    return out.toByteArray();
+                }
+            } catch (IOException e) {
+                throw new DSSException(String.format("Unable to load fixture for '%s': %s", url, e.getMessage()), e);
+            }
+        }
+
+        @Override
+        public DataAndUrl get(List<String> urlStrings) {
+            DSSException lastException = null;
+            for (String url : urlStrings) {
+                try {
+                    return new DataAndUrl(url, get(url));
+                } catch (DSSException e) {
+                    lastException = e;
+                }
+            }
+            throw new DSSException(String.format("No fixture for any of the URLs: %s", urlStrings), lastException);
+        }
+
+        @Override
+        public byte[] post(String url, byte[] content) {
+            throw new DSSException(String.format("POST is not supported by the TSL fixture: %s", url));
+        }
+
+        @Override
+        public void setContentType(String contentType) {
+            // Not used for GET requests
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.model.tsl.TLValidationJobSummary;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.TSLRefreshCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Refreshes the TSL in the background and swaps it in atomically. Every refresh loads the TSL into a new
+ * {@link Configuration} off the calling threads and, when the load succeeds, replaces the current
+ * configuration reference. Containers opened with {@link #getConfiguration()} keep the snapshot they were
+ * opened with, so validation never waits for a refresh or sees a partly loaded TSL. A failed refresh keeps
+ * the previous snapshot.
+ * <p>
+ * DD4J reloads a TSL inline, on the validating thread, once its cache expiration time has passed. Every
+ * new configuration therefore gets a cache expiration of {@link #SNAPSHOT_CACHE_EXPIRATION}, so a snapshot
+ * is only replaced by the scheduler and never reloaded while in use, even when refreshes keep failing. As
+ * the TSL file cache uses the same expiration, every refresh invalidates the file cache first and
+ * downloads the LOTL and TSLs, through the TSL data loader of the configuration.
+ * <p>
+ * The refresh callback is set on every new configuration with {@code setTslRefreshCallback} and receives
+ * the DSS summary of each refresh; returning false fails the refresh. The duration and outcome of every
+ * refresh are passed to the result listener, an exception thrown by the listener is logged and does not
+ * stop the scheduled refreshes.
+ * <p>
+ * As failed refreshes keep the previous snapshot, a maximum snapshot age can be set. Once the current
+ * snapshot is older than that, {@link #isStale()} returns true and {@link #getConfiguration()} fails
+ * instead of returning a TSL that has not been refreshed for too long.
+ */
+public class TslRefreshScheduler implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TslRefreshScheduler.class);
+
+    /**
+     * TSL cache expiration of every snapshot, long enough that DD4J never reloads a snapshot inline.
+     */
+    public static final Duration SNAPSHOT_CACHE_EXPIRATION = Duration.ofDays(3650);
+
+    /**
+     * Outcome of a refresh.
+     */
+    public static class Result {
+
+        private final boolean success;
+        private final long durationMillis;
+        private final int certificateCount;
+        private final TLValidationJobSummary summary;
+        private final RuntimeException error;
+
+        private Result(boolean success, long durationMillis, int certificateCount, TLValidationJobSummary summary,
+                       RuntimeException error) {
+            this.success = success;
+            this.durationMillis = durationMillis;
+            this.certificateCount = certificateCount;
+            this.summary = summary;
+            this.error = error;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        /**
+         * @return number of trusted certificates of the new snapshot, 0 if the refresh failed
+         */
+        public int getCertificateCount() {
+            return certificateCount;
+        }
+
+        /**
+         * @return DSS summary of the refresh, null if the refresh failed before the TSL was loaded
+         */
+        public TLValidationJobSummary getSummary() {
+            return summary;
+        }
+
+        /**
+         * @return error of a failed refresh
+         */
+        public RuntimeException getError() {
+            return error;
+        }
+    }
+
+    private final Supplier<Configuration> configurationFactory;
+    private final TSLRefreshCallback refreshCallback;
+    private final Consumer<Result> resultListener;
+    private final Duration maxSnapshotAge;
+    private final Clock clock;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * Constructs a TslRefreshScheduler.
+     *
+     * @param configurationFactory creates the configuration of every refresh
+     * @param refreshCallback      TSL refresh callback set on every new configuration, or null for the DD4J default
+     * @param resultListener       receives the outcome of every refresh
+     */
+    public TslRefreshScheduler(Supplier<Configuration> configurationFactory, TSLRefreshCallback refreshCallback,
+                               Consumer<Result> resultListener) {
+        this(configurationFactory, refreshCallback, resultListener, null);
+    }
+
+    /**
+     * Constructs a TslRefreshScheduler with a maximum snapshot age.
+     *
+     * @param configurationFactory creates the configuration of every refresh
+     * @param refreshCallback      TSL refresh callback set on every new configuration, or null for the DD4J default
+     * @param resultListener       receives the outcome of every refresh
+     * @param maxSnapshotAge       age after which the current snapshot is stale, or null for no limit
+     */
+    public TslRefreshScheduler(Supplier<Configuration> configurationFactory, TSLRefreshCallback refreshCallback,
+                               Consumer<Result> resultListener, Duration maxSnapshotAge) {
+        this(configurationFactory, refreshCallback, resultListener, maxSnapshotAge, Clock.systemUTC());
+    }
+
+    /**
+     * Constructs a TslRefreshScheduler with a maximum snapshot age measured with the given clock.
+     *
+     * @param configurationFactory creates the configuration of every refresh
+     * @param refreshCallback      TSL refresh callback set on every new configuration, or null for the DD4J default
+     * @param resultListener       receives the outcome of every refresh
+     * @param maxSnapshotAge       age after which the current snapshot is stale, or null for no limit
+     * @param clock                clock of the snapshot load times
+     */
+    public TslRefreshScheduler(Supplier<Configuration> configurationFactory, TSLRefreshCallback refreshCallback,
+                               Consumer<Result> resultListener, Duration maxSnapshotAge, Clock clock) {
+        this.configurationFactory = configurationFactory;
+        this.refreshCallback = refreshCallback;
+        this.resultListener = resultListener;
+        this.maxSnapshotAge = maxSnapshotAge;
+        this.clock = clock;
+    }
+
+    /**
+     * Loads the first snapshot on the calling thread and schedules the following refreshes.
+     *
+     * @param interval delay between the end of a refresh and the start of the next one
+     * @return result of the first load
+     */
+    public Result start(Duration interval) {
+        Result result = refresh();
+        if (!result.isSuccess()) {
+            throw result.getError();
+        }
+        executor.scheduleWithFixedDelay(this::refresh, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    /**
+     * Loads a new snapshot and swaps it in when the load succeeds. Runs on the calling thread, for the
+     * background refresh use {@link #start(Duration)}.
+     *
+     * @return result of the refresh
+     */
+    public Result refresh() {
+        refreshCount.incrementAndGet();
+        long start = System.nanoTime();
+        Configuration newConfiguration = null;
+        Result result;
+        try {
+            newConfiguration = configurationFactory.get();
+            if (refreshCallback != null) {
+                newConfiguration.setTslRefreshCallback(refreshCallback);
+            }
+            newConfiguration.setTslCacheExpirationTime(SNAPSHOT_CACHE_EXPIRATION.toMillis());
+            newConfiguration.getTSL().invalidateCache();
+            newConfiguration.getTSL().refresh();
+            int certificateCount = newConfiguration.getTSL().getCertificates().size();
+            snapshot.set(new Snapshot(newConfiguration, clock.instant()));
+            result = new Result(true, elapsedMillis(start), certificateCount, newConfiguration.getTSL().getSummary(), null);
+            LOG.info("TSL snapshot with {} certificates swapped in after {} ms", certificateCount, result.getDurationMillis());
+        } catch (RuntimeException e) {
+            failureCount.incrementAndGet();
+            TLValidationJobSummary summary = newConfiguration == null ? null : newConfiguration.getTSL().getSummary();
+            result = new Result(false, elapsedMillis(start), 0, summary, e);
+            LOG.warn("TSL refresh failed after {} ms, keeping the previous snapshot: {}", result.getDurationMillis(), e.getMessage());
+            if (isStale()) {
+                LOG.error("TSL snapshot is {} old, older than the maximum of {}", getSnapshotAge(), maxSnapshotAge);
+            }
+        }
+        if (resultListener != null) {
+            try {
+                resultListener.accept(result);
+            } catch (RuntimeException e) {
+                // Thrown out of the scheduled task it would cancel all following refreshes
+                LOG.error("TSL refresh result listener failed", e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the configuration of the current snapshot. The TSL of the returned configuration does not
+     * change: DD4J does not reload it inline, see {@link #SNAPSHOT_CACHE_EXPIRATION}, and a refresh
+     * replaces the whole configuration.
+     *
+     * @return configuration with a loaded TSL, null before the first successful load
+     * @throws IllegalStateException if the snapshot is older than the maximum snapshot age
+     */
+    public Configuration getConfiguration() {
+        Snapshot current = snapshot.get();
+        if (current == null) {
+            return null;
+        }
+        if (isStale(current)) {
+            throw new IllegalStateException("TSL snapshot is " + age(current) + " old, older than the maximum of "
+                    + maxSnapshotAge);
+        }
+        return current.configuration;
+    }
+
+    /**
+     * @return true if the current snapshot is older than the maximum snapshot age
+     */
+    public boolean isStale() {
+        Snapshot current = snapshot.get();
+        return current != null && isStale(current);
+    }
+
+    /**
+     * @return time since the current snapshot was loaded, null before the first successful load
+     */
+    public Duration getSnapshotAge() {
+        Snapshot current = snapshot.get();
+        return current == null ? null : age(current);
+    }
+
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private boolean isStale(Snapshot current) {
+        return maxSnapshotAge != null && age(current).compareTo(maxSnapshotAge) > 0;
+    }
+
+    private Duration age(Snapshot current) {
+        return Duration.between(current.loadedAt, clock.instant());
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static class Snapshot {
+
+        private final Configuration configuration;
+        private final Instant loadedAt;
+
+        private Snapshot(Configuration configuration, Instant loadedAt) {
+            this.configuration = configuration;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
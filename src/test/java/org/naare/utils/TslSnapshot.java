@@ -0,0 +1,281 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.model.tsl.LOTLInfo;
+import eu.europa.esig.dss.model.tsl.ParsingInfoRecord;
+import eu.europa.esig.dss.model.tsl.TLInfo;
+import eu.europa.esig.dss.model.tsl.TLValidationJobSummary;
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.spi.tsl.TrustProperties;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.TSLCertificateSource;
+import org.digidoc4j.impl.asic.tsl.TSLCertificateSourceImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Compact binary snapshot of the trusted certificates of a loaded TSL. The LOTL is downloaded, parsed and
+ * signature checked once, the resulting certificates are written to a file, and later {@link Configuration}
+ * instances read them back through a memory-mapped buffer instead of loading the LOTL again.
+ * <p>
+ * Every certificate is stored with its trust services (service type, status history and qualifiers), and the
+ * DSS summary of the LOTL and TSLs is stored with the snapshot, so a snapshot configuration gives the same
+ * qualification results as the live TSL. The trust services and summary are stored with Java serialization,
+ * so the snapshot file must be as trusted as the TSL cache directory.
+ * <p>
+ * A snapshot is stale when it is older than the maximum age or when the next update of a LOTL or TSL it was
+ * created from has passed. {@link #loadConfiguration(Supplier, Path, Duration)} reloads a stale snapshot.
+ * <p>
+ * File layout: magic "DD4JTSL2", creation time (long), next update (long, {@link Long#MAX_VALUE} if not
+ * known), summary length (int) followed by the serialized summary, certificate count (int), then for every
+ * certificate its length (int) followed by the DER encoding and the trust services length (int) followed by
+ * the serialized trust services.
+ */
+public final class TslSnapshot {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TslSnapshot.class);
+
+    private static final byte[] MAGIC = "DD4JTSL2".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_LENGTH = MAGIC.length + 2 * Long.BYTES;
+
+    private TslSnapshot() {
+    }
+
+    /**
+     * Writes the certificates and trust services of the configuration TSL to the snapshot file. The TSL is
+     * loaded if it has not been loaded yet.
+     *
+     * @param configuration configuration whose TSL is stored
+     * @param file          snapshot file, replaced atomically
+     * @return number of certificates written
+     */
+    public static int write(Configuration configuration, Path file) throws IOException {
+        TSLCertificateSource tsl = configuration.getTSL();
+        List<CertificateToken> certificates = tsl.getCertificates();
+        TLValidationJobSummary summary = tsl.getSummary();
+        Path tempFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream fileOut = Files.newOutputStream(tempFile);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+                out.write(MAGIC);
+                out.writeLong(System.currentTimeMillis());
+                out.writeLong(getNextUpdate(summary));
+                writeBlock(out, serialize(summary));
+                out.writeInt(certificates.size());
+                for (CertificateToken certificate : certificates) {
+                    writeBlock(out, certificate.getEncoded());
+                    writeBlock(out, serialize(new ArrayList<>(tsl.getTrustServices(certificate))));
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        LOG.info("TSL snapshot with {} certificates written to {}", certificates.size(), file);
+        return certificates.size();
+    }
+
+    /**
+     * Reads the snapshot file into a new TSL certificate source.
+     *
+     * @param file snapshot file
+     * @return TSL certificate source containing the snapshot certificates and their trust services
+     * @throws IOException if the file is not a snapshot or is corrupt
+     */
+    public static TSLCertificateSource read(Path file) throws IOException {
+        long start = System.nanoTime();
+        TSLCertificateSourceImpl tsl = new TSLCertificateSourceImpl();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            readHeader(buffer, file);
+
+            TLValidationJobSummary summary = (TLValidationJobSummary) deserialize(readBlock(buffer, file));
+            int count = buffer.getInt();
+            // Every certificate takes at least its two length fields
+            if (count < 0 || count > buffer.remaining() / (2 * Integer.BYTES)) {
+                throw new IOException(String.format("Invalid certificate count %d in TSL snapshot %s", count, file));
+            }
+
+            CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+            Map<CertificateToken, List<TrustProperties>> trustServices = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                CertificateToken certificate = new CertificateToken((X509Certificate) certificateFactory.generateCertificate(
+                        new ByteArrayInputStream(readBlock(buffer, file))));
+                @SuppressWarnings("unchecked")
+                List<TrustProperties> properties = (List<TrustProperties>) deserialize(readBlock(buffer, file));
+                trustServices.put(certificate, properties);
+            }
+            tsl.setTrustPropertiesByCertificates(trustServices);
+            tsl.setSummary(summary);
+            LOG.info("TSL snapshot with {} certificates loaded from {} in {} ms", count, file, (System.nanoTime() - start) / 1_000_000);
+        } catch (CertificateException e) {
+            throw new IOException(String.format("Invalid certificate in TSL snapshot %s: %s", file, e.getMessage()), e);
+        } catch (BufferUnderflowException | ClassCastException e) {
+            throw new IOException(String.format("Corrupt TSL snapshot %s", file), e);
+        }
+        return tsl;
+    }
+
+    /**
+     * Creates a configuration whose TSL is read from the snapshot file. If the file does not exist, is stale
+     * or cannot be read, the TSL is loaded the usual way and the snapshot is written for the next start.
+     *
+     * @param configurationFactory creates the configuration, e.g. {@code () -> Configuration.of(Configuration.Mode.TEST)}
+     * @param file                 snapshot file
+     * @param maxAge               maximum age of a snapshot
+     * @return configuration
+     */
+    public static Configuration loadConfiguration(Supplier<Configuration> configurationFactory, Path file,
+                                                  Duration maxAge) throws IOException {
+        Configuration configuration = configurationFactory.get();
+        if (Files.exists(file)) {
+            try {
+                if (!isStale(file, maxAge)) {
+                    configuration.setTSL(read(file));
+                    return configuration;
+                }
+                LOG.info("TSL snapshot {} is stale, reloading the TSL", file);
+            } catch (IOException e) {
+                LOG.warn("Discarding TSL snapshot {}: {}", file, e.getMessage());
+            }
+        }
+        write(configuration, file);
+        return configuration;
+    }
+
+    /**
+     * Returns whether the snapshot is older than the maximum age or past the next update of a LOTL or TSL.
+     *
+     * @param file   snapshot file
+     * @param maxAge maximum age of a snapshot
+     * @return true if the snapshot must not be used
+     * @throws IOException if the file is not a snapshot
+     */
+    public static boolean isStale(Path file, Duration maxAge) throws IOException {
+        long now = System.currentTimeMillis();
+        return now - getCreationTime(file) > maxAge.toMillis() || now >= getNextUpdate(file);
+    }
+
+    /**
+     * Returns the time the snapshot was created.
+     *
+     * @param file snapshot file
+     * @return creation time in milliseconds since the epoch
+     * @throws IOException if the file is not a snapshot
+     */
+    public static long getCreationTime(Path file) throws IOException {
+        return readHeader(file)[0];
+    }
+
+    /**
+     * Returns the earliest next update of the LOTL and TSLs the snapshot was created from.
+     *
+     * @param file snapshot file
+     * @return next update in milliseconds since the epoch, {@link Long#MAX_VALUE} if not known
+     * @throws IOException if the file is not a snapshot
+     */
+    public static long getNextUpdate(Path file) throws IOException {
+        return readHeader(file)[1];
+    }
+
+    private static long[] readHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_LENGTH) {
+                throw new IOException(String.format("Not a TSL snapshot file: %s", file));
+            }
+            return readHeader(channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_LENGTH), file);
+        }
+    }
+
+    private static long[] readHeader(MappedByteBuffer buffer, Path file) throws IOException {
+        if (buffer.remaining() < HEADER_LENGTH) {
+            throw new IOException(String.format("Not a TSL snapshot file: %s", file));
+        }
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new IOException(String.format("Not a TSL snapshot file: %s", file));
+        }
+        return new long[]{buffer.getLong(), buffer.getLong()};
+    }
+
+    private static long getNextUpdate(TLValidationJobSummary summary) {
+        long nextUpdate = Long.MAX_VALUE;
+        if (summary == null) {
+            return nextUpdate;
+        }
+        for (LOTLInfo lotlInfo : summary.getLOTLInfos()) {
+            nextUpdate = Math.min(nextUpdate, getNextUpdate(lotlInfo.getParsingCacheInfo()));
+            for (TLInfo tlInfo : lotlInfo.getTLInfos()) {
+                nextUpdate = Math.min(nextUpdate, getNextUpdate(tlInfo.getParsingCacheInfo()));
+            }
+        }
+        for (TLInfo tlInfo : summary.getOtherTLInfos()) {
+            nextUpdate = Math.min(nextUpdate, getNextUpdate(tlInfo.getParsingCacheInfo()));
+        }
+        return nextUpdate;
+    }
+
+    private static long getNextUpdate(ParsingInfoRecord parsingInfo) {
+        Date nextUpdate = parsingInfo != null ? parsingInfo.getNextUpdateDate() : null;
+        return nextUpdate != null ? nextUpdate.getTime() : Long.MAX_VALUE;
+    }
+
+    private static void writeBlock(DataOutputStream out, byte[] block) throws IOException {
+        out.writeInt(block.length);
+        out.write(block);
+    }
+
+    private static byte[] readBlock(MappedByteBuffer buffer, Path file) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException(String.format("Invalid block length %d in TSL snapshot %s", length, file));
+        }
+        byte[] block = new byte[length];
+        buffer.get(block);
+        return block;
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown class in TSL snapshot: " + e.getMessage(), e);
+        }
+    }
+}
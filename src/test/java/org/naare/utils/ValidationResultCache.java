@@ -0,0 +1,456 @@
+package org.naare.utils;
+
+import eu.europa.esig.dss.model.tsl.LOTLInfo;
+import eu.europa.esig.dss.model.tsl.TLInfo;
+import eu.europa.esig.dss.model.tsl.TLValidationJobSummary;
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.utils.Utils;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.ContainerOpener;
+import org.digidoc4j.ContainerValidationResult;
+import org.digidoc4j.TSLCertificateSource;
+import org.digidoc4j.impl.asic.report.SignatureValidationReport;
+import org.digidoc4j.impl.asic.report.TimestampValidationReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent cache of container validation summaries. The key is built from the SHA-256 of the container
+ * file, the version of the loaded TSL (LOTL and TSL sequence numbers and the trusted certificates), the
+ * hash of the validation policy and the validation time bucket. When any of them changes, e.g. after
+ * {@code getTSL().refresh()} has loaded a new TSL version, the key changes and the container is validated
+ * again, so stale entries never need explicit invalidation.
+ * <p>
+ * Only a summary of the {@link ContainerValidationResult} is stored, not the DSS reports.
+ * <p>
+ * File layout: magic "DD4JVRC2", validity (boolean), errors, warnings, signature reports and timestamp
+ * reports. Message lists are a count (int) followed by strings; reports are a count (int) followed by
+ * unique ID, indication, sub-indication and format as strings, empty when missing. A string is its UTF-8
+ * length (int) followed by the UTF-8 bytes.
+ */
+public class ValidationResultCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ValidationResultCache.class);
+
+    private static final byte[] MAGIC = "DD4JVRC2".getBytes(StandardCharsets.US_ASCII);
+    private static final String FILE_SUFFIX = ".vr";
+
+    /**
+     * Bounds of the counts and string lengths read from an entry, so a corrupt entry is rejected as
+     * unreadable instead of allocating what its length fields claim.
+     */
+    private static final int MAX_COUNT = 100_000;
+    private static final int MAX_STRING_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Validation outcome of a signature or a timestamp.
+     */
+    public static class ReportSummary {
+
+        private final String uniqueId;
+        private final String indication;
+        private final String subIndication;
+        private final String format;
+
+        ReportSummary(String uniqueId, String indication, String subIndication, String format) {
+            this.uniqueId = uniqueId;
+            this.indication = indication;
+            this.subIndication = subIndication;
+            this.format = format;
+        }
+
+        public String getUniqueId() {
+            return uniqueId;
+        }
+
+        public String getIndication() {
+            return indication;
+        }
+
+        /**
+         * @return sub-indication, empty if there is none
+         */
+        public String getSubIndication() {
+            return subIndication;
+        }
+
+        /**
+         * @return signature format, empty for timestamps
+         */
+        public String getFormat() {
+            return format;
+        }
+    }
+
+    /**
+     * Summary of a container validation result.
+     */
+    public static class Summary {
+
+        private final boolean valid;
+        private final List<String> errors;
+        private final List<String> warnings;
+        private final List<ReportSummary> signatureReports;
+        private final List<ReportSummary> timestampReports;
+
+        Summary(boolean valid, List<String> errors, List<String> warnings,
+                List<ReportSummary> signatureReports, List<ReportSummary> timestampReports) {
+            this.valid = valid;
+            this.errors = Collections.unmodifiableList(errors);
+            this.warnings = Collections.unmodifiableList(warnings);
+            this.signatureReports = Collections.unmodifiableList(signatureReports);
+            this.timestampReports = Collections.unmodifiableList(timestampReports);
+        }
+
+        /**
+         * Creates the summary of a validation result.
+         *
+         * @param result validation result
+         * @return summary
+         */
+        public static Summary of(ContainerValidationResult result) {
+            List<String> errors = new ArrayList<>();
+            result.getErrors().forEach(e -> errors.add(e.getMessage()));
+            List<String> warnings = new ArrayList<>();
+            result.getWarnings().forEach(w -> warnings.add(w.getMessage()));
+
+            List<ReportSummary> signatureReports = new ArrayList<>();
+            for (SignatureValidationReport report : result.getSignatureReports()) {
+                signatureReports.add(new ReportSummary(report.getUniqueId(), nullToEmpty(report.getIndication()),
+                        nullToEmpty(report.getSubIndication()), nullToEmpty(report.getSignatureFormat())));
+            }
+            List<ReportSummary> timestampReports = new ArrayList<>();
+            for (TimestampValidationReport report : result.getTimestampReports()) {
+                timestampReports.add(new ReportSummary(report.getUniqueId(), nullToEmpty(report.getIndication()),
+                        nullToEmpty(report.getSubIndication()), ""));
+            }
+            return new Summary(result.isValid(), errors, warnings, signatureReports, timestampReports);
+        }
+
+        public boolean isValid() {
+            return valid;
+        }
+
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        public List<String> getWarnings() {
+            return warnings;
+        }
+
+        public List<ReportSummary> getSignatureReports() {
+            return signatureReports;
+        }
+
+        public List<ReportSummary> getTimestampReports() {
+            return timestampReports;
+        }
+
+        private static String nullToEmpty(Object value) {
+            return value == null ? "" : value.toString();
+        }
+    }
+
+    private final Path directory;
+    private final long timeBucketMillis;
+    private final Clock clock;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Constructs a ValidationResultCache.
+     *
+     * @param directory  cache directory, created if missing
+     * @param timeBucket results are reused only within the same time bucket, e.g. one day
+     */
+    public ValidationResultCache(Path directory, Duration timeBucket) {
+        this(directory, timeBucket, Clock.systemUTC());
+    }
+
+    /**
+     * Constructs a ValidationResultCache with the given clock for the validation time bucket.
+     *
+     * @param directory  cache directory, created if missing
+     * @param timeBucket results are reused only within the same time bucket
+     * @param clock      clock giving the validation time
+     */
+    public ValidationResultCache(Path directory, Duration timeBucket, Clock clock) {
+        this.directory = directory;
+        this.timeBucketMillis = timeBucket.toMillis();
+        this.clock = clock;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to create cache directory %s", directory), e);
+        }
+    }
+
+    /**
+     * Returns the cached summary of the container, or opens and validates it and caches the summary.
+     *
+     * @param containerPath container file
+     * @param configuration configuration used for validation
+     * @return validation summary
+     */
+    public Summary validate(Path containerPath, Configuration configuration) throws IOException {
+        String key = getKey(containerPath, configuration);
+        Path file = directory.resolve(key + FILE_SUFFIX);
+
+        if (Files.isRegularFile(file)) {
+            try {
+                Summary summary = read(file);
+                hitCount.incrementAndGet();
+                return summary;
+            } catch (IOException e) {
+                LOG.warn("Ignoring unreadable cache entry {}: {}", file, e.getMessage());
+            }
+        }
+
+        missCount.incrementAndGet();
+        ContainerValidationResult result = ContainerOpener.open(containerPath.toString(), configuration).validate();
+        Summary summary = Summary.of(result);
+        try {
+            write(summary, file);
+        } catch (IOException e) {
+            LOG.warn("Unable to write cache entry {}: {}", file, e.getMessage());
+        }
+        return summary;
+    }
+
+    /**
+     * Builds the cache key of the container with the current TSL, policy and time.
+     *
+     * @param containerPath container file
+     * @param configuration configuration used for validation
+     * @return hex encoded SHA-256 of the key parts
+     */
+    public String getKey(Path containerPath, Configuration configuration) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(fileDigest(containerPath));
+        digest.update(getTslVersion(configuration.getTSL()));
+        digest.update(getPolicyDigest(configuration));
+        long bucket = clock.millis() / timeBucketMillis;
+        digest.update(ByteBuffer.allocate(Long.BYTES).putLong(bucket).array());
+        return Utils.toHex(digest.digest());
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Digest of the loaded TSL version: LOTL and TSL URLs with their sequence numbers, and the trusted
+     * certificates, so that certificates added with {@code addTSLCertificate} change the version as well.
+     */
+    static byte[] getTslVersion(TSLCertificateSource tsl) {
+        MessageDigest digest = sha256();
+        TLValidationJobSummary summary = tsl.getSummary();
+        if (summary != null) {
+            for (LOTLInfo lotlInfo : summary.getLOTLInfos()) {
+                update(digest, lotlInfo);
+                for (TLInfo tlInfo : lotlInfo.getTLInfos()) {
+                    update(digest, tlInfo);
+                }
+            }
+            for (TLInfo tlInfo : summary.getOtherTLInfos()) {
+                update(digest, tlInfo);
+            }
+        }
+        List<String> certificateIds = new ArrayList<>();
+        for (CertificateToken certificate : tsl.getCertificates()) {
+            certificateIds.add(certificate.getDSSIdAsString());
+        }
+        Collections.sort(certificateIds);
+        for (String certificateId : certificateIds) {
+            digest.update(certificateId.getBytes(StandardCharsets.US_ASCII));
+        }
+        return digest.digest();
+    }
+
+    private static void update(MessageDigest digest, TLInfo tlInfo) {
+        digest.update(tlInfo.getUrl().getBytes(StandardCharsets.UTF_8));
+        // Not parsed when the download failed
+        Integer sequenceNumber = tlInfo.getParsingCacheInfo() == null ? null : tlInfo.getParsingCacheInfo().getSequenceNumber();
+        digest.update(String.valueOf(sequenceNumber).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static byte[] getPolicyDigest(Configuration configuration) throws IOException {
+        String policy = configuration.getValidationPolicy();
+        if (policy == null) {
+            return new byte[0];
+        }
+        byte[] policyBytes = readPolicy(configuration);
+        return sha256().digest(policyBytes != null ? policyBytes : policy.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads the validation policy of the configuration from a file or the classpath.
+     *
+     * @return policy bytes, or null if the configuration has no policy or it is not found
+     */
+    static byte[] readPolicy(Configuration configuration) throws IOException {
+        String policy = configuration.getValidationPolicy();
+        if (policy == null) {
+            return null;
+        }
+        Path policyFile = Paths.get(policy);
+        if (Files.isRegularFile(policyFile)) {
+            return Files.readAllBytes(policyFile);
+        }
+        try (InputStream in = ValidationResultCache.class.getClassLoader().getResourceAsStream(policy)) {
+            return in != null ? Utils.toByteArray(in) : null;
+        }
+    }
+
+    private static byte[] fileDigest(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+
+    private static Summary read(Path file) throws IOException {
+        try (InputStream fileIn = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(MAGIC, magic)) {
+                throw new IOException("Not a validation result cache entry");
+            }
+            boolean valid = in.readBoolean();
+            List<String> errors = readMessages(in);
+            List<String> warnings = readMessages(in);
+            List<ReportSummary> signatureReports = readReports(in);
+            List<ReportSummary> timestampReports = readReports(in);
+            return new Summary(valid, errors, warnings, signatureReports, timestampReports);
+        }
+    }
+
+    private static void write(Summary summary, Path file) throws IOException {
+        Path tempFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream fileOut = Files.newOutputStream(tempFile);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+                out.write(MAGIC);
+                out.writeBoolean(summary.isValid());
+                writeMessages(out, summary.getErrors());
+                writeMessages(out, summary.getWarnings());
+                writeReports(out, summary.getSignatureReports());
+                writeReports(out, summary.getTimestampReports());
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static List<String> readMessages(DataInputStream in) throws IOException {
+        int count = readCount(in);
+        List<String> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(readString(in));
+        }
+        return messages;
+    }
+
+    private static void writeMessages(DataOutputStream out, List<String> messages) throws IOException {
+        out.writeInt(messages.size());
+        for (String message : messages) {
+            writeString(out, Objects.toString(message, ""));
+        }
+    }
+
+    private static List<ReportSummary> readReports(DataInputStream in) throws IOException {
+        int count = readCount(in);
+        List<ReportSummary> reports = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            reports.add(new ReportSummary(readString(in), readString(in), readString(in), readString(in)));
+        }
+        return reports;
+    }
+
+    private static void writeReports(DataOutputStream out, List<ReportSummary> reports) throws IOException {
+        out.writeInt(reports.size());
+        for (ReportSummary report : reports) {
+            writeString(out, Objects.toString(report.getUniqueId(), ""));
+            writeString(out, report.getIndication());
+            writeString(out, report.getSubIndication());
+            writeString(out, report.getFormat());
+        }
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_COUNT) {
+            throw new IOException(String.format("Invalid count %d", count));
+        }
+        return count;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException(String.format("Invalid string length %d", length));
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
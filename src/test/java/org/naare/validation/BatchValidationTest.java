@@ -0,0 +1,104 @@
+package org.naare.validation;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.exceptions.DigiDoc4JException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.naare.utils.BatchValidator;
+import org.naare.utils.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchValidationTest {
+
+    @Test
+    void validateDirectory_allContainersReported() throws IOException {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        Path directory = Paths.get("src/test/resources/files/test/asics");
+
+        List<BatchValidator.Result> results = new CopyOnWriteArrayList<>();
+        try (BatchValidator validator = new BatchValidator(configuration, 4)) {
+            int count = validator.validateDirectory(directory, results::add);
+
+            long expectedCount;
+            try (Stream<Path> files = Files.list(directory)) {
+                expectedCount = files.filter(Files::isRegularFile).count();
+            }
+            assertEquals(expectedCount, count);
+            assertEquals(count, results.size());
+            assertEquals(count, validator.getLatencyHistogram().getCount());
+        }
+
+        Map<String, BatchValidator.Result> resultsByName = results.stream()
+                .collect(Collectors.toMap(r -> r.getPath().getFileName().toString(), r -> r));
+
+        // Valid containers
+        assertTrue(resultsByName.get("TEST_ASICS.asics").isValid());
+        assertTrue(resultsByName.get("TEST_ESTEID2018_ASiC-S_XAdES_LT.scs").isValid());
+        // Malformed containers fail to open, the error is reported instead of the validation result
+        BatchValidator.Result malformed = resultsByName.get("DuplicateMimetype.asics");
+        assertNull(malformed.getValidationResult());
+        assertTrue(malformed.getError() instanceof DigiDoc4JException);
+    }
+
+    @Test
+    void validatePaths_sameContainerValidatedConcurrently() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        configuration.setLotlLocation("http://repo.ria/tsl/trusted-test-mp.xml");
+        Path path = Paths.get("src/test/resources/files/test/asic/EE_LT_sig_valid.asice");
+
+        Map<Path, Integer> validCount = new ConcurrentHashMap<>();
+        try (BatchValidator validator = new BatchValidator(configuration, 4)) {
+            int count = validator.validate(Stream.generate(() -> path).limit(16),
+                    result -> validCount.merge(result.getPath(), result.isValid() ? 1 : 0, Integer::sum));
+
+            assertEquals(16, count);
+            assertEquals(16, validator.getLatencyHistogram().getCount());
+        }
+
+        assertEquals(16, validCount.get(path));
+    }
+
+    @Test
+    void rejectedTask_failsInsteadOfWaiting() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        Path path = Paths.get("src/test/resources/files/test/asic/EE_LT_sig_valid.asice");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+
+        try (BatchValidator validator = new BatchValidator(configuration, executor, 2)) {
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> assertThrows(RejectedExecutionException.class,
+                    () -> validator.validate(Stream.generate(() -> path).limit(4), result -> fail("Not submitted"))));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 9, 150, 1_000, 1_100, 1_999, 37_500, 120_000})
+    void latencyHistogram_percentileWithinEighthOfLatency(long latencyMillis) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // Slightly above the millisecond, the bucket must not round it down
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(latencyMillis) + 1_000);
+        histogram.record(TimeUnit.HOURS.toNanos(1));
+
+        long p50 = histogram.getPercentileMillis(50);
+        assertTrue(p50 >= latencyMillis, "p50 " + p50);
+        assertTrue(p50 <= latencyMillis + latencyMillis / 8 + 1, "p50 " + p50);
+    }
+}
@@ -0,0 +1,80 @@
+package org.naare.validation;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerValidationResult;
+import org.digidoc4j.SignatureProfile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.naare.utils.StreamingContainers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.naare.signing.Helpers.SignPkcs12;
+import static org.naare.signing.Helpers.buildContainer;
+
+/**
+ * Streams a generated data file through signing, saving, opening and validation. Runs only when the data file
+ * size is given, e.g. {@code mvn test -Dbigfile.size.mb=512}.
+ * <p>
+ * Heap is measured as the live set after a full GC, with the signed and the opened container still
+ * referenced, so the result does not depend on the heap size or GC ergonomics of the JVM. A data file held
+ * in memory would add at least its own size to the live set.
+ */
+@EnabledIfSystemProperty(named = "bigfile.size.mb", matches = "\\d+")
+class BigFileValidationTest {
+
+    private static final long DATA_FILE_SIZE = Long.getLong("bigfile.size.mb", 512) * 1024 * 1024;
+    private static final long MAX_RETAINED_HEAP_GROWTH = DATA_FILE_SIZE / 4;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void bigDataFile_streamedAndValidated_retainedHeapBounded() throws IOException {
+        Configuration configuration = StreamingContainers.withBigFilesSupport(
+                Configuration.of(Configuration.Mode.TEST), StreamingContainers.DEFAULT_IN_MEMORY_LIMIT_MB);
+        // Load the TSL before measuring, it is not part of the data file path
+        configuration.getTSL().refresh();
+
+        long baseline = getLiveHeap();
+
+        // Create signed container from a generated data stream
+        Path containerPath = tempDir.resolve("big.asice");
+        Container signedContainer;
+        try (InputStream data = StreamingContainers.generatedData(DATA_FILE_SIZE, 42)) {
+            signedContainer = buildContainer(Container.DocumentType.ASICE, configuration, data, "big.bin", "application/octet-stream");
+            SignPkcs12(signedContainer, SignatureProfile.B_BES);
+            signedContainer.saveAsFile(containerPath.toString());
+        }
+
+        // Open from stream and validate
+        Container container = StreamingContainers.open(containerPath, configuration);
+        ContainerValidationResult result = container.validate();
+
+        assertEquals(DATA_FILE_SIZE, container.getDataFiles().get(0).getFileSize());
+        assertEquals(1, result.getSignatureReports().size());
+        // Neither container holds the data file in memory
+        long growth = getLiveHeap() - baseline;
+        assertTrue(growth < MAX_RETAINED_HEAP_GROWTH, "Retained heap growth " + growth / (1024 * 1024) + " MB");
+        // Keeps the signed container reachable until after the measurement
+        assertEquals(DATA_FILE_SIZE, signedContainer.getDataFiles().get(0).getFileSize());
+    }
+
+    /**
+     * Returns the used heap after full GCs, repeated as System.gc() is only a request.
+     */
+    private static long getLiveHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,180 @@
+package org.naare.validation;
+
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.service.http.commons.CommonsDataLoader;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.SignatureProfile;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.naare.utils.CachingAIASource;
+import org.naare.utils.StubHttpServer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.naare.signing.Helpers.*;
+import static org.naare.utils.TestCertificates.certificate;
+import static org.naare.utils.TestCertificates.newKeyPair;
+
+class CachingAiaSourceTest {
+
+    private static KeyPair issuerKeyPair;
+    private static X509Certificate issuer;
+
+    @TempDir
+    Path store;
+
+    @BeforeAll
+    static void createIssuer() {
+        issuerKeyPair = newKeyPair();
+        issuer = certificate("CN=AIA TEST ISSUER", issuerKeyPair).ca().build();
+    }
+
+    @Test
+    void issuerDownloadedOnce_thenServedFromMemoryAndStore() throws Exception {
+        try (StubHttpServer server = new StubHttpServer(issuer.getEncoded(), "application/pkix-cert", 0)) {
+            CertificateToken certificate = createCertificateWithAia(server.getUrl());
+
+            try (CachingAIASource aiaSource = new CachingAIASource(new CommonsDataLoader(), store, Duration.ofDays(1))) {
+                Set<CertificateToken> issuers = aiaSource.getCertificatesByAIA(certificate);
+                assertEquals(Collections.singleton(new CertificateToken(issuer)), issuers);
+                assertTrue(certificate.isSignedBy(issuers.iterator().next()));
+
+                aiaSource.getCertificatesByAIA(certificate);
+                assertEquals(1, aiaSource.getDownloadCount());
+                assertEquals(1, aiaSource.getHitCount());
+                assertTrue(Files.exists(aiaSource.getFile(server.getUrl())));
+            }
+
+            // Restart reads the stored issuer
+            try (CachingAIASource aiaSource = new CachingAIASource(new CommonsDataLoader(), store, Duration.ofDays(1))) {
+                assertEquals(1, aiaSource.getCertificatesByAIA(certificate).size());
+                assertEquals(1, aiaSource.getStoreReadCount());
+                assertEquals(0, aiaSource.getDownloadCount());
+            }
+            assertEquals(1, server.getRequestCount());
+        }
+    }
+
+    @Test
+    void corruptStoreEntry_downloadedAgain() throws Exception {
+        try (StubHttpServer server = new StubHttpServer(issuer.getEncoded(), "application/pkix-cert", 0)) {
+            CertificateToken certificate = createCertificateWithAia(server.getUrl());
+            Path file;
+            try (CachingAIASource aiaSource = new CachingAIASource(new CommonsDataLoader(), store, Duration.ofDays(1))) {
+                aiaSource.getCertificatesByAIA(certificate);
+                file = aiaSource.getFile(server.getUrl());
+            }
+
+            byte[] content = Files.readAllBytes(file);
+            content[content.length - 10] ^= 0x01;
+            Files.write(file, content);
+
+            try (CachingAIASource aiaSource = new CachingAIASource(new CommonsDataLoader(), store, Duration.ofDays(1))) {
+                assertEquals(1, aiaSource.getCertificatesByAIA(certificate).size());
+                assertEquals(0, aiaSource.getStoreReadCount());
+                assertEquals(1, aiaSource.getDownloadCount());
+            }
+            assertEquals(2, server.getRequestCount());
+        }
+    }
+
+    @Test
+    void expiredEntry_servedWhileRefreshedInBackground() throws Exception {
+        CountDownLatch refreshStarted = new CountDownLatch(1);
+        CountDownLatch refreshReleased = new CountDownLatch(1);
+        AtomicInteger downloads = new AtomicInteger();
+        // Downloads after the first one block until released
+        CommonsDataLoader dataLoader = new CommonsDataLoader() {
+            @Override
+            public byte[] get(String url) {
+                if (downloads.incrementAndGet() > 1) {
+                    refreshStarted.countDown();
+                    await(refreshReleased);
+                }
+                return super.get(url);
+            }
+        };
+
+        try (StubHttpServer server = new StubHttpServer(issuer.getEncoded(), "application/pkix-cert", 0)) {
+            CertificateToken certificate = createCertificateWithAia(server.getUrl());
+
+            try (CachingAIASource aiaSource = new CachingAIASource(dataLoader, store, Duration.ofMillis(1))) {
+                aiaSource.getCertificatesByAIA(certificate);
+                Thread.sleep(10);
+
+                // Served while the refresh download is blocked, waiting for it would time out
+                assertTimeoutPreemptively(Duration.ofSeconds(10),
+                        () -> assertEquals(1, aiaSource.getCertificatesByAIA(certificate).size()));
+                assertTrue(refreshStarted.await(10, TimeUnit.SECONDS));
+                assertEquals(1, server.getRequestCount());
+
+                refreshReleased.countDown();
+                long deadline = System.currentTimeMillis() + 5000;
+                while (server.getRequestCount() < 2 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(50);
+                }
+                assertEquals(2, server.getRequestCount());
+            }
+        } finally {
+            refreshReleased.countDown();
+        }
+    }
+
+    @Test
+    void prefetch_caIssuersLoadedBeforeChainBuilding() throws Exception {
+        try (StubHttpServer server = new StubHttpServer(issuer.getEncoded(), "application/pkix-cert", 0)) {
+            KeyPair caKeyPair = newKeyPair();
+            CertificateToken intermediateCa = new CertificateToken(certificate("CN=AIA TEST INTERMEDIATE CA", caKeyPair).ca()
+                    .issuedBy("CN=AIA TEST ISSUER", issuerKeyPair).caIssuersUrl(server.getUrl()).build());
+
+            try (CachingAIASource aiaSource = new CachingAIASource(new CommonsDataLoader(), store, Duration.ofDays(1))) {
+                assertEquals(1, aiaSource.prefetch(Collections.singletonList(intermediateCa)));
+                assertEquals(1, aiaSource.getDownloadCount());
+
+                assertEquals(1, aiaSource.getCertificatesByAIA(intermediateCa).size());
+                assertEquals(1, aiaSource.getHitCount());
+                assertEquals(1, server.getRequestCount());
+            }
+        }
+    }
+
+    @Test
+    void prefetchTestTsl_signLt_valid() throws Exception {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        try (CachingAIASource aiaSource = new CachingAIASource(new CommonsDataLoader(), store, Duration.ofDays(1))) {
+            configuration.setAiaSourceFactory(() -> aiaSource);
+
+            aiaSource.prefetch(configuration.getTSL().getCertificates());
+
+            Container container = buildContainer(Container.DocumentType.ASICE, configuration);
+            SignPkcs12(container, SignatureProfile.LT);
+            validationResultHasNoIssues(container.validate());
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static CertificateToken createCertificateWithAia(String aiaUrl) {
+        return new CertificateToken(certificate("CN=AIA TEST SIGNER", newKeyPair())
+                .issuedBy("CN=AIA TEST ISSUER", issuerKeyPair).caIssuersUrl(aiaUrl).build());
+    }
+}
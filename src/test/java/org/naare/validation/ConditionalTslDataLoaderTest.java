@@ -0,0 +1,254 @@
+package org.naare.validation;
+
+import com.sun.net.httpserver.HttpServer;
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.model.tsl.LOTLInfo;
+import eu.europa.esig.dss.model.tsl.TLValidationJobSummary;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.ExternalConnectionType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.naare.utils.ConditionalTslDataLoader;
+import org.naare.utils.TslFixtureServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionalTslDataLoaderTest {
+
+    private static final String TSL_URL = "https://tsl.example.com/tsl/EE_T.xml";
+
+    @TempDir
+    Path root;
+
+    @TempDir
+    Path store;
+
+    @Test
+    void unchangedTsl_notModified() throws IOException {
+        writeTsl(tsl(1, "A"));
+        try (TslFixtureServer server = new TslFixtureServer(root)) {
+            ConditionalTslDataLoader loader = new ConditionalTslDataLoader(store, server::getUrl);
+
+            byte[] first = loader.get(TSL_URL);
+            byte[] second = loader.get(TSL_URL);
+
+            assertArrayEquals(first, second);
+            assertEquals(1, server.getFullResponseCount());
+            assertEquals(1, server.getNotModifiedCount());
+            assertEquals(1, loader.getNotModifiedCount());
+            assertTrue(Files.exists(loader.getFile(TSL_URL)));
+        }
+    }
+
+    @Test
+    void newLoader_sendsConditionalRequestFromStore() throws IOException {
+        writeTsl(tsl(1, "A"));
+        try (TslFixtureServer server = new TslFixtureServer(root)) {
+            byte[] first = new ConditionalTslDataLoader(store, server::getUrl).get(TSL_URL);
+
+            ConditionalTslDataLoader restarted = new ConditionalTslDataLoader(store, server::getUrl);
+            assertArrayEquals(first, restarted.get(TSL_URL));
+
+            assertEquals(0, restarted.getDownloadCount());
+            assertEquals(1, restarted.getNotModifiedCount());
+        }
+    }
+
+    @Test
+    void changedTsl_sameSequenceNumber_returnsStoredTsl() throws IOException {
+        writeTsl(tsl(1, "A"));
+        try (TslFixtureServer server = new TslFixtureServer(root)) {
+            ConditionalTslDataLoader loader = new ConditionalTslDataLoader(store, server::getUrl);
+            byte[] first = loader.get(TSL_URL);
+
+            // Re-signed or re-serialized, not a new version
+            writeTsl(tsl(1, "B"));
+            assertArrayEquals(first, loader.get(TSL_URL));
+            assertEquals(1, loader.getSameSequenceNumberCount());
+
+            // New validators are kept
+            assertArrayEquals(first, loader.get(TSL_URL));
+            assertEquals(1, loader.getNotModifiedCount());
+        }
+    }
+
+    @Test
+    void changedTsl_higherSequenceNumber_returnsNewTsl() throws IOException {
+        writeTsl(tsl(1, "A"));
+        try (TslFixtureServer server = new TslFixtureServer(root)) {
+            ConditionalTslDataLoader loader = new ConditionalTslDataLoader(store, server::getUrl);
+            loader.get(TSL_URL);
+
+            writeTsl(tsl(2, "B"));
+            assertEquals(tsl(2, "B"), new String(loader.get(TSL_URL), StandardCharsets.UTF_8));
+
+            assertEquals(2, loader.getDownloadCount());
+            assertEquals(0, loader.getSameSequenceNumberCount());
+        }
+    }
+
+    @Test
+    void refreshTsl_unchangedLotl_notModifiedAndNotParsedAgain() throws IOException {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        writeFile(configuration.getLotlLocation(), lotl(1));
+        try (TslFixtureServer server = new TslFixtureServer(root)) {
+            ConditionalTslDataLoader loader = new ConditionalTslDataLoader(store, server::getUrl);
+            List<TLValidationJobSummary> summaries = new CopyOnWriteArrayList<>();
+            configuration.setTslDataLoaderFactory(() -> loader);
+            // The fixture LOTL is not signed, keep it instead of failing the refresh
+            configuration.setTslRefreshCallback(summary -> summaries.add(summary));
+            // DD4J file cache in front of the loader, expired at once so that every refresh reaches the loader
+            configuration.setTslCacheExpirationTime(0);
+
+            configuration.getTSL().invalidateCache();
+            configuration.getTSL().refresh();
+            LOTLInfo first = summaries.get(summaries.size() - 1).getLOTLInfos().get(0);
+            assertEquals(1, server.getFullResponseCount());
+
+            configuration.getTSL().refresh();
+            LOTLInfo second = summaries.get(summaries.size() - 1).getLOTLInfos().get(0);
+
+            assertEquals(1, server.getFullResponseCount());
+            assertTrue(server.getNotModifiedCount() > 0);
+            assertEquals(server.getNotModifiedCount(), loader.getNotModifiedCount());
+            // DSS got the same bytes and kept the parsed LOTL of the first refresh
+            assertTrue(first.getParsingCacheInfo().isResultExist());
+            assertEquals(first.getParsingCacheInfo().getLastStateTransitionTime(),
+                    second.getParsingCacheInfo().getLastStateTransitionTime());
+        }
+    }
+
+    @Test
+    void redirectedTsl_followedWithConditionalRequest() throws IOException {
+        writeTsl(tsl(1, "A"));
+        try (TslFixtureServer server = new TslFixtureServer(root)) {
+            HttpServer redirector = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            redirector.createContext("/", exchange -> {
+                exchange.getResponseHeaders().set("Location", server.getUrl(TSL_URL));
+                exchange.sendResponseHeaders(301, -1);
+                exchange.close();
+            });
+            redirector.start();
+            try {
+                String redirectUrl = "http://127.0.0.1:" + redirector.getAddress().getPort() + "/EE_T.xml";
+                ConditionalTslDataLoader loader = new ConditionalTslDataLoader(store, url -> redirectUrl);
+
+                assertEquals(tsl(1, "A"), new String(loader.get(TSL_URL), StandardCharsets.UTF_8));
+                loader.get(TSL_URL);
+
+                assertEquals(1, server.getFullResponseCount());
+                assertEquals(1, server.getNotModifiedCount());
+                assertEquals(1, loader.getNotModifiedCount());
+            } finally {
+                redirector.stop(0);
+            }
+        }
+    }
+
+    @Test
+    void redirectLoop_fails() throws IOException {
+        HttpServer redirector = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        AtomicInteger requestCount = new AtomicInteger();
+        redirector.createContext("/", exchange -> {
+            requestCount.incrementAndGet();
+            exchange.getResponseHeaders().set("Location", exchange.getRequestURI().toString());
+            exchange.sendResponseHeaders(302, -1);
+            exchange.close();
+        });
+        redirector.start();
+        try {
+            String url = "http://127.0.0.1:" + redirector.getAddress().getPort() + "/EE_T.xml";
+            ConditionalTslDataLoader loader = new ConditionalTslDataLoader(store);
+
+            assertThrows(DSSException.class, () -> loader.get(url));
+            assertEquals(ConditionalTslDataLoader.MAX_REDIRECTS + 1, requestCount.get());
+        } finally {
+            redirector.stop(0);
+        }
+    }
+
+    @Test
+    void configurationProxy_usedWithCredentials() throws IOException {
+        String url = "http://tsl.example.com/tsl/EE_T.xml";
+        byte[] content = tsl(1, "A").getBytes(StandardCharsets.UTF_8);
+        List<String> requests = new CopyOnWriteArrayList<>();
+        HttpServer proxy = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        proxy.createContext("/", exchange -> {
+            requests.add(exchange.getRequestURI() + " " + exchange.getRequestHeaders().getFirst("Proxy-Authorization"));
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content);
+            }
+        });
+        proxy.start();
+        try {
+            Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+            configuration.setHttpProxyHostFor(ExternalConnectionType.TSL, "127.0.0.1");
+            configuration.setHttpProxyPortFor(ExternalConnectionType.TSL, proxy.getAddress().getPort());
+            configuration.setHttpProxyUserFor(ExternalConnectionType.TSL, "user");
+            configuration.setHttpProxyPasswordFor(ExternalConnectionType.TSL, "password");
+            ConditionalTslDataLoader loader = new ConditionalTslDataLoader(configuration, store);
+
+            assertArrayEquals(content, loader.get(url));
+            // Base64 of user:password
+            assertEquals(Collections.singletonList(url + " Basic dXNlcjpwYXNzd29yZA=="), requests);
+        } finally {
+            proxy.stop(0);
+        }
+    }
+
+    private void writeTsl(String content) throws IOException {
+        writeFile(TSL_URL, content);
+    }
+
+    private void writeFile(String url, String content) throws IOException {
+        Path file = root.resolve(TslFixtureServer.toRelativePath(url));
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String tsl(int sequenceNumber, String operator) {
+        return "<tsl:TrustServiceStatusList xmlns:tsl=\"http://uri.etsi.org/02231/v2#\"><tsl:SchemeInformation>"
+                + "<tsl:TSLSequenceNumber>" + sequenceNumber + "</tsl:TSLSequenceNumber>"
+                + "<tsl:SchemeOperatorName>" + operator + "</tsl:SchemeOperatorName>"
+                + "</tsl:SchemeInformation></tsl:TrustServiceStatusList>";
+    }
+
+    /**
+     * Unsigned LOTL without pointers to other lists, with the elements required by the TSL schema.
+     */
+    private static String lotl(int sequenceNumber) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<tsl:TrustServiceStatusList xmlns:tsl=\"http://uri.etsi.org/02231/v2#\" Id=\"TrustServiceStatusList\""
+                + " TSLTag=\"http://uri.etsi.org/19612/TSLTag\"><tsl:SchemeInformation>"
+                + "<tsl:TSLVersionIdentifier>5</tsl:TSLVersionIdentifier>"
+                + "<tsl:TSLSequenceNumber>" + sequenceNumber + "</tsl:TSLSequenceNumber>"
+                + "<tsl:TSLType>http://uri.etsi.org/TrstSvc/TrustedList/TSLType/EUlistofthelists</tsl:TSLType>"
+                + "<tsl:SchemeOperatorName><tsl:Name xml:lang=\"en\">TEST</tsl:Name></tsl:SchemeOperatorName>"
+                + "<tsl:SchemeOperatorAddress><tsl:PostalAddresses><tsl:PostalAddress xml:lang=\"en\">"
+                + "<tsl:StreetAddress>TEST</tsl:StreetAddress><tsl:Locality>TEST</tsl:Locality><tsl:CountryName>EE</tsl:CountryName>"
+                + "</tsl:PostalAddress></tsl:PostalAddresses><tsl:ElectronicAddress>"
+                + "<tsl:URI xml:lang=\"en\">mailto:test@example.com</tsl:URI></tsl:ElectronicAddress></tsl:SchemeOperatorAddress>"
+                + "<tsl:SchemeName><tsl:Name xml:lang=\"en\">EU:TEST</tsl:Name></tsl:SchemeName>"
+                + "<tsl:SchemeInformationURI><tsl:URI xml:lang=\"en\">https://example.com</tsl:URI></tsl:SchemeInformationURI>"
+                + "<tsl:StatusDeterminationApproach>http://uri.etsi.org/TrstSvc/TrustedList/StatusDetn/EUlistofthelists</tsl:StatusDeterminationApproach>"
+                + "<tsl:SchemeTypeCommunityRules><tsl:URI xml:lang=\"en\">http://uri.etsi.org/TrstSvc/TrustedList/schemerules/EUlistofthelists</tsl:URI></tsl:SchemeTypeCommunityRules>"
+                + "<tsl:SchemeTerritory>EU</tsl:SchemeTerritory>"
+                + "<tsl:PolicyOrLegalNotice><tsl:TSLLegalNotice xml:lang=\"en\">TEST</tsl:TSLLegalNotice></tsl:PolicyOrLegalNotice>"
+                + "<tsl:HistoricalInformationPeriod>65535</tsl:HistoricalInformationPeriod>"
+                + "<tsl:ListIssueDateTime>2026-01-01T00:00:00Z</tsl:ListIssueDateTime>"
+                + "<tsl:NextUpdate><tsl:dateTime>2099-01-01T00:00:00Z</tsl:dateTime></tsl:NextUpdate>"
+                + "</tsl:SchemeInformation></tsl:TrustServiceStatusList>";
+    }
+}
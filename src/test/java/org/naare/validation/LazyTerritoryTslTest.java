@@ -0,0 +1,83 @@
+package org.naare.validation;
+
+import eu.europa.esig.dss.model.tsl.LOTLInfo;
+import eu.europa.esig.dss.model.tsl.TLInfo;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerOpener;
+import org.junit.jupiter.api.Test;
+import org.naare.utils.LazyTerritoryTsl;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.naare.signing.Helpers.validationResultHasNoIssues;
+
+class LazyTerritoryTslTest {
+
+    private static final Path EE_CONTAINER = Paths.get("src/test/resources/files/test/asice/TEST_ESTEID2018_ASiC-E_XAdES_LT.sce");
+
+    @Test
+    void concurrentOpens_loadTerritoryTslOnce() throws Exception {
+        LazyTerritoryTsl tsl = new LazyTerritoryTsl(() -> Configuration.of(Configuration.Mode.TEST),
+                country -> "EE".equals(country) ? "EE_T" : country);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Container>> containers = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                containers.add(executor.submit(() -> tsl.open(EE_CONTAINER)));
+            }
+            for (Future<Container> container : containers) {
+                validationResultHasNoIssues(container.get().validate());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, tsl.getLoadCount());
+        assertEquals(Collections.singleton(Collections.singleton("EE_T")), tsl.getLoadedTerritories());
+    }
+
+    @Test
+    void territories_includeTimestampAndOcspCertificates() {
+        List<String> countries = new CopyOnWriteArrayList<>();
+        LazyTerritoryTsl tsl = new LazyTerritoryTsl(() -> Configuration.of(Configuration.Mode.TEST), country -> {
+            countries.add(country);
+            return "EE".equals(country) ? "EE_T" : country;
+        });
+        Container container = ContainerOpener.open(EE_CONTAINER.toString(), Configuration.of(Configuration.Mode.TEST));
+
+        assertEquals(Collections.singleton("EE_T"), tsl.getTerritories(container));
+        // Signing, signature timestamp and OCSP responder certificates of the LT signature
+        assertEquals(3, countries.size());
+    }
+
+    @Test
+    void territoryConfiguration_loadsOnlyTerritoryTsl() {
+        LazyTerritoryTsl tsl = new LazyTerritoryTsl(() -> Configuration.of(Configuration.Mode.TEST), country -> country);
+
+        Configuration configuration = tsl.getConfiguration(Collections.singleton("EE_T"));
+
+        assertFalse(configuration.getTSL().getCertificates().isEmpty());
+        for (LOTLInfo lotlInfo : configuration.getTSL().getSummary().getLOTLInfos()) {
+            for (TLInfo tlInfo : lotlInfo.getTLInfos()) {
+                if (tlInfo.getParsingCacheInfo() != null && tlInfo.getParsingCacheInfo().getTerritory() != null) {
+                    assertEquals("EE_T", tlInfo.getParsingCacheInfo().getTerritory());
+                }
+            }
+        }
+
+        // Same territories, same configuration
+        assertSame(configuration, tsl.getConfiguration(Collections.singleton("EE_T")));
+        assertEquals(1, tsl.getLoadCount());
+    }
+}
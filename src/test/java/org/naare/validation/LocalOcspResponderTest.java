@@ -0,0 +1,191 @@
+package org.naare.validation;
+
+import eu.europa.esig.dss.service.http.commons.OCSPDataLoader;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.ocsp.*;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.Container;
+import org.digidoc4j.ContainerValidationResult;
+import org.digidoc4j.SignatureProfile;
+import org.digidoc4j.exceptions.DigiDoc4JException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.naare.utils.LocalOcspResponder;
+
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.naare.signing.Helpers.*;
+
+class LocalOcspResponderTest {
+
+    private static final X509Certificate SIGNING_CERTIFICATE = getDefaultPkcs12SignatureToken("1234").getCertificate();
+
+    @Test
+    void goodStatus_signedAndNonceEchoed() throws Exception {
+        try (LocalOcspResponder responder = new LocalOcspResponder()) {
+            byte[] nonce = newNonce();
+            BasicOCSPResp response = request(responder, nonce);
+
+            assertTrue(response.isSignatureValid(new JcaContentVerifierProviderBuilder()
+                    .build(responder.getResponderCertificate())));
+            assertEquals(1, response.getResponses().length);
+            assertEquals(SIGNING_CERTIFICATE.getSerialNumber(), response.getResponses()[0].getCertID().getSerialNumber());
+            assertNull(response.getResponses()[0].getCertStatus());
+            assertArrayEquals(new DEROctetString(nonce).getEncoded(),
+                    response.getExtension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce).getExtnValue().getOctets());
+        }
+    }
+
+    @Test
+    void nonceEchoDisabled_noNonceInResponse() throws Exception {
+        try (LocalOcspResponder responder = new LocalOcspResponder()) {
+            responder.setNonceEcho(false);
+
+            BasicOCSPResp response = request(responder, newNonce());
+
+            assertNull(response.getExtension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce));
+        }
+    }
+
+    @Test
+    void revokedStatus_returned() throws Exception {
+        try (LocalOcspResponder responder = new LocalOcspResponder()) {
+            Date revocationTime = new Date(System.currentTimeMillis() - Duration.ofDays(1).toMillis());
+            responder.setCertificateStatus(new RevokedStatus(revocationTime, CRLReason.keyCompromise));
+
+            CertificateStatus status = request(responder, null).getResponses()[0].getCertStatus();
+
+            assertInstanceOf(RevokedStatus.class, status);
+            assertEquals(revocationTime.getTime() / 1000, ((RevokedStatus) status).getRevocationTime().getTime() / 1000);
+        }
+    }
+
+    @Test
+    void producedAtAndThisUpdateSkew_applied() throws Exception {
+        try (LocalOcspResponder responder = new LocalOcspResponder()) {
+            // Response produced 15 minutes 6 seconds after the request, as in EE_LT_sig_OCSP_15m6s_after_TS
+            responder.setProducedAtOffset(Duration.ofMinutes(15).plusSeconds(6));
+            responder.setThisUpdateOffset(Duration.ofHours(-25));
+
+            long now = System.currentTimeMillis();
+            BasicOCSPResp response = request(responder, null);
+
+            assertEquals(now + Duration.ofSeconds(906).toMillis(), response.getProducedAt().getTime(), 5000);
+            assertEquals(now - Duration.ofHours(25).toMillis(), response.getResponses()[0].getThisUpdate().getTime(), 5000);
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "0, false, false",
+            // More than the allowed 15 minutes after the signature timestamp, not fresh
+            "16, true, false",
+            // More than 24 hours after the signature timestamp
+            "1500, false, true"})
+    void signLt_producedAtSkew_freshnessRuleApplied(long producedAtOffsetMinutes, boolean notFreshWarning,
+                                                     boolean tooLargeError) throws Exception {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        String notFreshMessage = "The time difference between the signature timestamp and the OCSP response exceeds "
+                + configuration.getAllowedTimestampAndOCSPResponseDeltaInMinutes()
+                + " minutes, rendering the OCSP response not 'fresh'.";
+        String tooLargeMessage = "The difference between the OCSP response time and the signature timestamp is too large";
+
+        try (LocalOcspResponder responder = new LocalOcspResponder()) {
+            responder.setProducedAtOffset(Duration.ofMinutes(producedAtOffsetMinutes));
+            configuration.getTSL().addTSLCertificate(responder.getCaCertificate());
+            configuration.setOcspSource(responder.getUrl());
+
+            Container container = buildContainer(Container.DocumentType.ASICE, configuration);
+            SignPkcs12(container, SignatureProfile.LT);
+            ContainerValidationResult result = container.validate();
+
+            assertTrue(responder.getRequestCount() > 0);
+            assertEquals(notFreshWarning, messages(result.getWarnings()).contains(notFreshMessage));
+            assertEquals(tooLargeError, messages(result.getErrors()).contains(tooLargeMessage));
+        }
+    }
+
+    @Test
+    void latencyAndTryLater_applied() throws Exception {
+        try (LocalOcspResponder responder = new LocalOcspResponder()) {
+            responder.setLatencyMillis(200);
+            responder.setResponseStatus(OCSPRespBuilder.TRY_LATER);
+
+            long start = System.nanoTime();
+            OCSPResp response = new OCSPResp(new OCSPDataLoader().post(responder.getUrl(), buildRequest(null).getEncoded()));
+
+            assertTrue((System.nanoTime() - start) / 1_000_000 >= 200);
+            assertEquals(OCSPRespBuilder.TRY_LATER, response.getStatus());
+            assertNull(response.getResponseObject());
+        }
+    }
+
+    @Test
+    void concurrentRequests_allAnswered() throws Exception {
+        int requests = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try (LocalOcspResponder responder = new LocalOcspResponder()) {
+            byte[] request = buildRequest(newNonce()).getEncoded();
+            OCSPDataLoader dataLoader = new OCSPDataLoader();
+
+            List<Future<OCSPResp>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                futures.add(executor.submit(() -> new OCSPResp(dataLoader.post(responder.getUrl(), request))));
+            }
+            for (Future<OCSPResp> future : futures) {
+                assertEquals(OCSPRespBuilder.SUCCESSFUL, future.get().getStatus());
+            }
+
+            assertEquals(requests, responder.getRequestCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<String> messages(List<DigiDoc4JException> exceptions) {
+        return exceptions.stream().map(Exception::getMessage).collect(Collectors.toList());
+    }
+
+    private static BasicOCSPResp request(LocalOcspResponder responder, byte[] nonce) throws Exception {
+        OCSPResp response = new OCSPResp(new OCSPDataLoader().post(responder.getUrl(), buildRequest(nonce).getEncoded()));
+        assertEquals(OCSPRespBuilder.SUCCESSFUL, response.getStatus());
+        return (BasicOCSPResp) response.getResponseObject();
+    }
+
+    private static OCSPReq buildRequest(byte[] nonce) throws Exception {
+        // The responder does not check the issuer, the signing certificate stands in for it
+        CertificateID certificateId = new CertificateID(
+                new JcaDigestCalculatorProviderBuilder().build().get(CertificateID.HASH_SHA1),
+                new JcaX509CertificateHolder(SIGNING_CERTIFICATE), SIGNING_CERTIFICATE.getSerialNumber());
+        OCSPReqBuilder builder = new OCSPReqBuilder().addRequest(certificateId);
+        if (nonce != null) {
+            builder.setRequestExtensions(new Extensions(new Extension(
+                    OCSPObjectIdentifiers.id_pkix_ocsp_nonce, false, new DEROctetString(nonce))));
+        }
+        return builder.build();
+    }
+
+    private static byte[] newNonce() {
+        byte[] nonce = new byte[20];
+        new SecureRandom().nextBytes(nonce);
+        return nonce;
+    }
+}
@@ -0,0 +1,82 @@
+package org.naare.validation;
+
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import org.digidoc4j.Configuration;
+import org.junit.jupiter.api.Test;
+import org.naare.utils.TrustedCertificateIndex;
+
+import java.security.KeyPair;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.naare.signing.Helpers.getDefaultPkcs12SignatureToken;
+import static org.naare.utils.TestCertificates.certificate;
+import static org.naare.utils.TestCertificates.newKeyPair;
+
+class TrustedCertificateIndexTest {
+
+    @Test
+    void findIssuerInTestTsl_matchesLinearScan() {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        List<CertificateToken> certificates = configuration.getTSL().getCertificates();
+        CertificateToken signer = new CertificateToken(getDefaultPkcs12SignatureToken("1234").getCertificate());
+
+        CertificateToken expected = certificates.stream()
+                .filter(signer::isSignedBy)
+                .findFirst()
+                .orElseThrow(NullPointerException::new);
+
+        TrustedCertificateIndex index = new TrustedCertificateIndex(certificates);
+        CertificateToken issuer = index.findIssuer(signer).orElseThrow(NullPointerException::new);
+
+        assertEquals(expected, issuer);
+        assertEquals(1, index.getVerificationCount());
+    }
+
+    @Test
+    void sameSubjectDifferentKeys_issuerSelectedByKeyIdentifier() {
+        KeyPair oldKeyPair = newKeyPair();
+        KeyPair newKeyPair = newKeyPair();
+        CertificateToken oldCa = new CertificateToken(certificate("CN=INDEX TEST CA", oldKeyPair).ca().keyIdentifiers().build());
+        CertificateToken newCa = new CertificateToken(certificate("CN=INDEX TEST CA", newKeyPair).ca().keyIdentifiers().build());
+        CertificateToken signer = new CertificateToken(certificate("CN=INDEX TEST SIGNER", newKeyPair())
+                .issuedBy("CN=INDEX TEST CA", newKeyPair).keyIdentifiers().build());
+
+        TrustedCertificateIndex index = new TrustedCertificateIndex(Arrays.asList(oldCa, newCa));
+
+        assertEquals(Arrays.asList(newCa), index.getCandidates(signer));
+        assertEquals(newCa, index.findIssuer(signer).orElse(null));
+        assertEquals(1, index.getVerificationCount());
+    }
+
+    @Test
+    void noKeyIdentifiers_issuerFoundBySubject() {
+        KeyPair oldKeyPair = newKeyPair();
+        KeyPair newKeyPair = newKeyPair();
+        CertificateToken oldCa = new CertificateToken(certificate("CN=INDEX TEST CA", oldKeyPair).ca().build());
+        CertificateToken newCa = new CertificateToken(certificate("CN=INDEX TEST CA", newKeyPair).ca().build());
+        CertificateToken signer = new CertificateToken(certificate("CN=INDEX TEST SIGNER", newKeyPair())
+                .issuedBy("CN=INDEX TEST CA", newKeyPair).build());
+
+        TrustedCertificateIndex index = new TrustedCertificateIndex(Arrays.asList(oldCa, newCa));
+
+        // Both have the issuer DN, the signature decides
+        assertEquals(2, index.getCandidates(signer).size());
+        assertEquals(newCa, index.findIssuer(signer).orElse(null));
+    }
+
+    @Test
+    void unknownIssuer_empty() {
+        KeyPair caKeyPair = newKeyPair();
+        CertificateToken ca = new CertificateToken(certificate("CN=INDEX TEST CA", caKeyPair).ca().keyIdentifiers().build());
+        KeyPair otherKeyPair = newKeyPair();
+        CertificateToken signer = new CertificateToken(certificate("CN=INDEX TEST SIGNER", newKeyPair())
+                .issuedBy("CN=OTHER CA", otherKeyPair).keyIdentifiers().build());
+
+        TrustedCertificateIndex index = new TrustedCertificateIndex(Arrays.asList(ca));
+
+        assertFalse(index.findIssuer(signer).isPresent());
+        assertEquals(0, index.getVerificationCount());
+    }
+}
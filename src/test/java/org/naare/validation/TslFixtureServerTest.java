@@ -0,0 +1,122 @@
+package org.naare.validation;
+
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.service.http.commons.CommonsDataLoader;
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+import org.digidoc4j.Configuration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.naare.utils.RecordingDataLoader;
+import org.naare.utils.TslFixtureServer;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.naare.utils.TslFixtureServer.FIXTURES;
+
+class TslFixtureServerTest {
+
+    private static final String TSL_URL = "https://tsl.example.com/tsl/EE_T.xml";
+    private static final String TSL_CONTENT = "<TrustServiceStatusList/>";
+
+    @TempDir
+    Path root;
+
+    @BeforeEach
+    void setup() throws IOException {
+        Path file = root.resolve(TslFixtureServer.toRelativePath(TSL_URL));
+        Files.createDirectories(file.getParent());
+        Files.write(file, TSL_CONTENT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void conditionalRequest_withEtag_notModified() throws IOException {
+        try (TslFixtureServer server = new TslFixtureServer(root)) {
+            HttpURLConnection connection = open(server.getUrl(TSL_URL));
+            assertEquals(200, connection.getResponseCode());
+            String etag = connection.getHeaderField("ETag");
+            assertNotNull(etag);
+            assertNotNull(connection.getHeaderField("Last-Modified"));
+
+            HttpURLConnection conditional = open(server.getUrl(TSL_URL));
+            conditional.setRequestProperty("If-None-Match", etag);
+            assertEquals(304, conditional.getResponseCode());
+
+            assertEquals(1, server.getFullResponseCount());
+            assertEquals(1, server.getNotModifiedCount());
+        }
+    }
+
+    @Test
+    void conditionalRequest_withLastModified_notModified() throws IOException {
+        try (TslFixtureServer server = new TslFixtureServer(root)) {
+            HttpURLConnection connection = open(server.getUrl(TSL_URL));
+            assertEquals(200, connection.getResponseCode());
+
+            HttpURLConnection conditional = open(server.getUrl(TSL_URL));
+            conditional.setRequestProperty("If-Modified-Since", connection.getHeaderField("Last-Modified"));
+            assertEquals(304, conditional.getResponseCode());
+        }
+    }
+
+    @Test
+    void dataLoader_loadsOriginalUrlFromFixtureWithLatency() throws IOException {
+        try (TslFixtureServer server = new TslFixtureServer(root)) {
+            server.setLatencyMillis(200);
+            DataLoader dataLoader = server.dataLoader();
+
+            long start = System.currentTimeMillis();
+            assertEquals(TSL_CONTENT, new String(dataLoader.get(TSL_URL), StandardCharsets.UTF_8));
+            assertTrue(System.currentTimeMillis() - start >= 200);
+
+            assertThrows(DSSException.class, () -> dataLoader.get("https://tsl.example.com/tsl/missing.xml"));
+            assertEquals(1, server.getNotFoundCount());
+        }
+    }
+
+    @Test
+    void loadTestTsl_fromFixtures_offline() throws IOException {
+        // The fixtures are recorded with recordTestTsl() and are not in the repository yet
+        assumeTrue(Files.isDirectory(FIXTURES), "No recorded TSL fixtures, run recordTestTsl()");
+
+        try (TslFixtureServer server = new TslFixtureServer(FIXTURES)) {
+            Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+            configuration.setTslDataLoaderFactory(server::dataLoader);
+
+            /* Invalidate DD4J TSL cache and force reload */
+            configuration.getTSL().invalidateCache();
+            configuration.getTSL().refresh();
+
+            assertFalse(configuration.getTSL().getCertificates().isEmpty());
+            assertEquals(0, server.getNotFoundCount());
+        }
+    }
+
+    @Disabled("Execute based on need: records TEST LOTLs and TSLs for offline tests, needs network access")
+    @Test
+    void recordTestTsl() {
+        // Default TEST LOTL and the LOTL of the validation tests
+        for (String lotlLocation : new String[]{null, "http://repo.ria/tsl/trusted-test-mp.xml"}) {
+            Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+            if (lotlLocation != null) {
+                configuration.setLotlLocation(lotlLocation);
+            }
+            configuration.setTslDataLoaderFactory(() -> new RecordingDataLoader(new CommonsDataLoader(), FIXTURES));
+
+            configuration.getTSL().invalidateCache();
+            configuration.getTSL().refresh();
+        }
+    }
+
+    private static HttpURLConnection open(String url) throws IOException {
+        return (HttpURLConnection) new URL(url).openConnection();
+    }
+}
@@ -0,0 +1,210 @@
+package org.naare.validation;
+
+import org.digidoc4j.Configuration;
+import org.digidoc4j.ContainerOpener;
+import org.junit.jupiter.api.Test;
+import org.naare.utils.TslRefreshScheduler;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TslRefreshSchedulerTest {
+
+    private static final String CONTAINER = "src/test/resources/files/test/asice/TEST_ESTEID2018_ASiC-E_XAdES_LT.sce";
+
+    @Test
+    void failedRefresh_keepsPreviousSnapshot() {
+        AtomicInteger callbackCount = new AtomicInteger();
+        List<TslRefreshScheduler.Result> results = new CopyOnWriteArrayList<>();
+        try (TslRefreshScheduler scheduler = new TslRefreshScheduler(() -> Configuration.of(Configuration.Mode.TEST),
+                summary -> {
+                    if (callbackCount.incrementAndGet() > 1) {
+                        throw new IllegalStateException("Required territory failed");
+                    }
+                    return true;
+                }, results::add)) {
+
+            TslRefreshScheduler.Result first = scheduler.start(Duration.ofHours(1));
+            Configuration snapshot = scheduler.getConfiguration();
+            assertTrue(first.isSuccess());
+            assertTrue(first.getCertificateCount() > 0);
+            assertNotNull(first.getSummary());
+
+            TslRefreshScheduler.Result second = scheduler.refresh();
+            assertFalse(second.isSuccess());
+            assertNotNull(second.getError());
+            assertSame(snapshot, scheduler.getConfiguration());
+
+            assertEquals(2, results.size());
+            assertEquals(1, scheduler.getFailureCount());
+        }
+    }
+
+    @Test
+    void snapshotOlderThanMaxAge_stale() {
+        MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+        AtomicBoolean failRefresh = new AtomicBoolean();
+        try (TslRefreshScheduler scheduler = new TslRefreshScheduler(() -> Configuration.of(Configuration.Mode.TEST),
+                summary -> {
+                    if (failRefresh.get()) {
+                        throw new IllegalStateException("Required territory failed");
+                    }
+                    return true;
+                }, null, Duration.ofHours(24), clock)) {
+
+            scheduler.start(Duration.ofHours(1));
+            failRefresh.set(true);
+            clock.advance(Duration.ofHours(23));
+            assertFalse(scheduler.refresh().isSuccess());
+            assertFalse(scheduler.isStale());
+            assertNotNull(scheduler.getConfiguration());
+
+            // Failed refreshes keep the snapshot, but only up to the maximum age
+            clock.advance(Duration.ofHours(2));
+            assertFalse(scheduler.refresh().isSuccess());
+            assertTrue(scheduler.isStale());
+            assertEquals(Duration.ofHours(25), scheduler.getSnapshotAge());
+            assertThrows(IllegalStateException.class, scheduler::getConfiguration);
+
+            failRefresh.set(false);
+            assertTrue(scheduler.refresh().isSuccess());
+            assertFalse(scheduler.isStale());
+            assertNotNull(scheduler.getConfiguration());
+        }
+    }
+
+    @Test
+    void resultListenerFailure_scheduledRefreshesContinue() throws Exception {
+        AtomicInteger configurationCount = new AtomicInteger();
+        CountDownLatch refreshes = new CountDownLatch(3);
+        // Only the first load succeeds, the scheduled refreshes fail fast without downloading the TSL
+        try (TslRefreshScheduler scheduler = new TslRefreshScheduler(() -> {
+            if (configurationCount.incrementAndGet() > 1) {
+                throw new IllegalStateException("Configuration not available");
+            }
+            return Configuration.of(Configuration.Mode.TEST);
+        }, null, result -> {
+            refreshes.countDown();
+            throw new IllegalStateException("Listener failed");
+        })) {
+            assertTrue(scheduler.start(Duration.ofMillis(10)).isSuccess());
+
+            assertTrue(refreshes.await(60, TimeUnit.SECONDS));
+            assertNotNull(scheduler.getConfiguration());
+        }
+    }
+
+    @Test
+    void snapshotNotReloadedInline_afterConfiguredCacheExpiration() throws Exception {
+        AtomicInteger callbackCount = new AtomicInteger();
+        try (TslRefreshScheduler scheduler = new TslRefreshScheduler(() -> {
+            Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+            configuration.setTslCacheExpirationTime(1);
+            return configuration;
+        }, summary -> {
+            callbackCount.incrementAndGet();
+            return true;
+        }, null)) {
+            scheduler.start(Duration.ofHours(1));
+            int loads = callbackCount.get();
+            Thread.sleep(10);
+
+            assertTrue(ContainerOpener.open(CONTAINER, scheduler.getConfiguration()).validate().isValid());
+            assertEquals(loads, callbackCount.get());
+            assertEquals(TslRefreshScheduler.SNAPSHOT_CACHE_EXPIRATION.toMillis(),
+                    scheduler.getConfiguration().getTslCacheExpirationTime());
+        }
+    }
+
+    @Test
+    void validationDuringRefresh_notBlocked() throws Exception {
+        CountDownLatch refreshStarted = new CountDownLatch(1);
+        CountDownLatch refreshReleased = new CountDownLatch(1);
+        AtomicBoolean blockRefresh = new AtomicBoolean();
+        // The callback runs inside the TSL load, blocking it holds the refresh in progress
+        try (TslRefreshScheduler scheduler = new TslRefreshScheduler(() -> Configuration.of(Configuration.Mode.TEST),
+                summary -> {
+                    if (blockRefresh.get()) {
+                        refreshStarted.countDown();
+                        await(refreshReleased);
+                    }
+                    return true;
+                }, null)) {
+            scheduler.start(Duration.ofHours(1));
+            Configuration initial = scheduler.getConfiguration();
+
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                blockRefresh.set(true);
+                Future<TslRefreshScheduler.Result> refresh = executor.submit(scheduler::refresh);
+                assertTrue(refreshStarted.await(60, TimeUnit.SECONDS));
+
+                // Validation uses the current snapshot, waiting for the blocked refresh would time out
+                assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+                    for (int i = 0; i < 4; i++) {
+                        assertTrue(ContainerOpener.open(CONTAINER, scheduler.getConfiguration()).validate().isValid());
+                    }
+                });
+                assertSame(initial, scheduler.getConfiguration());
+
+                refreshReleased.countDown();
+                assertTrue(refresh.get(60, TimeUnit.SECONDS).isSuccess());
+                assertNotSame(initial, scheduler.getConfiguration());
+            } finally {
+                refreshReleased.countDown();
+                executor.shutdown();
+            }
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private volatile Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        private void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.naare.validation;
+
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import org.digidoc4j.Configuration;
+import org.digidoc4j.ContainerBuilder;
+import org.digidoc4j.ContainerValidationResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.naare.utils.TslSnapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.naare.signing.Helpers.validationResultHasNoIssues;
+
+class TslSnapshotTest {
+
+    private static final String CONTAINER = "src/test/resources/files/test/asic/EE_LT_sig_valid.asice";
+
+    private static final Supplier<Configuration> CONFIGURATION_FACTORY = () -> {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        configuration.setLotlLocation("http://repo.ria/tsl/trusted-test-mp.xml");
+        return configuration;
+    };
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void snapshotWrittenAndLoaded_sameCertificatesAndTrustServices() throws IOException {
+        Path snapshotFile = tempDir.resolve("test-tsl.snapshot");
+
+        // First start loads the LOTL and writes the snapshot
+        Configuration configuration = TslSnapshot.loadConfiguration(CONFIGURATION_FACTORY, snapshotFile, Duration.ofHours(1));
+        assertTrue(Files.exists(snapshotFile));
+        List<CertificateToken> expected = configuration.getTSL().getCertificates();
+
+        // Next start reads the snapshot
+        Configuration snapshotConfiguration = TslSnapshot.loadConfiguration(CONFIGURATION_FACTORY, snapshotFile, Duration.ofHours(1));
+        List<CertificateToken> actual = snapshotConfiguration.getTSL().getCertificates();
+
+        Set<String> expectedIds = expected.stream().map(CertificateToken::getDSSIdAsString).collect(Collectors.toSet());
+        Set<String> actualIds = actual.stream().map(CertificateToken::getDSSIdAsString).collect(Collectors.toSet());
+        assertEquals(expectedIds, actualIds);
+        for (CertificateToken certificate : expected) {
+            assertEquals(configuration.getTSL().getTrustServices(certificate).size(),
+                    snapshotConfiguration.getTSL().getTrustServices(certificate).size());
+        }
+        assertNotNull(snapshotConfiguration.getTSL().getSummary());
+        assertTrue(TslSnapshot.getCreationTime(snapshotFile) <= System.currentTimeMillis());
+    }
+
+    @Test
+    void validateWithSnapshot_sameResultAsLiveTsl() throws IOException {
+        Path snapshotFile = tempDir.resolve("test-tsl.snapshot");
+        Configuration liveConfiguration = TslSnapshot.loadConfiguration(CONFIGURATION_FACTORY, snapshotFile, Duration.ofHours(1));
+        Configuration snapshotConfiguration = TslSnapshot.loadConfiguration(CONFIGURATION_FACTORY, snapshotFile, Duration.ofHours(1));
+
+        ContainerValidationResult live = ContainerBuilder.aContainer().withConfiguration(liveConfiguration)
+                .fromExistingFile(CONTAINER).build().validate();
+        ContainerValidationResult snapshot = ContainerBuilder.aContainer().withConfiguration(snapshotConfiguration)
+                .fromExistingFile(CONTAINER).build().validate();
+
+        validationResultHasNoIssues(snapshot);
+        assertEquals(live.getSignatureReports().get(0).getIndication(), snapshot.getSignatureReports().get(0).getIndication());
+        assertEquals(live.getSignatureReports().get(0).getSignatureLevel().getValue(),
+                snapshot.getSignatureReports().get(0).getSignatureLevel().getValue());
+    }
+
+    @Test
+    void staleSnapshot_reloaded() throws IOException {
+        Path snapshotFile = tempDir.resolve("test-tsl.snapshot");
+        TslSnapshot.loadConfiguration(CONFIGURATION_FACTORY, snapshotFile, Duration.ofHours(1));
+        long created = TslSnapshot.getCreationTime(snapshotFile);
+
+        assertFalse(TslSnapshot.isStale(snapshotFile, Duration.ofHours(1)));
+        assertTrue(TslSnapshot.isStale(snapshotFile, Duration.ofMillis(-1)));
+
+        TslSnapshot.loadConfiguration(CONFIGURATION_FACTORY, snapshotFile, Duration.ofMillis(-1));
+        assertTrue(TslSnapshot.getCreationTime(snapshotFile) >= created);
+        assertTrue(TslSnapshot.getNextUpdate(snapshotFile) > System.currentTimeMillis());
+    }
+
+    @Test
+    void readInvalidFile_throwsIOException() throws IOException {
+        Path file = tempDir.resolve("invalid.snapshot");
+        Files.write(file, "not a snapshot".getBytes());
+
+        Exception exception = assertThrows(IOException.class, () -> TslSnapshot.read(file));
+        assertTrue(exception.getMessage().contains("Not a TSL snapshot file"));
+        assertThrows(IOException.class, () -> TslSnapshot.getCreationTime(file));
+    }
+
+    @Test
+    void readCorruptFile_throwsIOException() throws IOException {
+        Path snapshotFile = tempDir.resolve("test-tsl.snapshot");
+        TslSnapshot.loadConfiguration(CONFIGURATION_FACTORY, snapshotFile, Duration.ofHours(1));
+        byte[] snapshot = Files.readAllBytes(snapshotFile);
+
+        // Truncated
+        Path truncated = tempDir.resolve("truncated.snapshot");
+        Files.write(truncated, Arrays.copyOf(snapshot, snapshot.length / 2));
+        assertThrows(IOException.class, () -> TslSnapshot.read(truncated));
+
+        // Summary length past the end of the file
+        Path invalidLength = tempDir.resolve("invalid-length.snapshot");
+        byte[] corrupt = snapshot.clone();
+        ByteBuffer.wrap(corrupt).putInt(24, Integer.MAX_VALUE);
+        Files.write(invalidLength, corrupt);
+        assertThrows(IOException.class, () -> TslSnapshot.read(invalidLength));
+    }
+}
@@ -0,0 +1,118 @@
+package org.naare.validation;
+
+import org.digidoc4j.Configuration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.naare.utils.LocalTSPSource;
+import org.naare.utils.ValidationResultCache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidationResultCacheTest {
+
+    private static final Path COMPOSITE_ASICS = Paths.get("src/test/resources/files/test/asics/TEST_composite_ASICS.asics");
+
+    @TempDir
+    Path cacheDirectory;
+
+    @Test
+    void repeatedValidation_returnsCachedSummary() throws IOException {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        ValidationResultCache cache = new ValidationResultCache(cacheDirectory, Duration.ofDays(1));
+
+        ValidationResultCache.Summary summary = cache.validate(COMPOSITE_ASICS, configuration);
+        assertEquals(1, cache.getMissCount());
+
+        ValidationResultCache.Summary cached = cache.validate(COMPOSITE_ASICS, configuration);
+        assertEquals(1, cache.getHitCount());
+
+        assertEquals(summary.isValid(), cached.isValid());
+        assertEquals(summary.getErrors(), cached.getErrors());
+        assertEquals(summary.getWarnings(), cached.getWarnings());
+        assertEquals(summary.getTimestampReports().size(), cached.getTimestampReports().size());
+        for (int i = 0; i < summary.getTimestampReports().size(); i++) {
+            assertEquals(summary.getTimestampReports().get(i).getUniqueId(), cached.getTimestampReports().get(i).getUniqueId());
+            assertEquals(summary.getTimestampReports().get(i).getIndication(), cached.getTimestampReports().get(i).getIndication());
+        }
+
+        // Entries survive in the cache directory
+        ValidationResultCache reopened = new ValidationResultCache(cacheDirectory, Duration.ofDays(1));
+        reopened.validate(COMPOSITE_ASICS, configuration);
+        assertEquals(1, reopened.getHitCount());
+        assertEquals(0, reopened.getMissCount());
+    }
+
+    @Test
+    void validSignature_summaryMatchesValidationResult() throws IOException {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        configuration.setLotlLocation("http://repo.ria/tsl/trusted-test-mp.xml");
+        Path path = Paths.get("src/test/resources/files/test/asic/EE_LT_sig_valid.asice");
+        ValidationResultCache cache = new ValidationResultCache(cacheDirectory, Duration.ofDays(1));
+
+        cache.validate(path, configuration);
+        ValidationResultCache.Summary cached = cache.validate(path, configuration);
+
+        assertTrue(cached.isValid());
+        assertEquals(1, cached.getSignatureReports().size());
+        assertEquals("TOTAL_PASSED", cached.getSignatureReports().get(0).getIndication());
+        assertEquals("XAdES_BASELINE_LT", cached.getSignatureReports().get(0).getFormat());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {-1, Integer.MAX_VALUE})
+    void corruptCount_entryIgnoredAndRevalidated(int count) throws IOException {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        ValidationResultCache cache = new ValidationResultCache(cacheDirectory, Duration.ofDays(1));
+        ValidationResultCache.Summary summary = cache.validate(COMPOSITE_ASICS, configuration);
+
+        // Error count after the magic and the validity
+        Path entry = cacheDirectory.resolve(cache.getKey(COMPOSITE_ASICS, configuration) + ".vr");
+        byte[] bytes = Files.readAllBytes(entry);
+        ByteBuffer.wrap(bytes).putInt(9, count);
+        Files.write(entry, bytes);
+
+        assertEquals(summary.isValid(), cache.validate(COMPOSITE_ASICS, configuration).isValid());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    void changedTsl_invalidatesEntry() throws IOException {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        ValidationResultCache cache = new ValidationResultCache(cacheDirectory, Duration.ofDays(1));
+        String key = cache.getKey(COMPOSITE_ASICS, configuration);
+
+        // New trusted certificate changes the TSL version
+        configuration.getTSL().addTSLCertificate(new LocalTSPSource().getTsaCertificate());
+
+        assertNotEquals(key, cache.getKey(COMPOSITE_ASICS, configuration));
+    }
+
+    @Test
+    void nextTimeBucket_invalidatesEntry() throws IOException {
+        Configuration configuration = Configuration.of(Configuration.Mode.TEST);
+        Instant now = Instant.parse("2025-06-01T10:00:00Z");
+
+        String key = new ValidationResultCache(cacheDirectory, Duration.ofDays(1), Clock.fixed(now, ZoneOffset.UTC))
+                .getKey(COMPOSITE_ASICS, configuration);
+        String sameDayKey = new ValidationResultCache(cacheDirectory, Duration.ofDays(1), Clock.fixed(now.plusSeconds(3600), ZoneOffset.UTC))
+                .getKey(COMPOSITE_ASICS, configuration);
+        String nextDayKey = new ValidationResultCache(cacheDirectory, Duration.ofDays(1), Clock.fixed(now.plus(Duration.ofDays(1)), ZoneOffset.UTC))
+                .getKey(COMPOSITE_ASICS, configuration);
+
+        assertEquals(key, sameDayKey);
+        assertNotEquals(key, nextDayKey);
+    }
+}